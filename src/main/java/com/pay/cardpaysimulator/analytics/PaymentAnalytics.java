@@ -0,0 +1,224 @@
+package com.pay.cardpaysimulator.analytics;
+
+import com.pay.cardpaysimulator.audit.AuditLog;
+import com.pay.cardpaysimulator.dto.AnalyticsSnapshot;
+import com.pay.cardpaysimulator.dto.AnalyticsSnapshot.StatusTotals;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.repository.CardStatusTotals;
+import com.pay.cardpaysimulator.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incrementally maintained payment analytics, globally, per card and per BIN.
+ * <p>
+ * Every payment and refund outcome is added to three {@link RollingAggregate}s as it happens, so
+ * answering "approved volume of this card" or "decline rate in the last minute" reads a fixed
+ * number of counters instead of scanning the transactions. Payments that may have failed before a
+ * card was resolved, for unknown card numbers, invalid requests or processing errors, only count
+ * towards the global figures, so arbitrary input cannot grow the per-card and per-BIN maps.
+ * Totals are seeded from the transactions already in the database at startup; the sliding window
+ * only covers outcomes recorded since. The window buckets of cards and BINs with nothing recorded
+ * for a whole window are dropped every {@code simulator.analytics.eviction-interval-ms}, so idle
+ * cards only keep their totals.
+ */
+@Slf4j
+@Component
+public class PaymentAnalytics {
+
+    private static final int BIN_LENGTH = 6;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final Set<ReasonCode> UNRESOLVED_CARD = EnumSet.of(
+            ReasonCode.CARD_NOT_FOUND, ReasonCode.INVALID_REQUEST, ReasonCode.PROCESSING_ERROR);
+
+    private final TransactionRepository transactionRepository;
+    private final int windowSeconds;
+    private final boolean seedFromDatabase;
+    private final RollingAggregate global;
+    private final ConcurrentHashMap<String, RollingAggregate> cards = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RollingAggregate> bins = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+
+    public PaymentAnalytics(TransactionRepository transactionRepository,
+                            @Value("${simulator.analytics.window-seconds:60}") int windowSeconds,
+                            @Value("${simulator.analytics.seed-from-database:true}") boolean seedFromDatabase) {
+        if (windowSeconds < 1) {
+            throw new IllegalArgumentException("Analytics window must be at least one second");
+        }
+        this.transactionRepository = transactionRepository;
+        this.windowSeconds = windowSeconds;
+        this.seedFromDatabase = seedFromDatabase;
+        this.global = new RollingAggregate(windowSeconds);
+    }
+
+    public void recordPayment(String cardNumber, BigDecimal amount, PaymentResponse response) {
+        long amountCents = toCents(amount);
+        long second = currentSecond();
+        global.record(response.getStatus(), amountCents, second);
+        if (cardNumber != null && cardNumber.length() > BIN_LENGTH && !UNRESOLVED_CARD.contains(response.getReasonCode())) {
+            aggregateFor(cards, cardNumber).record(response.getStatus(), amountCents, second);
+            aggregateFor(bins, cardNumber.substring(0, BIN_LENGTH)).record(response.getStatus(), amountCents, second);
+        }
+    }
+
+    /**
+     * Records a successful refund. Inside a transaction it is recorded once the transaction commits.
+     */
+    public void recordRefund(String cardNumber, long amountCents) {
+        recordAfterCommit(cardNumber, TransactionStatus.REFUNDED, amountCents);
+    }
+
+    /**
+     * Records a captured hold as an approved payment of the captured amount. Inside a transaction
+     * it is recorded once the transaction commits.
+     */
+    public void recordCapture(String cardNumber, long amountCents) {
+        recordAfterCommit(cardNumber, TransactionStatus.APPROVED, amountCents);
+    }
+
+    public AnalyticsSnapshot global() {
+        return snapshot("global", null, global);
+    }
+
+    public Optional<AnalyticsSnapshot> card(String cardNumber) {
+        return Optional.ofNullable(cards.get(cardNumber)).map(aggregate -> snapshot("card", AuditLog.mask(cardNumber), aggregate));
+    }
+
+    public Optional<AnalyticsSnapshot> bin(String bin) {
+        return Optional.ofNullable(bins.get(bin)).map(aggregate -> snapshot("bin", bin, aggregate));
+    }
+
+    /**
+     * Adds the transactions already in the database to the totals. A refunded transaction was
+     * approved first, so it counts as both an approval and a refund.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (!seedFromDatabase) {
+            return;
+        }
+        List<CardStatusTotals> rows = transactionRepository.summarizeByCardAndStatus();
+        for (CardStatusTotals row : rows) {
+            long amountCents = toCents(row.getAmount());
+            seed(row.getCardNumber(), row.getStatus(), row.getCount(), amountCents);
+            if (row.getStatus() == TransactionStatus.REFUNDED) {
+                seed(row.getCardNumber(), TransactionStatus.APPROVED, row.getCount(), amountCents);
+            } else if (row.getRefundedCount() > 0) {
+                // Partially refunded payments are still approved
+                seed(row.getCardNumber(), TransactionStatus.REFUNDED, row.getRefundedCount(), toCents(row.getRefundedAmount()));
+            }
+        }
+        log.info("Payment analytics seeded from {} card and status totals", rows.size());
+    }
+
+    private void recordAfterCommit(String cardNumber, TransactionStatus status, long amountCents) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(cardNumber, status, amountCents);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(cardNumber, status, amountCents);
+            }
+        });
+    }
+
+    private void record(String cardNumber, TransactionStatus status, long amountCents) {
+        long second = currentSecond();
+        global.record(status, amountCents, second);
+        aggregateFor(cards, cardNumber).record(status, amountCents, second);
+        aggregateFor(bins, cardNumber.substring(0, BIN_LENGTH)).record(status, amountCents, second);
+    }
+
+    private void seed(String cardNumber, TransactionStatus status, long count, long amountCents) {
+        global.seed(status, count, amountCents);
+        aggregateFor(cards, cardNumber).seed(status, count, amountCents);
+        aggregateFor(bins, cardNumber.substring(0, BIN_LENGTH)).seed(status, count, amountCents);
+    }
+
+    private RollingAggregate aggregateFor(ConcurrentHashMap<String, RollingAggregate> aggregates, String key) {
+        RollingAggregate aggregate = aggregates.get(key);
+        return aggregate != null ? aggregate : aggregates.computeIfAbsent(key, k -> new RollingAggregate(windowSeconds));
+    }
+
+    private AnalyticsSnapshot snapshot(String scope, String key, RollingAggregate aggregate) {
+        long[] counts = new long[STATUSES.length];
+        long[] amounts = new long[STATUSES.length];
+        aggregate.window(currentSecond(), counts, amounts);
+
+        Map<String, StatusTotals> window = new LinkedHashMap<>();
+        Map<String, StatusTotals> totals = new LinkedHashMap<>();
+        for (TransactionStatus status : STATUSES) {
+            window.put(status.name(), totals(counts[status.ordinal()], amounts[status.ordinal()]));
+            totals.put(status.name(), totals(aggregate.totalCount(status), aggregate.totalAmount(status)));
+        }
+        long declined = counts[TransactionStatus.DECLINED.ordinal()];
+        long payments = counts[TransactionStatus.APPROVED.ordinal()] + declined + counts[TransactionStatus.FAILED.ordinal()];
+        return AnalyticsSnapshot.builder()
+                .scope(scope)
+                .key(key)
+                .windowSeconds(windowSeconds)
+                .window(window)
+                .totals(totals)
+                .windowDeclineRate(payments == 0 ? 0 : (double) declined / payments)
+                .build();
+    }
+
+    private static StatusTotals totals(long count, long amountCents) {
+        return StatusTotals.builder()
+                .count(count)
+                .amount(BigDecimal.valueOf(amountCents, 2))
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${simulator.analytics.eviction-interval-ms:60000}")
+    public void evict() {
+        long second = currentSecond();
+        int evicted = 0;
+        for (RollingAggregate aggregate : cards.values()) {
+            if (aggregate.evictWindow(second)) {
+                evicted++;
+            }
+        }
+        for (RollingAggregate aggregate : bins.values()) {
+            if (aggregate.evictWindow(second)) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Dropped the analytics windows of {} idle cards and BINs", evicted);
+        }
+    }
+
+    private long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Converts to cents, rounding rather than failing, since payments with invalid amounts are
+     * recorded too.
+     */
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValue();
+    }
+}
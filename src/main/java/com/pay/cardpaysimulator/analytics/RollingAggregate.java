@@ -0,0 +1,135 @@
+package com.pay.cardpaysimulator.analytics;
+
+import com.pay.cardpaysimulator.model.TransactionStatus;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and amounts of transactions by status, both since startup and over a sliding window of
+ * one-second buckets.
+ * <p>
+ * Updates only add to {@link LongAdder}s, which spread contended additions over per-thread cells,
+ * and rotate buckets with a compare-and-set, so recording never blocks. Reading sums every bucket
+ * of the window, so its cost depends on the window length and not on the number of transactions.
+ * <p>
+ * The buckets are allocated on the first update and dropped by {@link #evictWindow(long)} once
+ * nothing was recorded for a whole window, so an idle aggregate keeps only its totals.
+ */
+final class RollingAggregate {
+
+    private static final int STATUSES = TransactionStatus.values().length;
+
+    private final LongAdder[] totalCounts = adders();
+    private final LongAdder[] totalAmounts = adders();
+    private final AtomicReference<AtomicReferenceArray<Bucket>> buckets = new AtomicReference<>();
+    private final int windowSeconds;
+    private volatile long lastSecond;
+
+    RollingAggregate(int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    void record(TransactionStatus status, long amountCents, long second) {
+        int index = status.ordinal();
+        totalCounts[index].increment();
+        totalAmounts[index].add(amountCents);
+        if (lastSecond != second) {
+            lastSecond = second;
+        }
+        Bucket bucket = bucketFor(currentBuckets(), second);
+        bucket.counts[index].increment();
+        bucket.amounts[index].add(amountCents);
+    }
+
+    /**
+     * Adds totals recorded before startup. They count towards the totals but not the window.
+     */
+    void seed(TransactionStatus status, long count, long amountCents) {
+        totalCounts[status.ordinal()].add(count);
+        totalAmounts[status.ordinal()].add(amountCents);
+    }
+
+    long totalCount(TransactionStatus status) {
+        return totalCounts[status.ordinal()].sum();
+    }
+
+    long totalAmount(TransactionStatus status) {
+        return totalAmounts[status.ordinal()].sum();
+    }
+
+    /**
+     * Sums the window ending at the given second into {@code counts} and {@code amounts},
+     * indexed by status ordinal.
+     */
+    void window(long second, long[] counts, long[] amounts) {
+        AtomicReferenceArray<Bucket> current = buckets.get();
+        if (current == null) {
+            return;
+        }
+        for (int i = 0; i < current.length(); i++) {
+            Bucket bucket = current.get(i);
+            if (bucket == null || bucket.second <= second - current.length() || bucket.second > second) {
+                continue;
+            }
+            for (int status = 0; status < STATUSES; status++) {
+                counts[status] += bucket.counts[status].sum();
+                amounts[status] += bucket.amounts[status].sum();
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets if nothing was recorded during the window ending at the given second. An
+     * update racing with the eviction may be left out of the window, but never out of the totals.
+     *
+     * @return {@code true} if the buckets were dropped
+     */
+    boolean evictWindow(long second) {
+        AtomicReferenceArray<Bucket> current = buckets.get();
+        return current != null && lastSecond <= second - windowSeconds && buckets.compareAndSet(current, null);
+    }
+
+    private AtomicReferenceArray<Bucket> currentBuckets() {
+        AtomicReferenceArray<Bucket> current = buckets.get();
+        if (current == null) {
+            buckets.compareAndSet(null, new AtomicReferenceArray<>(windowSeconds));
+            current = buckets.get();
+        }
+        return current;
+    }
+
+    private static Bucket bucketFor(AtomicReferenceArray<Bucket> buckets, long second) {
+        int index = (int) Math.floorMod(second, (long) buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.second >= second) {
+                // A bucket from a later second means this thread was delayed; count it there
+                return bucket;
+            }
+            Bucket fresh = new Bucket(second);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[STATUSES];
+        for (int i = 0; i < STATUSES; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static final class Bucket {
+        private final long second;
+        private final LongAdder[] counts = adders();
+        private final LongAdder[] amounts = adders();
+
+        private Bucket(long second) {
+            this.second = second;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.pay.cardpaysimulator.archive;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pay.cardpaysimulator.dto.TransactionView;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import com.pay.cardpaysimulator.repository.TransactionRepository;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import com.pay.cardpaysimulator.settlement.SettlementJob;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves transactions older than the retention period out of the {@code transactions} table into
+ * gzip-compressed NDJSON files, one directory per day ({@code 2024-03-20/transactions-<first id>.ndjson.gz}),
+ * so the table and its indexes only hold recent history. Enabled with {@code simulator.archive.enabled=true}.
+ * <p>
+ * Each batch is written to a temporary file and forced to disk, then deleted from the table; the
+ * file is moved into place just before the deletion commits. If a row changed status or refunded
+ * amount since it was read (a late refund), the batch is rolled back and retried on the next run. A crash between the
+ * move and the commit leaves the rows in the table, and the next run rewrites the same file.
+ * Pending holds are never archived; they stay in the table until captured, voided or expired.
+ * Archived transactions can no longer be listed or refunded through the API. Their net amount is
+ * carried forward into each card's opening balance in the same transaction, so settlement keeps
+ * reconciling the card against the transactions still in the table.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "simulator.archive.enabled", havingValue = "true")
+public class TransactionArchiver {
+
+    private static final String FILE_PREFIX = "transactions-";
+    private static final String FILE_SUFFIX = ".ndjson.gz";
+
+    private final TransactionRepository transactionRepository;
+    private final CardRepository cardRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter writer;
+    private final Path directory;
+    private final Duration retention;
+    private final int batchSize;
+
+    public TransactionArchiver(TransactionRepository transactionRepository,
+                               CardRepository cardRepository,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               @Value("${simulator.archive.directory:archive}") String directory,
+                               @Value("${simulator.archive.retention:30d}") Duration retention,
+                               @Value("${simulator.archive.batch-size:1000}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Archive batch size must be positive");
+        }
+        this.transactionRepository = transactionRepository;
+        this.cardRepository = cardRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.directory = Path.of(directory);
+        this.retention = retention;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+    }
+
+    @Scheduled(fixedDelayString = "${simulator.archive.interval-ms:3600000}")
+    public void archive() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        long archived = 0;
+        try {
+            int moved;
+            do {
+                moved = archiveBatch(cutoff);
+                archived += moved;
+            } while (moved == batchSize);
+        } catch (ConcurrencyFailureException e) {
+            log.info("Transaction archival interrupted by a concurrent update, resuming on the next run: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Transaction archival failed", e);
+        }
+        if (archived > 0) {
+            log.info("Archived {} transactions older than {}", archived, cutoff);
+        }
+    }
+
+    /**
+     * Archives and deletes the oldest transactions before the cutoff that are not pending, up to
+     * one batch.
+     *
+     * @return the number of transactions archived
+     */
+    int archiveBatch(LocalDateTime cutoff) {
+        Integer archived = transactionTemplate.execute(status -> {
+            List<TransactionView> batch = transactionRepository.findFirstArchivablePageBefore(cutoff, Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            Map<LocalDate, List<TransactionView>> days = new LinkedHashMap<>();
+            Map<RowState, List<Long>> idsByState = new LinkedHashMap<>();
+            Map<Long, Long> netDebitByCard = new HashMap<>();
+            for (TransactionView transaction : batch) {
+                days.computeIfAbsent(transaction.timestamp().toLocalDate(), day -> new ArrayList<>()).add(transaction);
+                idsByState.computeIfAbsent(RowState.of(transaction), s -> new ArrayList<>()).add(transaction.id());
+                long netDebit = SettlementJob.netDebitCents(transaction.status(), transaction.amount(), transaction.refundedAmount());
+                if (netDebit != 0 && transaction.cardId() != null) {
+                    netDebitByCard.merge(transaction.cardId(), netDebit, Long::sum);
+                }
+            }
+
+            List<Path[]> moves = new ArrayList<>(days.size());
+            try {
+                for (Map.Entry<LocalDate, List<TransactionView>> day : days.entrySet()) {
+                    moves.add(write(day.getKey(), day.getValue()));
+                }
+
+                int deleted = 0;
+                for (Map.Entry<RowState, List<Long>> ids : idsByState.entrySet()) {
+                    deleted += transactionRepository.deleteByIdsAndState(ids.getValue(), ids.getKey().status(), ids.getKey().refundedAmount());
+                }
+                if (deleted != batch.size()) {
+                    throw new ConcurrencyFailureException(
+                            (batch.size() - deleted) + " transactions changed while being archived");
+                }
+                netDebitByCard.forEach((cardId, netDebit) ->
+                        cardRepository.carryForward(cardId, BalanceLedger.fromMinorUnits(netDebit)));
+
+                for (Path[] move : moves) {
+                    Files.move(move[0], move[1], StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                for (Path[] move : moves) {
+                    deleteQuietly(move[0]);
+                }
+            }
+            return batch.size();
+        });
+        return archived == null ? 0 : archived;
+    }
+
+    /**
+     * Writes the transactions of one day to a temporary file and forces it to disk.
+     *
+     * @return the temporary file and the archive file it is to be moved to
+     */
+    private Path[] write(LocalDate day, List<TransactionView> transactions) throws IOException {
+        Path dayDirectory = Files.createDirectories(directory.resolve(day.toString()));
+        Path target = dayDirectory.resolve(FILE_PREFIX + transactions.get(0).id() + FILE_SUFFIX);
+        Path temp = dayDirectory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel));
+            OutputStream out = new BufferedOutputStream(gzip);
+            for (TransactionView transaction : transactions) {
+                writer.writeValue(out, transaction);
+                out.write('\n');
+            }
+            out.flush();
+            gzip.finish();
+            channel.force(true);
+        }
+        return new Path[] {temp, target};
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary archive file {}", path, e);
+        }
+    }
+
+    /**
+     * The mutable part of an archived row, checked again when it is deleted.
+     */
+    private record RowState(TransactionStatus status, BigDecimal refundedAmount) {
+
+        static RowState of(TransactionView transaction) {
+            BigDecimal refunded = transaction.refundedAmount() == null ? BigDecimal.ZERO : transaction.refundedAmount();
+            // Normalized so amounts differing only in scale share a key
+            return new RowState(transaction.status(), refunded.stripTrailingZeros());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.pay.cardpaysimulator.audit;
+
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Structured audit trail of payments, refunds and holds.
+ * <p>
+ * Each event is one line of space-separated {@code key=value} pairs built in a pre-sized buffer.
+ * Card numbers are masked to their first six and last four digits and CVVs are never written.
+ * The {@code audit} logger is routed to an asynchronous appender (see {@code logback-spring.xml}),
+ * so the request thread only enqueues the line and never waits for file I/O.
+ */
+@Component
+public class AuditLog {
+
+    private static final Logger AUDIT = LoggerFactory.getLogger("audit");
+    private static final int EVENT_CAPACITY = 192;
+
+    public void payment(String cardNumber, BigDecimal amount, PaymentResponse response, long elapsedNanos) {
+        cardEvent("event=payment card=", cardNumber, amount, response, elapsedNanos);
+    }
+
+    public void authorization(String cardNumber, BigDecimal amount, PaymentResponse response, long elapsedNanos) {
+        cardEvent("event=authorization card=", cardNumber, amount, response, elapsedNanos);
+    }
+
+    public void capture(Long transactionId, BigDecimal amount, PaymentResponse response, long elapsedNanos) {
+        transactionEvent("event=capture captureOf=", transactionId, amount, response, elapsedNanos);
+    }
+
+    public void voidHold(Long transactionId, PaymentResponse response, long elapsedNanos) {
+        if (!AUDIT.isInfoEnabled()) {
+            return;
+        }
+        StringBuilder event = new StringBuilder(EVENT_CAPACITY).append("event=void voidOf=").append(transactionId);
+        append(event, response, elapsedNanos);
+        AUDIT.info(event.toString());
+    }
+
+    /**
+     * @param amount the partial amount refunded, or {@code null} for a refund of everything left
+     */
+    public void refund(Long transactionId, BigDecimal amount, PaymentResponse response, long elapsedNanos) {
+        transactionEvent("event=refund refundOf=", transactionId, amount, response, elapsedNanos);
+    }
+
+    private static void cardEvent(String prefix, String cardNumber, BigDecimal amount, PaymentResponse response, long elapsedNanos) {
+        if (!AUDIT.isInfoEnabled()) {
+            return;
+        }
+        StringBuilder event = new StringBuilder(EVENT_CAPACITY).append(prefix);
+        appendMasked(event, cardNumber);
+        event.append(" amount=").append(amount);
+        append(event, response, elapsedNanos);
+        AUDIT.info(event.toString());
+    }
+
+    private static void transactionEvent(String prefix, Long transactionId, BigDecimal amount,
+                                         PaymentResponse response, long elapsedNanos) {
+        if (!AUDIT.isInfoEnabled()) {
+            return;
+        }
+        StringBuilder event = new StringBuilder(EVENT_CAPACITY).append(prefix).append(transactionId);
+        if (amount != null) {
+            event.append(" amount=").append(amount);
+        }
+        append(event, response, elapsedNanos);
+        AUDIT.info(event.toString());
+    }
+
+    private static void append(StringBuilder event, PaymentResponse response, long elapsedNanos) {
+        event.append(" status=").append(response.getStatus());
+        if (response.getReasonCode() != null) {
+            event.append(" reason=").append(response.getReasonCode());
+        }
+        if (response.getTransactionId() != null) {
+            event.append(" transactionId=").append(response.getTransactionId());
+        }
+        event.append(" latencyUs=").append(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    /**
+     * Returns the card number with all but its first six and last four digits replaced by {@code *},
+     * for use in log messages.
+     */
+    public static String mask(String cardNumber) {
+        StringBuilder masked = new StringBuilder(cardNumber == null ? 4 : cardNumber.length());
+        appendMasked(masked, cardNumber);
+        return masked.toString();
+    }
+
+    /**
+     * Appends the card number with all but its first six and last four digits replaced by {@code *}.
+     */
+    static void appendMasked(StringBuilder target, String cardNumber) {
+        if (cardNumber == null) {
+            target.append("null");
+            return;
+        }
+        int length = cardNumber.length();
+        if (length <= 10) {
+            for (int i = 0; i < length; i++) {
+                target.append('*');
+            }
+            return;
+        }
+        target.append(cardNumber, 0, 6);
+        for (int i = 6; i < length - 4; i++) {
+            target.append('*');
+        }
+        target.append(cardNumber, length - 4, length);
+    }
+}
@@ -0,0 +1,363 @@
+package com.pay.cardpaysimulator.cluster;
+
+import com.pay.cardpaysimulator.cluster.ClusterException.Reason;
+import com.pay.cardpaysimulator.dto.ClusterState;
+import com.pay.cardpaysimulator.dto.RebalanceRequest;
+import com.pay.cardpaysimulator.dto.SlotMigration;
+import com.pay.cardpaysimulator.hold.HoldRegistry;
+import com.pay.cardpaysimulator.journal.TransactionJournal;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import com.pay.cardpaysimulator.service.CardCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Moves slots between nodes with a two-phase handover.
+ * <p>
+ * The node receiving the rebalance computes the new assignment and asks every node losing slots
+ * to prepare: the node freezes the slots, waits for the requests in flight, and writes the slots'
+ * balances back to the database before dropping them from its ledger, card cache and hold index.
+ * Once all of them are prepared, every node commits the new assignment, dropping whatever it had
+ * cached for the slots it gains, so their balances are read fresh from the database on first use,
+ * and loading their outstanding holds. If a node cannot prepare, the prepared ones are told to
+ * abort and keep their slots.
+ * <p>
+ * A commit that does not reach a node is retried a few times. A node that still missed it keeps its
+ * handed-over slots frozen and catches up with the newest assignment of the other nodes when it is
+ * next asked to prepare or to coordinate a rebalance, or when it restarts.
+ */
+@Slf4j
+@Component
+@Profile("cluster")
+public class ClusterCoordinator {
+
+    private static final int COMMIT_ATTEMPTS = 3;
+
+    private final ClusterNode clusterNode;
+    private final SlotTable slotTable;
+    private final BalanceLedger balanceLedger;
+    private final CardCache cardCache;
+    private final HoldRegistry holdRegistry;
+    private final TransactionJournal transactionJournal;
+    private final Duration drainTimeout;
+    private final ReentrantLock migrationLock = new ReentrantLock();
+    /** Slots handed over by the last prepare that was neither committed nor aborted. */
+    private volatile int[] handedOver = new int[0];
+
+    public ClusterCoordinator(ClusterNode clusterNode,
+                              BalanceLedger balanceLedger,
+                              CardCache cardCache,
+                              HoldRegistry holdRegistry,
+                              ObjectProvider<TransactionJournal> transactionJournal,
+                              @Value("${simulator.cluster.drain-timeout:5s}") Duration drainTimeout) {
+        this.clusterNode = clusterNode;
+        this.slotTable = clusterNode.slotTable();
+        this.balanceLedger = balanceLedger;
+        this.cardCache = cardCache;
+        this.holdRegistry = holdRegistry;
+        this.transactionJournal = transactionJournal.getIfAvailable();
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Adopts the newest assignment known to the other nodes, so a restarted node does not claim
+     * slots that were moved away while it was down, and keeps only the holds of its own slots.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        ClusterState newest = newestState();
+        if (newest != null && slotTable.install(newest.getEpoch(), toArray(newest.getOwners()))) {
+            log.info("Joined the cluster at epoch {}", newest.getEpoch());
+        }
+        holdRegistry.evict(cardNumber -> slotTable.owner(slotTable.slotOf(cardNumber)) != clusterNode.nodeId());
+    }
+
+    /**
+     * Spreads the slots evenly over the given nodes.
+     *
+     * @return the new cluster state
+     */
+    public ClusterState rebalance(RebalanceRequest request) {
+        int[] activeNodes = request.getActiveNodes() == null ? new int[0]
+                : request.getActiveNodes().stream().distinct().sorted().mapToInt(Integer::intValue).toArray();
+        if (activeNodes.length == 0 || activeNodes[0] < 0 || activeNodes[activeNodes.length - 1] >= clusterNode.nodeCount()) {
+            throw new IllegalArgumentException("Active nodes must be a non-empty subset of 0.." + (clusterNode.nodeCount() - 1));
+        }
+        if (!migrationLock.tryLock()) {
+            throw new ClusterException(Reason.CONFLICT, "Another rebalance is in progress");
+        }
+        try {
+            catchUp();
+            long epoch = slotTable.epoch() + 1;
+            int[] current = slotTable.owners();
+            int[] owners = SlotTable.spread(current.length, activeNodes);
+
+            List<Integer> prepared = new ArrayList<>();
+            for (int node = 0; node < clusterNode.nodeCount(); node++) {
+                SlotMigration migration = new SlotMigration(epoch, lostSlots(node, current, owners));
+                if (migration.getSlots().isEmpty()) {
+                    continue;
+                }
+                try {
+                    if (node == clusterNode.nodeId()) {
+                        prepare(migration);
+                    } else {
+                        clusterNode.post(node, "/api/cluster/prepare", migration, Void.class);
+                    }
+                    prepared.add(node);
+                } catch (RuntimeException e) {
+                    log.warn("Node {} could not hand over {} slots, aborting rebalance to epoch {}: {}",
+                            node, migration.getSlots().size(), epoch, e.getMessage());
+                    prepared.forEach(preparedNode -> abortQuietly(preparedNode, new SlotMigration(epoch, lostSlots(preparedNode, current, owners))));
+                    throw e;
+                }
+            }
+
+            ClusterState state = ClusterState.builder()
+                    .epoch(epoch)
+                    .owners(IntStream.of(owners).boxed().toList())
+                    .build();
+            for (int node = 0; node < clusterNode.nodeCount(); node++) {
+                if (node == clusterNode.nodeId()) {
+                    commit(state);
+                } else {
+                    commitRemote(node, state);
+                }
+            }
+            log.info("Rebalanced {} slots over nodes {} at epoch {}", owners.length, Arrays.toString(activeNodes), epoch);
+            return clusterNode.state();
+        } finally {
+            migrationLock.unlock();
+        }
+    }
+
+    /**
+     * Freezes slots this node is about to lose and writes their balances back to the database.
+     */
+    public void prepare(SlotMigration migration) {
+        if (!migrationLock.tryLock()) {
+            throw new ClusterException(Reason.CONFLICT, "Another rebalance is in progress on node " + clusterNode.nodeId());
+        }
+        try {
+            handOver(migration);
+        } finally {
+            migrationLock.unlock();
+        }
+    }
+
+    private void handOver(SlotMigration migration) {
+        if (migration.getEpoch() > slotTable.epoch() + 1) {
+            // This node missed the commit of an earlier rebalance
+            catchUp();
+        }
+        if (migration.getEpoch() != slotTable.epoch() + 1) {
+            throw new ClusterException(Reason.CONFLICT,
+                    "Cannot prepare epoch " + migration.getEpoch() + " at epoch " + slotTable.epoch());
+        }
+        int[] slots = toArray(migration.getSlots());
+        try {
+            if (!slotTable.freeze(slots, drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ClusterException(Reason.MIGRATING, "Requests in flight did not finish within " + drainTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClusterException(Reason.MIGRATING, "Interrupted while draining slots", e);
+        }
+        try {
+            Predicate<String> inSlots = inSlots(slots);
+            // The new owner expires these holds from now on
+            holdRegistry.evict(inSlots);
+            // Evicted accounts still waiting for write-back are written before the eviction returns
+            int evicted = balanceLedger.evict(inSlots);
+            if (transactionJournal != null && !transactionJournal.awaitApplied(drainTimeout)) {
+                throw new ClusterException(Reason.MIGRATING, "Journal was not applied within " + drainTimeout);
+            }
+            cardCache.invalidateIf(inSlots);
+            handedOver = slots;
+            log.info("Handed over {} slots with {} balances for epoch {}", slots.length, evicted, migration.getEpoch());
+        } catch (InterruptedException e) {
+            slotTable.unfreeze(slots);
+            Thread.currentThread().interrupt();
+            throw new ClusterException(Reason.MIGRATING, "Interrupted while applying the journal", e);
+        } catch (RuntimeException e) {
+            slotTable.unfreeze(slots);
+            throw e;
+        }
+    }
+
+    /**
+     * Installs a new assignment, forgetting cached balances of the slots this node gains and
+     * loading their outstanding holds.
+     */
+    public void commit(ClusterState state) {
+        int[] owners = toArray(state.getOwners());
+        if (state.getEpoch() <= slotTable.epoch()) {
+            throw new ClusterException(Reason.CONFLICT, "Epoch " + state.getEpoch() + " is not newer than " + slotTable.epoch());
+        }
+        // Slots handed over for a commit this node missed are back with it only if it owns them again
+        BitSet released = new BitSet(owners.length);
+        for (int slot : handedOver) {
+            released.set(slot);
+        }
+        int[] gained = IntStream.range(0, owners.length)
+                .filter(slot -> owners[slot] == clusterNode.nodeId()
+                        && (slotTable.owner(slot) != clusterNode.nodeId() || released.get(slot)))
+                .toArray();
+        Predicate<String> inSlots = inSlots(gained);
+        balanceLedger.evict(inSlots);
+        cardCache.invalidateIf(inSlots);
+        if (gained.length > 0) {
+            holdRegistry.load(inSlots);
+        }
+        if (!slotTable.install(state.getEpoch(), owners)) {
+            throw new ClusterException(Reason.CONFLICT, "Epoch " + state.getEpoch() + " is not newer than " + slotTable.epoch());
+        }
+        handedOver = new int[0];
+        log.info("Installed epoch {}, gaining {} slots", state.getEpoch(), gained.length);
+    }
+
+    /**
+     * Keeps the slots of a migration that did not commit, taking back their holds.
+     */
+    public void abort(SlotMigration migration) {
+        if (migration.getEpoch() == slotTable.epoch() + 1) {
+            int[] slots = toArray(migration.getSlots());
+            holdRegistry.load(inSlots(slots));
+            slotTable.unfreeze(slots);
+            handedOver = new int[0];
+        }
+    }
+
+    /**
+     * Reloads balances and card details from the database on this node and, unless the request was
+     * forwarded, on every other node. Needed after cards were created, imported or updated through
+     * a node not owning them. Requests are held off while the ledger is reloaded; it must not run
+     * during a rebalance.
+     */
+    public void refresh(boolean broadcast) {
+        int[] allSlots = IntStream.range(0, slotTable.slotCount()).toArray();
+        migrationLock.lock();
+        try {
+            if (!slotTable.freeze(allSlots, drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ClusterException(Reason.MIGRATING, "Requests in flight did not finish within " + drainTimeout);
+            }
+            try {
+                balanceLedger.flush();
+                balanceLedger.clear();
+                cardCache.invalidateAll();
+                balanceLedger.rebuild();
+            } finally {
+                slotTable.unfreeze(allSlots);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClusterException(Reason.MIGRATING, "Interrupted while draining slots", e);
+        } finally {
+            migrationLock.unlock();
+        }
+        if (broadcast) {
+            for (int node = 0; node < clusterNode.nodeCount(); node++) {
+                if (node != clusterNode.nodeId()) {
+                    clusterNode.post(node, "/api/cluster/refresh", null, Void.class);
+                }
+            }
+        }
+    }
+
+    /**
+     * Installs the newest assignment of the other nodes if it is newer than this node's.
+     */
+    private void catchUp() {
+        ClusterState newest = newestState();
+        if (newest != null && newest.getEpoch() > slotTable.epoch()) {
+            log.info("Catching up from epoch {} to epoch {}", slotTable.epoch(), newest.getEpoch());
+            commit(newest);
+        }
+    }
+
+    private ClusterState newestState() {
+        ClusterState newest = null;
+        for (int node = 0; node < clusterNode.nodeCount(); node++) {
+            if (node == clusterNode.nodeId()) {
+                continue;
+            }
+            try {
+                ClusterState state = clusterNode.fetchState(node);
+                if (newest == null || state.getEpoch() > newest.getEpoch()) {
+                    newest = state;
+                }
+            } catch (ClusterException e) {
+                log.debug("Node {} not reachable: {}", node, e.getMessage());
+            }
+        }
+        return newest;
+    }
+
+    private void commitRemote(int node, ClusterState state) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                clusterNode.post(node, "/api/cluster/commit", state, Void.class);
+                return;
+            } catch (ClusterException e) {
+                if (e.getReason() == Reason.CONFLICT) {
+                    // Already at this epoch or a newer one, e.g. after catching up
+                    return;
+                }
+                if (attempt == COMMIT_ATTEMPTS) {
+                    // Its lost slots stay frozen until it catches up
+                    log.warn("Node {} did not receive epoch {}: {}", node, state.getEpoch(), e.getMessage());
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100L * attempt));
+            }
+        }
+    }
+
+    private void abortQuietly(int node, SlotMigration migration) {
+        try {
+            if (node == clusterNode.nodeId()) {
+                abort(migration);
+            } else {
+                clusterNode.post(node, "/api/cluster/abort", migration, Void.class);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Node {} could not abort epoch {}, its slots stay frozen until the next rebalance: {}",
+                    node, migration.getEpoch(), e.getMessage());
+        }
+    }
+
+    private Predicate<String> inSlots(int[] slots) {
+        BitSet set = new BitSet(slotTable.slotCount());
+        for (int slot : slots) {
+            set.set(slot);
+        }
+        return cardNumber -> set.get(slotTable.slotOf(cardNumber));
+    }
+
+    private static List<Integer> lostSlots(int node, int[] current, int[] owners) {
+        return IntStream.range(0, current.length)
+                .filter(slot -> current[slot] == node && owners[slot] != node)
+                .boxed()
+                .toList();
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
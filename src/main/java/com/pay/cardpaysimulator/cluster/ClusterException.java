@@ -0,0 +1,33 @@
+package com.pay.cardpaysimulator.cluster;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a request cannot be served by the cluster right now, or a rebalance cannot proceed.
+ */
+@Getter
+public class ClusterException extends RuntimeException {
+
+    public enum Reason {
+        /** The card's slot is being moved to another node. */
+        MIGRATING,
+        /** A forwarded request reached a node that does not own the card's slot. */
+        MISROUTED,
+        /** Another node could not be reached or failed the request. */
+        NODE_UNAVAILABLE,
+        /** The rebalance conflicts with another one or with the current slot assignment. */
+        CONFLICT
+    }
+
+    private final Reason reason;
+
+    public ClusterException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public ClusterException(Reason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,197 @@
+package com.pay.cardpaysimulator.cluster;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pay.cardpaysimulator.cluster.ClusterException.Reason;
+import com.pay.cardpaysimulator.dto.ClusterState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * This node's identity in the cluster, its copy of the {@link SlotTable} and the HTTP client used
+ * to reach the other nodes.
+ * <p>
+ * Nodes are configured with the same list of base URLs ({@code simulator.cluster.nodes}) and
+ * their own index in it ({@code simulator.cluster.node-id}). Until the first rebalance, slots are
+ * spread round-robin over all configured nodes.
+ */
+@Component
+@Profile("cluster")
+public class ClusterNode {
+
+    /** Marks requests sent by another node, so they are never forwarded again. */
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded-By";
+    /** Carried over from the client, so the owning node stores and replays the response. */
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final int nodeId;
+    private final List<String> nodes;
+    private final SlotTable slotTable;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration requestTimeout;
+
+    public ClusterNode(ObjectMapper objectMapper,
+                       @Value("${simulator.cluster.node-id:0}") int nodeId,
+                       @Value("${simulator.cluster.nodes:http://localhost:8080}") String[] nodes,
+                       @Value("${simulator.cluster.slots:1024}") int slotCount,
+                       @Value("${simulator.cluster.request-timeout:2s}") Duration requestTimeout) {
+        if (nodeId < 0 || nodeId >= nodes.length) {
+            throw new IllegalArgumentException("Node ID " + nodeId + " is not an index of the " + nodes.length + " configured nodes");
+        }
+        if (slotCount < nodes.length) {
+            throw new IllegalArgumentException("Need at least one slot per node");
+        }
+        this.nodeId = nodeId;
+        this.nodes = Arrays.stream(nodes)
+                .map(String::trim)
+                .map(url -> url.endsWith("/") ? url.substring(0, url.length() - 1) : url)
+                .toList();
+        this.slotTable = new SlotTable(SlotTable.spread(slotCount, IntStream.range(0, nodes.length).toArray()));
+        this.objectMapper = objectMapper;
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(requestTimeout).build();
+    }
+
+    public int nodeId() {
+        return nodeId;
+    }
+
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    SlotTable slotTable() {
+        return slotTable;
+    }
+
+    public ClusterState state() {
+        return ClusterState.builder()
+                .nodeId(nodeId)
+                .nodes(nodes)
+                .epoch(slotTable.epoch())
+                .owners(Arrays.stream(slotTable.owners()).boxed().toList())
+                .build();
+    }
+
+    <T> T post(int node, String path, Object body, Class<T> responseType) {
+        return post(node, path, body, objectMapper.constructType(responseType));
+    }
+
+    <T> T post(int node, String path, Object body, JavaType responseType) {
+        try {
+            return this.<T>postAsync(node, path, body, responseType).join();
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Sends a JSON request to another node, marked as forwarded by this one.
+     */
+    <T> CompletableFuture<T> postAsync(int node, String path, Object body, JavaType responseType) {
+        return httpClient.sendAsync(newRequest(node, path, body).build(), HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, failure) -> {
+                    if (failure != null) {
+                        throw new ClusterException(Reason.NODE_UNAVAILABLE, "Node " + node + " is unreachable: " + failure.getMessage(), failure);
+                    }
+                    if (response.statusCode() == 409) {
+                        throw new ClusterException(Reason.CONFLICT, "Node " + node + " rejected " + path);
+                    }
+                    if (response.statusCode() != 200) {
+                        throw new ClusterException(Reason.NODE_UNAVAILABLE,
+                                "Node " + node + " answered " + path + " with HTTP status " + response.statusCode());
+                    }
+                    try {
+                        return responseType.getRawClass() == Void.class || response.body().length == 0
+                                ? null
+                                : objectMapper.readValue(response.body(), responseType);
+                    } catch (IOException e) {
+                        throw new ClusterException(Reason.NODE_UNAVAILABLE, "Node " + node + " sent an unreadable response", e);
+                    }
+                });
+    }
+
+    /**
+     * Forwards a client request to another node and returns its response as is, whatever the status.
+     */
+    HttpResponse<byte[]> forward(int node, String path, Object body, String idempotencyKey) {
+        HttpRequest.Builder request = newRequest(node, path, body);
+        if (idempotencyKey != null) {
+            request.header(IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        try {
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new ClusterException(Reason.NODE_UNAVAILABLE, "Node " + node + " is unreachable: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClusterException(Reason.NODE_UNAVAILABLE, "Interrupted while contacting node " + node, e);
+        }
+    }
+
+    <T> T readValue(byte[] body, Class<T> type) throws IOException {
+        return objectMapper.readValue(body, type);
+    }
+
+    JavaType listType(Class<?> elementType) {
+        return objectMapper.getTypeFactory().constructCollectionType(List.class, elementType);
+    }
+
+    /**
+     * Fetches the slot assignment of another node.
+     */
+    ClusterState fetchState(int node) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(nodes.get(node) + "/api/cluster"))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new ClusterException(Reason.NODE_UNAVAILABLE, "Node " + node + " answered with HTTP status " + response.statusCode());
+            }
+            return objectMapper.readValue(response.body(), ClusterState.class);
+        } catch (IOException e) {
+            throw new ClusterException(Reason.NODE_UNAVAILABLE, "Node " + node + " is unreachable: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClusterException(Reason.NODE_UNAVAILABLE, "Interrupted while contacting node " + node, e);
+        }
+    }
+
+    private HttpRequest.Builder newRequest(int node, String path, Object body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(nodes.get(node) + path))
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .header(FORWARDED_HEADER, Integer.toString(nodeId))
+                    .POST(body == null
+                            ? HttpRequest.BodyPublishers.noBody()
+                            : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static RuntimeException unwrap(RuntimeException e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && !(cause instanceof ClusterException)) {
+            cause = cause.getCause();
+        }
+        return cause instanceof ClusterException clusterException ? clusterException : e;
+    }
+}
@@ -0,0 +1,272 @@
+package com.pay.cardpaysimulator.cluster;
+
+import com.pay.cardpaysimulator.cluster.ClusterException.Reason;
+import com.pay.cardpaysimulator.dto.CaptureRequest;
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.dto.RefundRequest;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.repository.TransactionRepository;
+import com.pay.cardpaysimulator.service.CardCache;
+import com.pay.cardpaysimulator.service.PaymentService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Sends every payment, refund and hold operation to the node owning its card's slot.
+ * <p>
+ * Requests for slots owned by this node are processed locally while holding the slot, so a
+ * migration can wait for them to finish; requests for other slots are forwarded once to the owner.
+ * A forwarded request that arrives at a node no longer owning the slot, or a request for a slot
+ * being migrated, fails with a {@link ClusterException} and can be retried by the client.
+ */
+@Slf4j
+@Component
+@Profile("cluster")
+public class ClusterRouter {
+
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final ClusterNode clusterNode;
+    private final SlotTable slotTable;
+    private final PaymentService paymentService;
+    private final TransactionRepository transactionRepository;
+    private final CardCache cardCache;
+    private final int maxBatchSize;
+
+    public ClusterRouter(ClusterNode clusterNode,
+                         PaymentService paymentService,
+                         TransactionRepository transactionRepository,
+                         CardCache cardCache,
+                         @Value("${simulator.payments.max-batch-size:1000}") int maxBatchSize) {
+        this.clusterNode = clusterNode;
+        this.slotTable = clusterNode.slotTable();
+        this.paymentService = paymentService;
+        this.transactionRepository = transactionRepository;
+        this.cardCache = cardCache;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Processes the payment locally if this node owns the card, otherwise forwards it with the
+     * client's idempotency key.
+     *
+     * @param forwardedBy the node that forwarded the request, or {@code null} if it came from a client
+     * @param local       processes the payment on this node
+     */
+    public ResponseEntity<PaymentResponse> processPayment(PaymentRequest request, String forwardedBy, String idempotencyKey,
+                                                          Supplier<ResponseEntity<PaymentResponse>> local) {
+        return route(request.getCardNumber(), forwardedBy, local,
+                owner -> relay(clusterNode.forward(owner, "/api/payments/process", request, idempotencyKey)));
+    }
+
+    /**
+     * Places the hold on the node owning the card, like a payment.
+     */
+    public ResponseEntity<PaymentResponse> authorize(PaymentRequest request, String forwardedBy, String idempotencyKey,
+                                                     Supplier<ResponseEntity<PaymentResponse>> local) {
+        return route(request.getCardNumber(), forwardedBy, local,
+                owner -> relay(clusterNode.forward(owner, "/api/payments/authorize", request, idempotencyKey)));
+    }
+
+    /**
+     * Processes the refund on the node owning the card of the refunded transaction. Refunds of
+     * unknown transactions, or of attempts stored without a card, are answered locally.
+     */
+    public ResponseEntity<PaymentResponse> processRefund(Long transactionId, RefundRequest request, String forwardedBy,
+                                                         String idempotencyKey, Supplier<ResponseEntity<PaymentResponse>> local) {
+        return routeByTransaction(transactionId, forwardedBy, local,
+                owner -> relay(clusterNode.forward(owner, "/api/payments/refund/" + transactionId, request, idempotencyKey)));
+    }
+
+    /**
+     * Captures the hold on the node owning its card, which also holds it in its expiry index.
+     */
+    public ResponseEntity<PaymentResponse> capture(Long transactionId, CaptureRequest request, String forwardedBy,
+                                                   Supplier<ResponseEntity<PaymentResponse>> local) {
+        return routeByTransaction(transactionId, forwardedBy, local,
+                owner -> relay(clusterNode.forward(owner, "/api/payments/capture/" + transactionId, request, null)));
+    }
+
+    /**
+     * Voids the hold on the node owning its card.
+     */
+    public ResponseEntity<PaymentResponse> voidHold(Long transactionId, String forwardedBy,
+                                                    Supplier<ResponseEntity<PaymentResponse>> local) {
+        return routeByTransaction(transactionId, forwardedBy, local,
+                owner -> relay(clusterNode.forward(owner, "/api/payments/void/" + transactionId, null, null)));
+    }
+
+    /**
+     * Splits the batch by owning node, forwards the other nodes' parts concurrently and processes
+     * this node's part while holding all of its slots. Responses are returned in request order.
+     * <p>
+     * The parts are committed independently, so a part that cannot be processed does not fail the
+     * others: if a slot of this node's part is being migrated, or another node cannot be reached or
+     * fails its part, each item of that part gets a {@code FAILED} response with
+     * {@code PROCESSING_ERROR}. Only those items need to be retried, although a part whose node
+     * timed out may have been processed there.
+     */
+    public List<PaymentResponse> processPayments(List<PaymentRequest> requests, String forwardedBy) {
+        if (requests.isEmpty() || requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + maxBatchSize);
+        }
+        Map<Integer, List<Integer>> indexesByOwner = new TreeMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            PaymentRequest request = requests.get(i);
+            String cardNumber = request == null ? null : request.getCardNumber();
+            // Items without a card are answered locally, where they fail validation
+            int owner = cardNumber == null ? clusterNode.nodeId() : slotTable.owner(slotTable.slotOf(cardNumber));
+            indexesByOwner.computeIfAbsent(owner, node -> new ArrayList<>()).add(i);
+        }
+        if (forwardedBy != null && (indexesByOwner.size() > 1 || !indexesByOwner.containsKey(clusterNode.nodeId()))) {
+            throw new ClusterException(Reason.MISROUTED, "Batch forwarded by node " + forwardedBy + " contains cards owned by other nodes");
+        }
+
+        Map<Integer, CompletableFuture<List<PaymentResponse>>> remote = new TreeMap<>();
+        indexesByOwner.forEach((owner, indexes) -> {
+            if (owner != clusterNode.nodeId()) {
+                remote.put(owner, clusterNode.postAsync(owner, "/api/payments/process-batch",
+                        select(requests, indexes), clusterNode.listType(PaymentResponse.class)));
+            }
+        });
+
+        PaymentResponse[] responses = new PaymentResponse[requests.size()];
+        List<Integer> localIndexes = indexesByOwner.get(clusterNode.nodeId());
+        if (localIndexes != null) {
+            List<PaymentRequest> localRequests = select(requests, localIndexes);
+            int[] slots = localRequests.stream()
+                    .filter(request -> request != null && request.getCardNumber() != null)
+                    .map(request -> slotTable.slotOf(request.getCardNumber()))
+                    .collect(TreeSet<Integer>::new, TreeSet::add, TreeSet::addAll)
+                    .stream().mapToInt(Integer::intValue).toArray();
+            try {
+                List<PaymentResponse> localResponses = withSlots(slots, () -> paymentService.processPayments(localRequests));
+                for (int i = 0; i < localIndexes.size(); i++) {
+                    responses[localIndexes.get(i)] = localResponses.get(i);
+                }
+            } catch (ClusterException e) {
+                // Nothing of this node's part was processed, but the other parts may have been
+                fail(responses, localIndexes, e.getMessage());
+            }
+        }
+
+        remote.forEach((owner, future) -> {
+            List<Integer> indexes = indexesByOwner.get(owner);
+            List<PaymentResponse> remoteResponses;
+            try {
+                remoteResponses = future.join();
+            } catch (CompletionException e) {
+                log.warn("Part of a payment batch failed on node {}: {}", owner, e.getCause().getMessage());
+                fail(responses, indexes, e.getCause().getMessage());
+                return;
+            }
+            if (remoteResponses == null || remoteResponses.size() != indexes.size()) {
+                fail(responses, indexes, "Node " + owner + " sent an incomplete response");
+                return;
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                responses[indexes.get(i)] = remoteResponses.get(i);
+            }
+        });
+        return Arrays.asList(responses);
+    }
+
+    private static void fail(PaymentResponse[] responses, List<Integer> indexes, String message) {
+        indexes.forEach(i -> responses[i] = PaymentResponse.builder()
+                .status(TransactionStatus.FAILED)
+                .message("Payment processing failed: " + message)
+                .reasonCode(ReasonCode.PROCESSING_ERROR)
+                .build());
+    }
+
+    private <T> T routeByTransaction(Long transactionId, String forwardedBy, Supplier<T> local, Forwarder<T> forwarder) {
+        String cardNumber = transactionRepository.findCardIdById(transactionId)
+                .flatMap(cardCache::findById)
+                .map(Card::getCardNumber)
+                .orElse(null);
+        return route(cardNumber, forwardedBy, local, forwarder);
+    }
+
+    private <T> T route(String cardNumber, String forwardedBy, Supplier<T> local, Forwarder<T> forwarder) {
+        if (cardNumber == null) {
+            return local.get();
+        }
+        int slot = slotTable.slotOf(cardNumber);
+        int owner = slotTable.owner(slot);
+        if (owner != clusterNode.nodeId()) {
+            if (forwardedBy != null) {
+                throw new ClusterException(Reason.MISROUTED,
+                        "Slot " + slot + " is owned by node " + owner + ", not by node " + clusterNode.nodeId());
+            }
+            return forwarder.forward(owner);
+        }
+        return withSlots(new int[] {slot}, local);
+    }
+
+    /**
+     * Holds the slots while the operation runs. Fails if any of them is frozen, or changed owner
+     * before it could be entered.
+     */
+    private <T> T withSlots(int[] slots, Supplier<T> operation) {
+        int entered = 0;
+        try {
+            for (int slot : slots) {
+                if (!slotTable.enter(slot)) {
+                    throw new ClusterException(Reason.MIGRATING, "Slot " + slot + " is being migrated");
+                }
+                entered++;
+                if (slotTable.owner(slot) != clusterNode.nodeId()) {
+                    throw new ClusterException(Reason.MIGRATING, "Slot " + slot + " has moved to node " + slotTable.owner(slot));
+                }
+            }
+            return operation.get();
+        } finally {
+            for (int i = 0; i < entered; i++) {
+                slotTable.exit(slots[i]);
+            }
+        }
+    }
+
+    private ResponseEntity<PaymentResponse> relay(HttpResponse<byte[]> response) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.statusCode());
+        response.headers().firstValue(IDEMPOTENT_REPLAYED_HEADER)
+                .ifPresent(replayed -> builder.header(IDEMPOTENT_REPLAYED_HEADER, replayed));
+        if (response.body().length == 0) {
+            return builder.build();
+        }
+        try {
+            return builder.body(clusterNode.readValue(response.body(), PaymentResponse.class));
+        } catch (IOException e) {
+            throw new ClusterException(Reason.NODE_UNAVAILABLE, "Unreadable response from the owning node", e);
+        }
+    }
+
+    private static List<PaymentRequest> select(List<PaymentRequest> requests, List<Integer> indexes) {
+        List<PaymentRequest> selected = new ArrayList<>(indexes.size());
+        indexes.forEach(i -> selected.add(requests.get(i)));
+        return selected;
+    }
+
+    @FunctionalInterface
+    private interface Forwarder<T> {
+        T forward(int owner);
+    }
+}
@@ -0,0 +1,144 @@
+package com.pay.cardpaysimulator.cluster;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Assignment of card number hash slots to cluster nodes, with per-slot admission control for
+ * migrations.
+ * <p>
+ * Requests for a slot {@link #enter} it before touching the card and {@link #exit} it afterwards.
+ * {@link #freeze} closes a slot to new requests and waits for the ones in flight to finish, so
+ * a node can hand the slot's balances over without anything changing them underneath. Frozen
+ * slots reopen when a new assignment is installed or the migration is aborted.
+ */
+public final class SlotTable {
+
+    private final AtomicIntegerArray inFlight;
+    private final AtomicIntegerArray frozen;
+    private volatile Assignment assignment;
+
+    SlotTable(int[] owners) {
+        this.inFlight = new AtomicIntegerArray(owners.length);
+        this.frozen = new AtomicIntegerArray(owners.length);
+        this.assignment = new Assignment(0, owners.clone());
+    }
+
+    /**
+     * Returns the slot of a card number. It only depends on the number and the slot count, so
+     * clients can route requests themselves.
+     */
+    public static int slotOf(String cardNumber, int slotCount) {
+        int h = cardNumber.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), slotCount);
+    }
+
+    /**
+     * Assigns slots round-robin to the given nodes.
+     */
+    public static int[] spread(int slotCount, int[] nodes) {
+        int[] owners = new int[slotCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            owners[slot] = nodes[slot % nodes.length];
+        }
+        return owners;
+    }
+
+    int slotOf(String cardNumber) {
+        return slotOf(cardNumber, inFlight.length());
+    }
+
+    int slotCount() {
+        return inFlight.length();
+    }
+
+    long epoch() {
+        return assignment.epoch;
+    }
+
+    int owner(int slot) {
+        return assignment.owners[slot];
+    }
+
+    int[] owners() {
+        return assignment.owners.clone();
+    }
+
+    /**
+     * Admits a request to the slot.
+     *
+     * @return {@code false} if the slot is frozen for a migration
+     */
+    boolean enter(int slot) {
+        if (frozen.get(slot) != 0) {
+            return false;
+        }
+        inFlight.incrementAndGet(slot);
+        if (frozen.get(slot) != 0) {
+            // Frozen in between; the freezing thread may be waiting for this request to leave
+            inFlight.decrementAndGet(slot);
+            return false;
+        }
+        return true;
+    }
+
+    void exit(int slot) {
+        inFlight.decrementAndGet(slot);
+    }
+
+    /**
+     * Closes the slots to new requests and waits until the requests already admitted have left.
+     *
+     * @return {@code false} if they did not leave in time, in which case the slots are reopened
+     */
+    boolean freeze(int[] slots, long timeout, TimeUnit unit) throws InterruptedException {
+        for (int slot : slots) {
+            frozen.set(slot, 1);
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int slot : slots) {
+            while (inFlight.get(slot) != 0) {
+                if (System.nanoTime() - deadline > 0) {
+                    unfreeze(slots);
+                    return false;
+                }
+                if (Thread.interrupted()) {
+                    unfreeze(slots);
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+        }
+        return true;
+    }
+
+    void unfreeze(int[] slots) {
+        for (int slot : slots) {
+            frozen.set(slot, 0);
+        }
+    }
+
+    /**
+     * Installs a newer assignment and reopens every frozen slot. The owners are published before the
+     * slots reopen, so a request admitted afterwards always sees the new owner.
+     *
+     * @return {@code false} if the epoch is not newer than the current one
+     */
+    synchronized boolean install(long epoch, int[] owners) {
+        if (epoch <= assignment.epoch) {
+            return false;
+        }
+        if (owners.length != inFlight.length()) {
+            throw new IllegalArgumentException("Expected " + inFlight.length() + " slot owners, got " + owners.length);
+        }
+        assignment = new Assignment(epoch, owners.clone());
+        for (int slot = 0; slot < frozen.length(); slot++) {
+            frozen.set(slot, 0);
+        }
+        return true;
+    }
+
+    private record Assignment(long epoch, int[] owners) {
+    }
+}
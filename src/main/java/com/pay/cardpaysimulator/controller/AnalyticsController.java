@@ -0,0 +1,51 @@
+package com.pay.cardpaysimulator.controller;
+
+import com.pay.cardpaysimulator.analytics.PaymentAnalytics;
+import com.pay.cardpaysimulator.dto.AnalyticsSnapshot;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+@Tag(name = "Analytics", description = "Endpoints for real-time payment volume and decline rates")
+public class AnalyticsController {
+
+    private final PaymentAnalytics paymentAnalytics;
+
+    @GetMapping
+    @Operation(summary = "Get global analytics", description = "Returns transaction counts and amounts by status over the sliding window and since startup")
+    @ApiResponse(responseCode = "200", description = "Analytics retrieved successfully")
+    public ResponseEntity<AnalyticsSnapshot> getGlobal() {
+        return ResponseEntity.ok(paymentAnalytics.global());
+    }
+
+    @GetMapping("/cards/{cardNumber}")
+    @Operation(summary = "Get card analytics", description = "Returns transaction counts and amounts by status for one card")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Analytics retrieved successfully"),
+        @ApiResponse(responseCode = "404", description = "No transactions recorded for the card")
+    })
+    public ResponseEntity<AnalyticsSnapshot> getCard(@PathVariable String cardNumber) {
+        return paymentAnalytics.card(cardNumber)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/bins/{bin}")
+    @Operation(summary = "Get BIN analytics", description = "Returns transaction counts and amounts by status for all cards sharing a six-digit BIN")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Analytics retrieved successfully"),
+        @ApiResponse(responseCode = "404", description = "No transactions recorded for the BIN")
+    })
+    public ResponseEntity<AnalyticsSnapshot> getBin(@PathVariable String bin) {
+        return paymentAnalytics.bin(bin)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,11 +1,17 @@
 package com.pay.cardpaysimulator.controller;
 
+import com.pay.cardpaysimulator.audit.AuditLog;
+import com.pay.cardpaysimulator.dto.CardView;
+import com.pay.cardpaysimulator.fraud.VelocityGuard;
 import com.pay.cardpaysimulator.model.Card;
 import com.pay.cardpaysimulator.repository.CardRepository;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import com.pay.cardpaysimulator.service.CardCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -25,6 +31,9 @@ import java.util.stream.Collectors;
 public class CardController {
 
     private final CardRepository cardRepository;
+    private final BalanceLedger balanceLedger;
+    private final CardCache cardCache;
+    private final VelocityGuard velocityGuard;
 
     @PostMapping("/initialize")
     @Operation(summary = "Initialize valid test cards", description = "Creates a set of valid test cards with different balances")
@@ -32,7 +41,7 @@ public class CardController {
         @ApiResponse(responseCode = "200", description = "Cards initialized successfully"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<List<Card>> initializeValidCards() {
+    public ResponseEntity<List<CardView>> initializeValidCards() {
         try {
             // Clear existing cards
             cardRepository.deleteAll();
@@ -46,7 +55,10 @@ public class CardController {
             );
 
             List<Card> savedCards = cardRepository.saveAll(cards);
-            return ResponseEntity.ok(savedCards);
+            cardCache.invalidateAll();
+            balanceLedger.clear();
+            savedCards.forEach(balanceLedger::reload);
+            return ResponseEntity.ok(savedCards.stream().map(CardView::of).toList());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -58,7 +70,7 @@ public class CardController {
         @ApiResponse(responseCode = "200", description = "Test scenario cards initialized successfully"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<List<Card>> initializeTestScenarioCards() {
+    public ResponseEntity<List<CardView>> initializeTestScenarioCards() {
         try {
             // Clear existing cards
             cardRepository.deleteAll();
@@ -87,7 +99,10 @@ public class CardController {
             );
 
             List<Card> savedCards = cardRepository.saveAll(cards);
-            return ResponseEntity.ok(savedCards);
+            cardCache.invalidateAll();
+            balanceLedger.clear();
+            savedCards.forEach(balanceLedger::reload);
+            return ResponseEntity.ok(savedCards.stream().map(CardView::of).toList());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -100,10 +115,12 @@ public class CardController {
         @ApiResponse(responseCode = "400", description = "Invalid card details"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<Card> createCard(@RequestBody Card card) {
+    public ResponseEntity<CardView> createCard(@Valid @RequestBody Card card) {
         try {
             Card savedCard = cardRepository.save(card);
-            return ResponseEntity.ok(savedCard);
+            cardCache.invalidate(savedCard.getCardNumber());
+            balanceLedger.reload(savedCard);
+            return ResponseEntity.ok(CardView.of(savedCard));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -115,10 +132,10 @@ public class CardController {
         @ApiResponse(responseCode = "200", description = "Cards retrieved successfully"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<List<Card>> getAllCards() {
+    public ResponseEntity<List<CardView>> getAllCards() {
         try {
             log.info("Fetching all cards from database");
-            List<Card> cards = cardRepository.findAll();
+            List<CardView> cards = cardRepository.findAllViews();
             log.info("Found {} cards", cards.size());
             return ResponseEntity.ok(cards);
         } catch (Exception e) {
@@ -134,20 +151,43 @@ public class CardController {
         @ApiResponse(responseCode = "404", description = "Card not found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<Card> getCardByNumber(@PathVariable String cardNumber) {
+    public ResponseEntity<CardView> getCardByNumber(@PathVariable String cardNumber) {
         try {
-            log.info("Fetching card with number: {}", cardNumber);
-            return cardRepository.findByCardNumber(cardNumber)
+            log.info("Fetching card with number: {}", AuditLog.mask(cardNumber));
+            return cardCache.findByCardNumber(cardNumber)
                     .map(card -> {
-                        log.info("Card found: {}", card);
-                        return ResponseEntity.ok(card);
+                        log.debug("Card found with ID: {}", card.getId());
+                        return ResponseEntity.ok(CardView.of(card, balanceLedger.getBalance(cardNumber).orElse(card.getBalance())));
                     })
                     .orElseGet(() -> {
-                        log.warn("Card not found with number: {}", cardNumber);
+                        log.warn("Card not found with number: {}", AuditLog.mask(cardNumber));
                         return ResponseEntity.notFound().build();
                     });
         } catch (Exception e) {
-            log.error("Error fetching card with number: {}", cardNumber, e);
+            log.error("Error fetching card with number: {}", AuditLog.mask(cardNumber), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/{cardNumber}/unlock")
+    @Operation(summary = "Unlock a card", description = "Lifts the lock placed on a card after repeated CVV failures and clears its CVV failures")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Card unlocked, or it was not locked"),
+        @ApiResponse(responseCode = "404", description = "Card not found"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<Void> unlockCard(@PathVariable String cardNumber) {
+        try {
+            return cardCache.findByCardNumber(cardNumber)
+                    .map(card -> {
+                        if (velocityGuard.unlock(card)) {
+                            log.info("Card {} unlocked", AuditLog.mask(cardNumber));
+                        }
+                        return ResponseEntity.ok().<Void>build();
+                    })
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            log.error("Error unlocking card with number: {}", AuditLog.mask(cardNumber), e);
             return ResponseEntity.internalServerError().build();
         }
     }
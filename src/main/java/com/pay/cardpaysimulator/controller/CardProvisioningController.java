@@ -0,0 +1,83 @@
+package com.pay.cardpaysimulator.controller;
+
+import com.pay.cardpaysimulator.dto.CardGenerationRequest;
+import com.pay.cardpaysimulator.dto.ProvisioningReport;
+import com.pay.cardpaysimulator.provisioning.CardBulkLoader;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/cards/bulk")
+@RequiredArgsConstructor
+@Tag(name = "Card Provisioning", description = "Endpoints for generating and importing large numbers of cards")
+public class CardProvisioningController {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
+    private final CardBulkLoader cardBulkLoader;
+
+    @PostMapping("/generate")
+    @Operation(summary = "Generate synthetic cards", description = "Generates and inserts Luhn-valid cards with the given BIN mix and balance distribution. Blocks until all cards are inserted")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cards generated successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid generation request"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<ProvisioningReport> generate(@RequestBody CardGenerationRequest request) {
+        try {
+            ProvisioningReport report = cardBulkLoader.generate(request);
+            log.info("Generated {} cards at {} rows/s", report.getInserted(), report.getRowsPerSecond());
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected card generation request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error generating cards", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = CSV)
+    @Operation(summary = "Import cards from CSV", description = "Streams cards from CSV with the columns cardNumber,cardholderName,expirationDate,cvv,balance")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cards imported; invalid rows and existing card numbers are counted and skipped"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<ProvisioningReport> importCsv(InputStream body) {
+        try {
+            ProvisioningReport report = cardBulkLoader.importCsv(body);
+            log.info("Imported {} cards from CSV, {} rejected", report.getInserted(), report.getRejected());
+            return ResponseEntity.ok(report);
+        } catch (Exception e) {
+            log.error("Error importing cards from CSV", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = NDJSON)
+    @Operation(summary = "Import cards from NDJSON", description = "Streams cards from newline-delimited JSON objects with the same fields as POST /api/cards")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cards imported; invalid rows and existing card numbers are counted and skipped"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<ProvisioningReport> importNdjson(InputStream body) {
+        try {
+            ProvisioningReport report = cardBulkLoader.importNdjson(body);
+            log.info("Imported {} cards from NDJSON, {} rejected", report.getInserted(), report.getRejected());
+            return ResponseEntity.ok(report);
+        } catch (Exception e) {
+            log.error("Error importing cards from NDJSON", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.pay.cardpaysimulator.controller;
+
+import com.pay.cardpaysimulator.cluster.ClusterCoordinator;
+import com.pay.cardpaysimulator.cluster.ClusterException;
+import com.pay.cardpaysimulator.cluster.ClusterNode;
+import com.pay.cardpaysimulator.dto.ClusterState;
+import com.pay.cardpaysimulator.dto.RebalanceRequest;
+import com.pay.cardpaysimulator.dto.SlotMigration;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Slf4j
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+@RequiredArgsConstructor
+@Tag(name = "Cluster", description = "Endpoints for inspecting and rebalancing the card slots of a multi-node cluster")
+public class ClusterController {
+
+    private final ClusterNode clusterNode;
+    private final ClusterCoordinator clusterCoordinator;
+
+    @GetMapping
+    @Operation(summary = "Get cluster state", description = "Returns this node's ID, the configured nodes and the current slot assignment")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cluster state retrieved successfully")
+    })
+    public ResponseEntity<ClusterState> getState() {
+        return ResponseEntity.ok(clusterNode.state());
+    }
+
+    @PostMapping("/rebalance")
+    @Operation(summary = "Rebalance slots", description = "Spreads the card slots evenly over the given nodes. Requests for moving slots "
+            + "are answered with 503 while their balances are handed over")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Slots rebalanced"),
+        @ApiResponse(responseCode = "400", description = "Invalid node list"),
+        @ApiResponse(responseCode = "409", description = "Another rebalance is in progress"),
+        @ApiResponse(responseCode = "503", description = "A node could not hand over its slots; the rebalance was aborted"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<ClusterState> rebalance(@RequestBody RebalanceRequest request) {
+        try {
+            return ResponseEntity.ok(clusterCoordinator.rebalance(request));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected rebalance request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (Exception e) {
+            log.error("Error rebalancing cluster", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/prepare")
+    @Operation(summary = "Prepare a slot handover", description = "Used between nodes: freezes the slots this node is losing and writes their balances to the database")
+    public ResponseEntity<Void> prepare(@RequestBody SlotMigration migration) {
+        try {
+            clusterCoordinator.prepare(migration);
+            return ResponseEntity.ok().build();
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (Exception e) {
+            log.error("Error preparing slot handover for epoch {}", migration.getEpoch(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/commit")
+    @Operation(summary = "Commit a slot assignment", description = "Used between nodes: installs a new slot assignment")
+    public ResponseEntity<Void> commit(@RequestBody ClusterState state) {
+        try {
+            clusterCoordinator.commit(state);
+            return ResponseEntity.ok().build();
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (Exception e) {
+            log.error("Error committing epoch {}", state.getEpoch(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/abort")
+    @Operation(summary = "Abort a slot handover", description = "Used between nodes: reopens the slots frozen by a prepared handover")
+    public ResponseEntity<Void> abort(@RequestBody SlotMigration migration) {
+        clusterCoordinator.abort(migration);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/refresh")
+    @Operation(summary = "Reload balances", description = "Reloads balances and card details from the database on every node, "
+            + "e.g. after importing cards. Must not run during a rebalance")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Balances reloaded"),
+        @ApiResponse(responseCode = "503", description = "A node could not be reloaded"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<Void> refresh(@RequestHeader(value = ClusterNode.FORWARDED_HEADER, required = false) String forwardedBy) {
+        try {
+            clusterCoordinator.refresh(forwardedBy == null);
+            return ResponseEntity.ok().build();
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (Exception e) {
+            log.error("Error reloading balances", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private <T> ResponseEntity<T> clusterFailure(ClusterException e) {
+        log.warn("Cluster operation failed: {}", e.getMessage());
+        HttpStatus status = e.getReason() == ClusterException.Reason.CONFLICT ? HttpStatus.CONFLICT : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).build();
+    }
+}
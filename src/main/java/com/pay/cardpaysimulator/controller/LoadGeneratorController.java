@@ -0,0 +1,66 @@
+package com.pay.cardpaysimulator.controller;
+
+import com.pay.cardpaysimulator.dto.LoadProfile;
+import com.pay.cardpaysimulator.dto.LoadReport;
+import com.pay.cardpaysimulator.dto.ReplayRequest;
+import com.pay.cardpaysimulator.loadgen.LoadGenerator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/loadgen")
+@RequiredArgsConstructor
+@Tag(name = "Load Generator", description = "Endpoints for generating, recording and replaying payment traffic")
+public class LoadGeneratorController {
+
+    private final LoadGenerator loadGenerator;
+
+    @PostMapping("/run")
+    @Operation(summary = "Run a load test", description = "Generates open-loop payment and refund traffic and reports throughput and latency percentiles. Blocks until the run completes")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Load run completed"),
+        @ApiResponse(responseCode = "400", description = "Invalid load profile"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<LoadReport> run(@RequestBody LoadProfile profile) {
+        try {
+            LoadReport report = loadGenerator.run(profile);
+            log.info("Load run finished: {} requests, {}/s, p99 {}us", report.getRequests(), report.getThroughputPerSecond(), report.getP99Micros());
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected load profile: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error running load test", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/replay")
+    @Operation(summary = "Replay recorded traffic", description = "Replays a traffic log recorded by a previous load run with its original timing")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Replay completed"),
+        @ApiResponse(responseCode = "400", description = "Invalid replay request"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<LoadReport> replay(@RequestBody ReplayRequest request) {
+        try {
+            LoadReport report = loadGenerator.replay(request);
+            log.info("Replay finished: {} requests, {}/s, p99 {}us", report.getRequests(), report.getThroughputPerSecond(), report.getP99Micros());
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected replay request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error replaying traffic from {}", request.getFile(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
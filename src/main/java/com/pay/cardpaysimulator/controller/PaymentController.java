@@ -1,66 +1,265 @@
 package com.pay.cardpaysimulator.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pay.cardpaysimulator.audit.AuditLog;
+import com.pay.cardpaysimulator.cluster.ClusterException;
+import com.pay.cardpaysimulator.cluster.ClusterNode;
+import com.pay.cardpaysimulator.cluster.ClusterRouter;
+import com.pay.cardpaysimulator.dto.CaptureRequest;
 import com.pay.cardpaysimulator.dto.PaymentRequest;
 import com.pay.cardpaysimulator.dto.PaymentResponse;
-import com.pay.cardpaysimulator.model.Transaction;
+import com.pay.cardpaysimulator.dto.RefundRequest;
+import com.pay.cardpaysimulator.dto.TransactionPage;
+import com.pay.cardpaysimulator.dto.TransactionView;
+import com.pay.cardpaysimulator.idempotency.IdempotencyException;
+import com.pay.cardpaysimulator.idempotency.IdempotencyStore;
+import com.pay.cardpaysimulator.model.TransactionStatus;
 import com.pay.cardpaysimulator.service.PaymentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import lombok.RequiredArgsConstructor;
+import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Supplier;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/payments")
-@RequiredArgsConstructor
 @Tag(name = "Payment Processing", description = "Endpoints for processing payments and managing transactions")
 public class PaymentController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final PaymentService paymentService;
+    private final IdempotencyStore idempotencyStore;
+    private final ClusterRouter clusterRouter;
+    private final ObjectWriter ndjsonWriter;
+
+    public PaymentController(PaymentService paymentService, IdempotencyStore idempotencyStore,
+                             ObjectProvider<ClusterRouter> clusterRouter, ObjectMapper objectMapper) {
+        this.paymentService = paymentService;
+        this.idempotencyStore = idempotencyStore;
+        this.clusterRouter = clusterRouter.getIfAvailable();
+        this.ndjsonWriter = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
 
     @PostMapping("/process")
-    @Operation(summary = "Process a payment", description = "Processes a payment with the provided card details")
+    @Operation(summary = "Process a payment", description = "Processes a payment with the provided card details. "
+            + "Retries sent with the same Idempotency-Key return the original response instead of charging again")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Payment processed successfully"),
-        @ApiResponse(responseCode = "400", description = "Invalid payment request"),
+        @ApiResponse(responseCode = "400", description = "Invalid payment request or idempotency key"),
+        @ApiResponse(responseCode = "409", description = "A request with the same idempotency key is still being processed"),
+        @ApiResponse(responseCode = "422", description = "The idempotency key was already used for a different request"),
+        @ApiResponse(responseCode = "503", description = "In cluster mode, the card is being moved to another node or its node is unavailable"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<PaymentResponse> processPayment(@RequestBody PaymentRequest request) {
+    public ResponseEntity<PaymentResponse> processPayment(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = ClusterNode.FORWARDED_HEADER, required = false) String forwardedBy,
+            @Valid @RequestBody PaymentRequest request) {
         try {
-            log.info("Processing payment request: {}", request);
-            PaymentResponse response = paymentService.processPayment(request);
-            log.info("Payment processed with status: {}", response.getStatus());
-            return ResponseEntity.ok(response);
+            Supplier<ResponseEntity<PaymentResponse>> local = () -> idempotent(idempotencyKey, IdempotencyStore.fingerprint(request), () -> {
+                PaymentResponse response = paymentService.processPayment(request);
+                log.debug("Payment processed with status: {}", response.getStatus());
+                return response;
+            });
+            return clusterRouter == null ? local.get() : clusterRouter.processPayment(request, forwardedBy, idempotencyKey, local);
+        } catch (IdempotencyException e) {
+            return idempotencyFailure(e);
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected payment request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error processing payment", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    @PostMapping("/authorize")
+    @Operation(summary = "Authorize a payment", description = "Places a hold for the amount on the card without charging it. "
+            + "The hold is captured or voided later, or released automatically once it expires. "
+            + "Retries sent with the same Idempotency-Key return the original response instead of placing another hold")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Authorization processed successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid payment request or idempotency key"),
+        @ApiResponse(responseCode = "409", description = "A request with the same idempotency key is still being processed"),
+        @ApiResponse(responseCode = "422", description = "The idempotency key was already used for a different request"),
+        @ApiResponse(responseCode = "503", description = "In cluster mode, the card is being moved to another node or its node is unavailable"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<PaymentResponse> authorize(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = ClusterNode.FORWARDED_HEADER, required = false) String forwardedBy,
+            @Valid @RequestBody PaymentRequest request) {
+        try {
+            Supplier<ResponseEntity<PaymentResponse>> local = () -> idempotent(idempotencyKey, IdempotencyStore.authorizationFingerprint(request), () -> {
+                PaymentResponse response = paymentService.authorize(request);
+                log.debug("Authorization processed with status: {}", response.getStatus());
+                return response;
+            });
+            return clusterRouter == null ? local.get() : clusterRouter.authorize(request, forwardedBy, idempotencyKey, local);
+        } catch (IdempotencyException e) {
+            return idempotencyFailure(e);
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected authorization request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error processing authorization", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/capture/{transactionId}")
+    @Operation(summary = "Capture a hold", description = "Charges an outstanding hold, in full or, if an amount is given, partially. "
+            + "The rest of the hold goes back to the card. Capturing is safe to retry: a hold is only captured once")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Capture processed successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid capture amount"),
+        @ApiResponse(responseCode = "503", description = "In cluster mode, the card is being moved to another node or its node is unavailable"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<PaymentResponse> capture(
+            @RequestHeader(value = ClusterNode.FORWARDED_HEADER, required = false) String forwardedBy,
+            @PathVariable Long transactionId,
+            @Valid @RequestBody(required = false) CaptureRequest request) {
+        try {
+            Supplier<ResponseEntity<PaymentResponse>> local = () -> {
+                PaymentResponse response = paymentService.capture(transactionId, request == null ? null : request.getAmount());
+                log.debug("Capture processed with status: {}", response.getStatus());
+                return ResponseEntity.ok(response);
+            };
+            return clusterRouter == null ? local.get() : clusterRouter.capture(transactionId, request, forwardedBy, local);
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (Exception e) {
+            log.error("Error capturing hold for transaction ID: {}", transactionId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/void/{transactionId}")
+    @Operation(summary = "Void a hold", description = "Releases an outstanding hold without charging the card")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Void processed successfully"),
+        @ApiResponse(responseCode = "503", description = "In cluster mode, the card is being moved to another node or its node is unavailable"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<PaymentResponse> voidHold(
+            @RequestHeader(value = ClusterNode.FORWARDED_HEADER, required = false) String forwardedBy,
+            @PathVariable Long transactionId) {
+        try {
+            Supplier<ResponseEntity<PaymentResponse>> local = () -> {
+                PaymentResponse response = paymentService.voidHold(transactionId);
+                log.debug("Void processed with status: {}", response.getStatus());
+                return ResponseEntity.ok(response);
+            };
+            return clusterRouter == null ? local.get() : clusterRouter.voidHold(transactionId, forwardedBy, local);
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (Exception e) {
+            log.error("Error voiding hold for transaction ID: {}", transactionId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/process-batch")
+    @Operation(summary = "Process a batch of payments", description = "Authorizes several payments in one call and returns one response per payment, in request order")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed successfully"),
+        @ApiResponse(responseCode = "400", description = "Empty or oversized batch"),
+        @ApiResponse(responseCode = "503", description = "In cluster mode, a forwarded batch reached a node not owning all of its cards"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<List<PaymentResponse>> processPayments(
+            @RequestHeader(value = ClusterNode.FORWARDED_HEADER, required = false) String forwardedBy,
+            @RequestBody List<PaymentRequest> requests) {
+        try {
+            List<PaymentResponse> responses = clusterRouter == null
+                    ? paymentService.processPayments(requests)
+                    : clusterRouter.processPayments(requests, forwardedBy);
+            log.debug("Payment batch of {} processed", responses.size());
+            return ResponseEntity.ok(responses);
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected payment batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error processing payment batch", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @GetMapping("/transactions")
-    @Operation(summary = "Get all transactions", description = "Retrieves all payment transactions")
+    @Operation(summary = "Get transactions", description = "Retrieves one page of payment transactions ordered by timestamp and ID, optionally within a time range "
+            + "and with a given status. Pass the cursor of the previous page to get the next one")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Transactions retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor, time range or page size"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<List<Transaction>> getAllTransactions() {
+    public ResponseEntity<TransactionPage> getAllTransactions(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
         try {
-            log.info("Fetching all transactions");
-            List<Transaction> transactions = paymentService.getAllTransactions();
-            log.info("Found {} transactions", transactions.size());
-            return ResponseEntity.ok(transactions);
+            log.info("Fetching transactions after {}/{}", afterTimestamp, afterId);
+            TransactionPage page = paymentService.getTransactions(null, status, from, to, afterTimestamp, afterId, limit);
+            log.info("Found {} transactions", page.getItems().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid transaction page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error fetching transactions", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    @GetMapping(value = "/transactions/stream", produces = NDJSON)
+    @Operation(summary = "Stream all transactions", description = "Streams every payment transaction as newline-delimited JSON")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Transactions streamed successfully")
+    })
+    public ResponseEntity<StreamingResponseBody> streamAllTransactions() {
+        log.info("Streaming all transactions");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(outputStream -> writeTransactions(null, outputStream));
+    }
+
     @GetMapping("/transactions/{transactionId}")
     @Operation(summary = "Get transaction by ID", description = "Retrieves a specific transaction by its ID")
     @ApiResponses(value = {
@@ -68,12 +267,12 @@ public class PaymentController {
         @ApiResponse(responseCode = "404", description = "Transaction not found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<Transaction> getTransactionById(@PathVariable Long transactionId) {
+    public ResponseEntity<TransactionView> getTransactionById(@PathVariable Long transactionId) {
         try {
             log.info("Fetching transaction with ID: {}", transactionId);
             return paymentService.getTransactionById(transactionId)
                     .map(transaction -> {
-                        log.info("Transaction found: {}", transaction);
+                        log.debug("Transaction found with status: {}", transaction.status());
                         return ResponseEntity.ok(transaction);
                     })
                     .orElseGet(() -> {
@@ -87,42 +286,84 @@ public class PaymentController {
     }
 
     @GetMapping("/transactions/card/{cardNumber}")
-    @Operation(summary = "Get transactions by card number", description = "Retrieves all transactions for a specific card")
+    @Operation(summary = "Get transactions by card number", description = "Retrieves one page of transactions for a specific card ordered by timestamp and ID, "
+            + "optionally within a time range")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Transactions retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor, time range or page size"),
         @ApiResponse(responseCode = "404", description = "No transactions found for the card"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<List<Transaction>> getTransactionsByCardNumber(@PathVariable String cardNumber) {
+    public ResponseEntity<TransactionPage> getTransactionsByCardNumber(
+            @PathVariable String cardNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
         try {
-            log.info("Fetching transactions for card: {}", cardNumber);
-            List<Transaction> transactions = paymentService.getTransactionsByCardNumber(cardNumber);
-            if (transactions.isEmpty()) {
-                log.warn("No transactions found for card: {}", cardNumber);
+            log.info("Fetching transactions for card: {}", AuditLog.mask(cardNumber));
+            TransactionPage page = paymentService.getTransactions(cardNumber, null, from, to, afterTimestamp, afterId, limit);
+            if (page.getItems().isEmpty() && afterId == null) {
+                log.warn("No transactions found for card: {}", AuditLog.mask(cardNumber));
                 return ResponseEntity.notFound().build();
             }
-            log.info("Found {} transactions for card: {}", transactions.size(), cardNumber);
-            return ResponseEntity.ok(transactions);
+            log.info("Found {} transactions for card: {}", page.getItems().size(), AuditLog.mask(cardNumber));
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid transaction page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
-            log.error("Error fetching transactions for card: {}", cardNumber, e);
+            log.error("Error fetching transactions for card: {}", AuditLog.mask(cardNumber), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    @GetMapping(value = "/transactions/card/{cardNumber}/stream", produces = NDJSON)
+    @Operation(summary = "Stream transactions by card number", description = "Streams every transaction of a specific card as newline-delimited JSON")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Transactions streamed successfully")
+    })
+    public ResponseEntity<StreamingResponseBody> streamTransactionsByCardNumber(@PathVariable String cardNumber) {
+        log.info("Streaming transactions for card: {}", AuditLog.mask(cardNumber));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(outputStream -> writeTransactions(cardNumber, outputStream));
+    }
+
     @PostMapping("/refund/{transactionId}")
-    @Operation(summary = "Process a refund", description = "Processes a refund for a specific transaction")
+    @Operation(summary = "Process a refund", description = "Refunds a transaction, in full or, if an amount is given, partially. "
+            + "A transaction can be refunded partially several times until its whole amount has been refunded. "
+            + "Retries sent with the same Idempotency-Key return the original response")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Refund processed successfully"),
-        @ApiResponse(responseCode = "400", description = "Invalid refund request"),
+        @ApiResponse(responseCode = "400", description = "Invalid refund request or idempotency key"),
         @ApiResponse(responseCode = "404", description = "Transaction not found"),
+        @ApiResponse(responseCode = "409", description = "A request with the same idempotency key is still being processed"),
+        @ApiResponse(responseCode = "422", description = "The idempotency key was already used for a different request"),
+        @ApiResponse(responseCode = "503", description = "In cluster mode, the card is being moved to another node or its node is unavailable"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<PaymentResponse> processRefund(@PathVariable Long transactionId) {
+    public ResponseEntity<PaymentResponse> processRefund(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = ClusterNode.FORWARDED_HEADER, required = false) String forwardedBy,
+            @PathVariable Long transactionId,
+            @Valid @RequestBody(required = false) RefundRequest request) {
         try {
-            log.info("Processing refund for transaction ID: {}", transactionId);
-            PaymentResponse response = paymentService.processRefund(transactionId);
-            log.info("Refund processed with status: {}", response.getStatus());
-            return ResponseEntity.ok(response);
+            BigDecimal amount = request == null ? null : request.getAmount();
+            Supplier<ResponseEntity<PaymentResponse>> local = () -> idempotent(idempotencyKey, IdempotencyStore.fingerprint(transactionId, amount), () -> {
+                PaymentResponse response = paymentService.processRefund(transactionId, amount);
+                log.debug("Refund processed with status: {}", response.getStatus());
+                return response;
+            });
+            return clusterRouter == null ? local.get() : clusterRouter.processRefund(transactionId, request, forwardedBy, idempotencyKey, local);
+        } catch (IdempotencyException e) {
+            return idempotencyFailure(e);
+        } catch (ClusterException e) {
+            return clusterFailure(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected refund request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error processing refund for transaction ID: {}", transactionId, e);
             return ResponseEntity.internalServerError().build();
@@ -153,4 +394,42 @@ public class PaymentController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    private ResponseEntity<PaymentResponse> idempotent(String idempotencyKey, long fingerprint, Supplier<PaymentResponse> operation) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(operation.get());
+        }
+        IdempotencyStore.Result result = idempotencyStore.execute(idempotencyKey, fingerprint, operation);
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(result.replayed()))
+                .body(result.response());
+    }
+
+    private ResponseEntity<PaymentResponse> idempotencyFailure(IdempotencyException e) {
+        log.warn("Rejected idempotent request: {}", e.getMessage());
+        HttpStatus status = switch (e.getReason()) {
+            case IN_PROGRESS -> HttpStatus.CONFLICT;
+            case KEY_REUSED -> HttpStatus.UNPROCESSABLE_ENTITY;
+            case STORE_FULL -> HttpStatus.SERVICE_UNAVAILABLE;
+        };
+        return ResponseEntity.status(status).build();
+    }
+
+    private <T> ResponseEntity<T> clusterFailure(ClusterException e) {
+        log.warn("Request could not be routed: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    private void writeTransactions(String cardNumber, OutputStream outputStream) throws IOException {
+        OutputStream out = new BufferedOutputStream(outputStream, STREAM_BUFFER_SIZE);
+        paymentService.streamTransactions(cardNumber, transaction -> {
+            try {
+                ndjsonWriter.writeValue(out, transaction);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.pay.cardpaysimulator.controller;
+
+import com.pay.cardpaysimulator.dto.SettlementReport;
+import com.pay.cardpaysimulator.settlement.SettlementJob;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/settlement")
+@RequiredArgsConstructor
+@Tag(name = "Settlement", description = "Endpoints for settling transactions and reconciling card balances")
+public class SettlementController {
+
+    private final SettlementJob settlementJob;
+
+    @PostMapping("/run")
+    @Operation(summary = "Run settlement", description = "Settles the approved and refunded transactions between from (inclusive) and to "
+            + "(exclusive), the previous day by default, and reconciles every card balance. A window that was interrupted resumes "
+            + "from its checkpoints; a window that completed returns its earlier report")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Settlement completed"),
+        @ApiResponse(responseCode = "400", description = "Invalid window"),
+        @ApiResponse(responseCode = "409", description = "Another settlement run is in progress"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<SettlementReport> run(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if ((from == null) != (to == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (from == null) {
+            to = LocalDate.now().atStartOfDay();
+            from = to.minusDays(1);
+        }
+        try {
+            return ResponseEntity.ok(settlementJob.settle(from, to));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected settlement request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            log.error("Error settling transactions from {} to {}", from, to, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AnalyticsSnapshot {
+    @Schema(description = "What the figures cover: all transactions, one card or one BIN", example = "card")
+    private String scope;
+
+    @Schema(description = "Masked card number or BIN the figures cover, absent for the global scope", example = "411111******1111")
+    private String key;
+
+    @Schema(description = "Length of the sliding window in seconds", example = "60")
+    private int windowSeconds;
+
+    @Schema(description = "Transactions by status within the sliding window")
+    private Map<String, StatusTotals> window;
+
+    @Schema(description = "Transactions by status since startup, including those already in the database at startup")
+    private Map<String, StatusTotals> totals;
+
+    @Schema(description = "Share of payments in the window that were declined", example = "0.05")
+    private double windowDeclineRate;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class StatusTotals {
+        @Schema(description = "Number of transactions", example = "1200")
+        private long count;
+
+        @Schema(description = "Sum of the transaction amounts", example = "35120.50")
+        private BigDecimal amount;
+    }
+}
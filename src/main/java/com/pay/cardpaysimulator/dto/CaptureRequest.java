@@ -0,0 +1,19 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CaptureRequest {
+    @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+    @Digits(integer = 15, fraction = 2, message = "Amount must not have fractions of a cent")
+    @Schema(description = "Amount to capture, at most the held amount; the whole hold is captured if empty. The rest of the hold is released", example = "60.00")
+    private BigDecimal amount;
+}
@@ -0,0 +1,63 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardGenerationRequest {
+    @Builder.Default
+    @Schema(description = "Number of cards to generate", example = "1000000")
+    private long count = 1000;
+
+    @Schema(description = "Random seed; the same seed and settings generate the same cards. Random if omitted", example = "42")
+    private Long seed;
+
+    @Builder.Default
+    @Schema(description = "Weighted BIN mix; defaults to Visa, Mastercard, American Express and Discover BINs")
+    private List<BinWeight> bins = new ArrayList<>();
+
+    @Builder.Default
+    @Schema(description = "Minimum card balance", example = "10.00")
+    private BigDecimal minBalance = new BigDecimal("10.00");
+
+    @Builder.Default
+    @Schema(description = "Maximum card balance", example = "10000.00")
+    private BigDecimal maxBalance = new BigDecimal("10000.00");
+
+    @Builder.Default
+    @Schema(description = "How balances are spread between the minimum and maximum", example = "LOG_UNIFORM")
+    private BalanceDistribution balanceDistribution = BalanceDistribution.LOG_UNIFORM;
+
+    public enum BalanceDistribution {
+        /** Every amount in the range is equally likely. */
+        UNIFORM,
+        /** Every order of magnitude in the range is equally likely, so small balances are common. */
+        LOG_UNIFORM
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class BinWeight {
+        @Schema(description = "Issuer identification number the card numbers start with, 4 to 8 digits", example = "411111")
+        private String bin;
+
+        @Builder.Default
+        @Schema(description = "Total card number length, including the check digit", example = "16")
+        private int length = 16;
+
+        @Builder.Default
+        @Schema(description = "Relative weight of this BIN in the mix", example = "1")
+        private double weight = 1;
+    }
+}
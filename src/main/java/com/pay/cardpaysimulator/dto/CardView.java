@@ -0,0 +1,40 @@
+package com.pay.cardpaysimulator.dto;
+
+import com.pay.cardpaysimulator.audit.AuditLog;
+import com.pay.cardpaysimulator.model.Card;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Read model of a card without its CVV. The card number is masked when the view is constructed.
+ */
+public record CardView(
+        @Schema(description = "Card ID", example = "1")
+        Long id,
+
+        @Schema(description = "Card number with all but its first six and last four digits masked", example = "424242******4242")
+        String cardNumber,
+
+        @Schema(description = "Name of the cardholder", example = "John Doe")
+        String cardholderName,
+
+        @Schema(description = "Last day the card is valid", example = "2027-12-31")
+        LocalDate expirationDate,
+
+        @Schema(description = "Available balance", example = "1000.00")
+        BigDecimal balance) {
+
+    public CardView {
+        cardNumber = AuditLog.mask(cardNumber);
+    }
+
+    public static CardView of(Card card) {
+        return of(card, card.getBalance());
+    }
+
+    public static CardView of(Card card, BigDecimal balance) {
+        return new CardView(card.getId(), card.getCardNumber(), card.getCardholderName(), card.getExpirationDate(), balance);
+    }
+}
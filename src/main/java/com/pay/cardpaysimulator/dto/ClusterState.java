@@ -0,0 +1,25 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClusterState {
+    @Schema(description = "Index of the node that answered in the node list", example = "0")
+    private int nodeId;
+
+    @Schema(description = "Base URLs of all nodes, indexed by node ID", example = "[\"http://localhost:8080\", \"http://localhost:8090\"]")
+    private List<String> nodes;
+
+    @Schema(description = "Version of the slot assignment; every rebalance increments it", example = "3")
+    private long epoch;
+
+    @Schema(description = "Owning node ID of each card number slot, indexed by slot")
+    private List<Integer> owners;
+}
@@ -0,0 +1,71 @@
+package com.pay.cardpaysimulator.dto;
+
+import com.pay.cardpaysimulator.loadgen.LoadTarget;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoadProfile {
+    @Builder.Default
+    @Schema(description = "Mean open-loop arrival rate in requests per second (Poisson arrivals)", example = "500")
+    private double ratePerSecond = 100;
+
+    @Builder.Default
+    @Schema(description = "How long to generate load for", example = "10")
+    private int durationSeconds = 10;
+
+    @Builder.Default
+    @Schema(description = "Fraction of requests that refund a previously approved payment", example = "0.1")
+    private double refundRatio = 0;
+
+    @Builder.Default
+    @Schema(description = "Drive PaymentService directly or over HTTP to the configured base URL", example = "IN_PROCESS")
+    private LoadTarget target = LoadTarget.IN_PROCESS;
+
+    @Builder.Default
+    @Schema(description = "Weighted card mix; defaults to the first simulator.loadgen.max-database-cards cards in the database with equal weight")
+    private List<CardMix> cards = new ArrayList<>();
+
+    @Builder.Default
+    @Schema(description = "Minimum payment amount", example = "1.00")
+    private BigDecimal minAmount = new BigDecimal("1.00");
+
+    @Builder.Default
+    @Schema(description = "Maximum payment amount", example = "100.00")
+    private BigDecimal maxAmount = new BigDecimal("100.00");
+
+    @Schema(description = "Random seed for reproducible traffic; random if omitted", example = "42")
+    private Long seed;
+
+    @Builder.Default
+    @Schema(description = "Maximum number of requests in flight", example = "256")
+    private int maxConcurrency = 256;
+
+    @Schema(description = "Optional name of a file in the load generator directory to record the generated traffic to for later replay", example = "traffic.bin")
+    private String recordFile;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CardMix {
+        @Schema(description = "Card number", example = "4242424242424242")
+        private String cardNumber;
+
+        @Schema(description = "CVV sent with payments on this card", example = "123")
+        private String cvv;
+
+        @Builder.Default
+        @Schema(description = "Relative weight of this card in the mix", example = "1")
+        private double weight = 1;
+    }
+}
@@ -0,0 +1,49 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.Map;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoadReport {
+    @Schema(description = "Number of requests issued", example = "5000")
+    private long requests;
+
+    @Schema(description = "Refunds skipped because no approved payment was available", example = "3")
+    private long skippedRefunds;
+
+    @Schema(description = "Requests that failed with an error instead of a payment response", example = "0")
+    private long errors;
+
+    @Schema(description = "Wall-clock duration of the run, including draining in-flight requests", example = "10012")
+    private long elapsedMillis;
+
+    @Schema(description = "Completed requests per second", example = "499.4")
+    private double throughputPerSecond;
+
+    @Schema(description = "Responses by transaction status")
+    private Map<String, Long> statusCounts;
+
+    @Schema(description = "Median latency in microseconds, measured from the intended start time", example = "850")
+    private long p50Micros;
+
+    @Schema(description = "99th percentile latency in microseconds", example = "4200")
+    private long p99Micros;
+
+    @Schema(description = "99.9th percentile latency in microseconds", example = "12000")
+    private long p999Micros;
+
+    @Schema(description = "Maximum latency in microseconds", example = "25000")
+    private long maxMicros;
+
+    @Schema(description = "Mean latency in microseconds", example = "1100.5")
+    private double meanMicros;
+
+    @Schema(description = "File the traffic was recorded to, if any", example = "target/traffic.bin")
+    private String recordedTo;
+}
@@ -1,5 +1,7 @@
 package com.pay.cardpaysimulator.dto;
 
+import com.pay.cardpaysimulator.validation.ValidCardNumber;
+import com.pay.cardpaysimulator.validation.ValidCvv;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.*;
 import lombok.*;
@@ -13,12 +15,12 @@ import java.math.BigDecimal;
 @Builder
 public class PaymentRequest {
     @NotBlank(message = "Card number is required")
-    @Pattern(regexp = "^[0-9]{16}$", message = "Card number must be 16 digits")
-    @Schema(description = "16-digit card number", example = "1234567890123456")
+    @ValidCardNumber
+    @Schema(description = "Visa, Mastercard, American Express or Discover card number with a valid check digit", example = "4242424242424242")
     private String cardNumber;
 
     @NotBlank(message = "CVV is required")
-    @Pattern(regexp = "^[0-9]{3,4}$", message = "CVV must be 3 or 4 digits")
+    @ValidCvv
     @Schema(description = "3 or 4-digit CVV code", example = "123")
     private String cvv;
 
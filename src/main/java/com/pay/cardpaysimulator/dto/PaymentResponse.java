@@ -1,5 +1,6 @@
 package com.pay.cardpaysimulator.dto;
 
+import com.pay.cardpaysimulator.model.ReasonCode;
 import com.pay.cardpaysimulator.model.TransactionStatus;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
@@ -18,6 +19,9 @@ public class PaymentResponse {
     @Schema(description = "Response message", example = "Payment processed successfully")
     private String message;
 
+    @Schema(description = "Reason code for declined or failed payments and refunds", example = "INSUFFICIENT_FUNDS")
+    private ReasonCode reasonCode;
+
     @Schema(description = "Transaction ID", example = "1")
     private Long transactionId;
 
@@ -0,0 +1,29 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProvisioningReport {
+    @Schema(description = "Cards generated or rows read", example = "1000000")
+    private long rows;
+
+    @Schema(description = "Cards inserted", example = "999998")
+    private long inserted;
+
+    @Schema(description = "Cards skipped because the card number already exists", example = "2")
+    private long duplicates;
+
+    @Schema(description = "Import rows skipped because they are malformed or invalid", example = "0")
+    private long rejected;
+
+    @Schema(description = "Wall-clock duration of the load", example = "8200")
+    private long elapsedMillis;
+
+    @Schema(description = "Inserted cards per second", example = "121951.2")
+    private double rowsPerSecond;
+}
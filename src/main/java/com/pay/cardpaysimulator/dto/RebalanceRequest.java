@@ -0,0 +1,16 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RebalanceRequest {
+    @Schema(description = "IDs of the nodes to spread the slots over; the other nodes give up all their slots", example = "[0, 1, 2, 3]")
+    private List<Integer> activeNodes;
+}
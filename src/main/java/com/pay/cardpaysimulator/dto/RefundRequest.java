@@ -0,0 +1,19 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefundRequest {
+    @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+    @Digits(integer = 15, fraction = 2, message = "Amount must not have fractions of a cent")
+    @Schema(description = "Amount to refund, at most what is left to refund; everything left is refunded if empty", example = "25.00")
+    private BigDecimal amount;
+}
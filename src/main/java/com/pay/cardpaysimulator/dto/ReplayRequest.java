@@ -0,0 +1,27 @@
+package com.pay.cardpaysimulator.dto;
+
+import com.pay.cardpaysimulator.loadgen.LoadTarget;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReplayRequest {
+    @Schema(description = "Name of a traffic log in the load generator directory, recorded by a previous load run", example = "traffic.bin")
+    private String file;
+
+    @Builder.Default
+    @Schema(description = "Drive PaymentService directly or over HTTP to the configured base URL", example = "IN_PROCESS")
+    private LoadTarget target = LoadTarget.IN_PROCESS;
+
+    @Builder.Default
+    @Schema(description = "Replay speed multiplier; 2 replays twice as fast as recorded", example = "1.0")
+    private double speed = 1.0;
+
+    @Builder.Default
+    @Schema(description = "Maximum number of requests in flight", example = "256")
+    private int maxConcurrency = 256;
+}
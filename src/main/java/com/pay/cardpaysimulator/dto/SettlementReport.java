@@ -0,0 +1,56 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SettlementReport {
+    @Schema(description = "Start of the settlement window (inclusive)", example = "2024-03-20T00:00:00")
+    private LocalDateTime from;
+
+    @Schema(description = "End of the settlement window (exclusive)", example = "2024-03-21T00:00:00")
+    private LocalDateTime to;
+
+    @Schema(description = "Directory holding the settlement and reconciliation files", example = "settlement/20240320T000000_20240321T000000")
+    private String directory;
+
+    @Schema(description = "Cards reconciled or skipped", example = "1000000")
+    private long cards;
+
+    @Schema(description = "Cards with approved or refunded transactions in the window", example = "412093")
+    private long settledCards;
+
+    @Schema(description = "Approved and refunded transactions in the window", example = "20000000")
+    private long transactions;
+
+    @Schema(description = "Total amount of the settled transactions", example = "1043211.50")
+    private BigDecimal grossAmount;
+
+    @Schema(description = "Amount refunded of the settled transactions", example = "21030.00")
+    private BigDecimal refundedAmount;
+
+    @Schema(description = "Gross amount less refunds", example = "1022181.50")
+    private BigDecimal netAmount;
+
+    @Schema(description = "Cards whose balance does not match their opening balance and transactions", example = "0")
+    private long driftingCards;
+
+    @Schema(description = "Cards created before opening balances were tracked, which cannot be reconciled", example = "0")
+    private long unreconciledCards;
+
+    @Schema(description = "Card ranges processed", example = "100")
+    private long chunks;
+
+    @Schema(description = "Card ranges taken from the checkpoints of an earlier, interrupted run", example = "0")
+    private long resumedChunks;
+
+    @Schema(description = "Wall-clock duration of the run", example = "42000")
+    private long elapsedMillis;
+}
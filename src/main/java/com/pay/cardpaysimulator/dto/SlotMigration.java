@@ -0,0 +1,19 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SlotMigration {
+    @Schema(description = "Epoch of the slot assignment the migration leads to", example = "4")
+    private long epoch;
+
+    @Schema(description = "Slots leaving the node")
+    private List<Integer> slots;
+}
@@ -0,0 +1,26 @@
+package com.pay.cardpaysimulator.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionPage {
+    @Schema(description = "Transactions in this page, ordered by timestamp and ID")
+    private List<TransactionView> items;
+
+    @Schema(description = "Whether more transactions follow this page", example = "true")
+    private boolean hasMore;
+
+    @Schema(description = "Cursor timestamp to pass as afterTimestamp for the next page", example = "2024-03-20T10:30:00")
+    private LocalDateTime nextAfterTimestamp;
+
+    @Schema(description = "Cursor ID to pass as afterId for the next page", example = "150")
+    private Long nextAfterId;
+}
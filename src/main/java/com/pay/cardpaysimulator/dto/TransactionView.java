@@ -0,0 +1,52 @@
+package com.pay.cardpaysimulator.dto;
+
+import com.pay.cardpaysimulator.audit.AuditLog;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read model of a transaction or rejected payment attempt and its card, built directly by the transaction queries so no
+ * entity or lazy card proxy is loaded. The card number is masked when the view is constructed.
+ */
+public record TransactionView(
+        @Schema(description = "Transaction ID", example = "150")
+        Long id,
+
+        @Schema(description = "ID of the card, empty if the card number was not found", example = "1")
+        Long cardId,
+
+        @Schema(description = "Card number with all but its first six and last four digits masked", example = "424242******4242")
+        String cardNumber,
+
+        @Schema(description = "Name of the cardholder", example = "John Doe")
+        String cardholderName,
+
+        @Schema(description = "Transaction amount", example = "100.00")
+        BigDecimal amount,
+
+        @Schema(description = "Amount refunded so far, empty if nothing was refunded", example = "25.00")
+        BigDecimal refundedAmount,
+
+        @Schema(description = "Current status of the transaction", example = "APPROVED")
+        TransactionStatus status,
+
+        @Schema(description = "Reason code of a declined or failed attempt", example = "INSUFFICIENT_FUNDS")
+        ReasonCode reasonCode,
+
+        @Schema(description = "When the payment was authorized", example = "2024-03-20T10:30:00")
+        LocalDateTime timestamp,
+
+        @Schema(description = "Payment description", example = "Payment for services")
+        String description,
+
+        @Schema(description = "When a pending hold is released unless captured", example = "2024-03-27T10:30:00")
+        LocalDateTime holdExpiresAt) {
+
+    public TransactionView {
+        cardNumber = cardNumber == null ? null : AuditLog.mask(cardNumber);
+    }
+}
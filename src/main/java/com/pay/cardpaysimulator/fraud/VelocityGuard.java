@@ -0,0 +1,124 @@
+package com.pay.cardpaysimulator.fraud;
+
+import com.pay.cardpaysimulator.audit.AuditLog;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Velocity and fraud rules checked on the authorization path, without touching the database.
+ * <p>
+ * Payments and holds that pass the card checks count towards a maximum number per card within
+ * {@code simulator.velocity.payment-window} and a maximum amount per card within
+ * {@code simulator.velocity.amount-window}, whether or not the balance then covers them. A card
+ * with {@code simulator.velocity.max-cvv-failures} CVV failures within
+ * {@code simulator.velocity.cvv-failure-window} is locked for {@code simulator.velocity.lock-duration}.
+ * A limit of {@code 0} disables its rule. The counters live in a {@link VelocityTable} on this
+ * instance, so in cluster mode a card's counters start over on the node its slot moves to.
+ * <p>
+ * The number of cards tracked and of cards locked are published as {@code velocity.cards} and
+ * {@code velocity.locks}.
+ */
+@Slf4j
+@Component
+public class VelocityGuard {
+
+    private final VelocityTable table;
+    private final boolean paymentRules;
+    private final Counter locks;
+
+    public VelocityGuard(MeterRegistry meterRegistry,
+                         @Value("${simulator.velocity.max-payments:0}") int maxPayments,
+                         @Value("${simulator.velocity.payment-window:1m}") Duration paymentWindow,
+                         @Value("${simulator.velocity.max-amount:0}") BigDecimal maxAmount,
+                         @Value("${simulator.velocity.amount-window:1h}") Duration amountWindow,
+                         @Value("${simulator.velocity.max-cvv-failures:3}") int maxCvvFailures,
+                         @Value("${simulator.velocity.cvv-failure-window:10m}") Duration cvvFailureWindow,
+                         @Value("${simulator.velocity.lock-duration:30m}") Duration lockDuration,
+                         @Value("${simulator.velocity.stripes:64}") int stripes) {
+        if (maxPayments < 0 || maxAmount.signum() < 0 || maxCvvFailures < 0 || lockDuration.isNegative()) {
+            throw new IllegalArgumentException("Velocity limits must not be negative");
+        }
+        VelocityTable.Limits limits = new VelocityTable.Limits(
+                maxPayments, paymentWindow.toMillis(),
+                BalanceLedger.toMinorUnits(maxAmount), amountWindow.toMillis(),
+                maxCvvFailures, cvvFailureWindow.toMillis(), lockDuration.toMillis());
+        this.table = new VelocityTable(limits, stripes);
+        this.paymentRules = limits.maxPayments() > 0 || limits.maxAmountCents() > 0;
+
+        Gauge.builder("velocity.cards", table, VelocityTable::size)
+                .description("Cards with velocity counters in memory")
+                .register(meterRegistry);
+        this.locks = Counter.builder("velocity.locks")
+                .description("Cards locked after too many CVV failures")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether the card is locked after too many CVV failures.
+     */
+    public boolean isLocked(Card card) {
+        return table.isLocked(card.getId(), System.currentTimeMillis());
+    }
+
+    /**
+     * Counts a CVV failure, locking the card once it reaches the limit.
+     */
+    public void recordCvvFailure(Card card) {
+        if (table.recordCvvFailure(card.getId(), System.currentTimeMillis())) {
+            locks.increment();
+            log.warn("Card {} locked after repeated CVV failures", AuditLog.mask(card.getCardNumber()));
+        }
+    }
+
+    /**
+     * Checks the card's velocity limits and counts the payment if it is within them.
+     *
+     * @return why the payment is declined, or {@code null} if it may proceed
+     */
+    public ReasonCode tryRecord(Card card, long amountCents) {
+        if (!paymentRules) {
+            return null;
+        }
+        return table.tryRecord(card.getId(), amountCents, System.currentTimeMillis());
+    }
+
+    /**
+     * Lifts the card's lock and clears its CVV failures.
+     *
+     * @return {@code true} if the card was locked
+     */
+    public boolean unlock(Card card) {
+        return table.unlock(card.getId(), System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the message of a payment declined by one of the rules.
+     */
+    public static String message(ReasonCode reasonCode) {
+        return switch (reasonCode) {
+            case CARD_LOCKED -> "Card is locked after repeated CVV failures";
+            case VELOCITY_LIMIT_EXCEEDED -> "Too many payments on this card, try again later";
+            case AMOUNT_LIMIT_EXCEEDED -> "Payment amount limit for this card reached, try again later";
+            default -> "Payment declined by velocity rules";
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${simulator.velocity.eviction-interval-ms:60000}")
+    public void evict() {
+        int evicted = table.evict(System.currentTimeMillis());
+        if (evicted > 0) {
+            log.debug("Evicted velocity counters of {} idle cards", evicted);
+        }
+    }
+}
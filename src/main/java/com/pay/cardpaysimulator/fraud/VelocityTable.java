@@ -0,0 +1,313 @@
+package com.pay.cardpaysimulator.fraud;
+
+import com.pay.cardpaysimulator.model.ReasonCode;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-card velocity counters in open-addressing hash tables of primitive longs, so tracking a card
+ * costs one array slot and no objects.
+ * <p>
+ * Each card has three sliding-window counters (payments, amount and CVV failures) and the time its
+ * lock expires. A counter keeps the total of the current fixed window and of the one before, and
+ * estimates the sliding window as the current total plus the previous one weighted by how much of
+ * it still overlaps; this needs three longs whatever the traffic, at the cost of assuming the
+ * previous window's payments were spread evenly. Cards are spread over striped tables, each guarded
+ * by its own lock, so checks on different cards rarely contend. Idle cards are dropped by
+ * {@link #evict(long)}, which also shrinks the tables.
+ * <p>
+ * Times are passed in by the caller in milliseconds, so the table has no clock of its own.
+ */
+public final class VelocityTable {
+
+    // Layout of one slot
+    private static final int KEY = 0;
+    private static final int LAST_SEEN = 1;
+    private static final int PAYMENTS = 2;
+    private static final int AMOUNT = 5;
+    private static final int CVV_FAILURES = 8;
+    private static final int LOCKED_UNTIL = 11;
+    private static final int STRIDE = 12;
+    // Layout of one counter
+    private static final int WINDOW = 0;
+    private static final int CURRENT = 1;
+    private static final int PREVIOUS = 2;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final Limits limits;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public VelocityTable(Limits limits, int stripeCount) {
+        this.limits = limits;
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe(MIN_CAPACITY);
+        }
+        this.stripeMask = size - 1;
+    }
+
+    /**
+     * Checks the card's lock and velocity limits and, if the payment is within them, counts it.
+     *
+     * @return why the payment is declined, or {@code null} if it may proceed
+     */
+    public ReasonCode tryRecord(long cardId, long amountCents, long now) {
+        Stripe stripe = stripeFor(cardId);
+        stripe.lock.lock();
+        try {
+            int slot = stripe.slotFor(cardId, now);
+            long[] table = stripe.table;
+            if (table[slot + LOCKED_UNTIL] > now) {
+                return ReasonCode.CARD_LOCKED;
+            }
+            if (limits.maxPayments() > 0
+                    && estimate(table, slot + PAYMENTS, limits.paymentWindowMillis(), now) + 1 > limits.maxPayments()) {
+                return ReasonCode.VELOCITY_LIMIT_EXCEEDED;
+            }
+            if (limits.maxAmountCents() > 0
+                    && estimate(table, slot + AMOUNT, limits.amountWindowMillis(), now) + amountCents > limits.maxAmountCents()) {
+                return ReasonCode.AMOUNT_LIMIT_EXCEEDED;
+            }
+            table[slot + PAYMENTS + CURRENT]++;
+            table[slot + AMOUNT + CURRENT] += amountCents;
+            return null;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Whether the card is locked after too many CVV failures.
+     */
+    public boolean isLocked(long cardId, long now) {
+        Stripe stripe = stripeFor(cardId);
+        stripe.lock.lock();
+        try {
+            int slot = stripe.find(cardId);
+            return slot >= 0 && stripe.table[slot + LOCKED_UNTIL] > now;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a CVV failure and locks the card once the failures in the window reach the limit.
+     * The failures are cleared when the card is locked, so it gets the full allowance again once
+     * the lock expires.
+     *
+     * @return {@code true} if this failure locked the card
+     */
+    public boolean recordCvvFailure(long cardId, long now) {
+        if (limits.maxCvvFailures() <= 0) {
+            return false;
+        }
+        Stripe stripe = stripeFor(cardId);
+        stripe.lock.lock();
+        try {
+            int slot = stripe.slotFor(cardId, now);
+            long[] table = stripe.table;
+            int counter = slot + CVV_FAILURES;
+            long failures = estimate(table, counter, limits.cvvFailureWindowMillis(), now) + 1;
+            table[counter + CURRENT]++;
+            if (failures < limits.maxCvvFailures()) {
+                return false;
+            }
+            table[counter + CURRENT] = 0;
+            table[counter + PREVIOUS] = 0;
+            table[slot + LOCKED_UNTIL] = now + limits.lockMillis();
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Lifts the card's lock and clears its CVV failures.
+     *
+     * @return {@code true} if the card was locked
+     */
+    public boolean unlock(long cardId, long now) {
+        Stripe stripe = stripeFor(cardId);
+        stripe.lock.lock();
+        try {
+            int slot = stripe.find(cardId);
+            if (slot < 0) {
+                return false;
+            }
+            long[] table = stripe.table;
+            boolean locked = table[slot + LOCKED_UNTIL] > now;
+            table[slot + LOCKED_UNTIL] = 0;
+            table[slot + CVV_FAILURES + CURRENT] = 0;
+            table[slot + CVV_FAILURES + PREVIOUS] = 0;
+            return locked;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the cards that are not locked and were last seen more than twice the longest window
+     * ago, when none of their counters still counts, and rebuilds each table at a size fitting
+     * what is left.
+     *
+     * @return the number of cards dropped
+     */
+    public int evict(long now) {
+        long idleMillis = Math.max(limits.paymentWindowMillis(),
+                Math.max(limits.amountWindowMillis(), limits.cvvFailureWindowMillis())) * 2;
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                evicted += stripe.evict(now - idleMillis, now);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns the number of cards tracked.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Rolls the counter forward to the window containing {@code now} and returns its sliding-window
+     * estimate.
+     */
+    private static long estimate(long[] table, int counter, long windowMillis, long now) {
+        // A time from before the current window means this thread was delayed; count it there
+        long window = Math.max(now / windowMillis, table[counter + WINDOW]);
+        long elapsed = window - table[counter + WINDOW];
+        if (elapsed > 0) {
+            table[counter + PREVIOUS] = elapsed == 1 ? table[counter + CURRENT] : 0;
+            table[counter + CURRENT] = 0;
+            table[counter + WINDOW] = window;
+        }
+        long overlap = windowMillis - Math.max(0, now - window * windowMillis);
+        return table[counter + CURRENT] + table[counter + PREVIOUS] * overlap / windowMillis;
+    }
+
+    private Stripe stripeFor(long cardId) {
+        return stripes[(int) (hash(cardId) >>> 32) & stripeMask];
+    }
+
+    private static long hash(long cardId) {
+        // Fibonacci hashing, so sequential IDs land on different stripes and slots
+        return cardId * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * The limits enforced by a {@link VelocityTable}. A limit of {@code 0} disables its rule.
+     */
+    public record Limits(int maxPayments, long paymentWindowMillis,
+                         long maxAmountCents, long amountWindowMillis,
+                         int maxCvvFailures, long cvvFailureWindowMillis, long lockMillis) {
+
+        public Limits {
+            if (paymentWindowMillis < 1 || amountWindowMillis < 1 || cvvFailureWindowMillis < 1) {
+                throw new IllegalArgumentException("Velocity windows must be positive");
+            }
+        }
+    }
+
+    /**
+     * One open-addressing table with linear probing. Card IDs are positive, so a key of {@code 0}
+     * marks a free slot.
+     */
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] table;
+        private int mask;
+        private int size;
+
+        Stripe(int capacity) {
+            this.table = new long[capacity * STRIDE];
+            this.mask = capacity - 1;
+        }
+
+        int find(long cardId) {
+            for (int index = (int) hash(cardId) & mask; ; index = (index + 1) & mask) {
+                long key = table[index * STRIDE + KEY];
+                if (key == cardId) {
+                    return index * STRIDE;
+                }
+                if (key == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * Returns the card's slot, adding it if needed, and marks it as seen.
+         */
+        int slotFor(long cardId, long now) {
+            int slot = find(cardId);
+            if (slot < 0) {
+                if ((size + 1) * 2 > mask + 1) {
+                    rehash((mask + 1) * 2, Long.MIN_VALUE, now);
+                }
+                slot = insert(table, mask, cardId);
+                size++;
+            }
+            table[slot + LAST_SEEN] = now;
+            return slot;
+        }
+
+        int evict(long seenBefore, long now) {
+            int before = size;
+            int capacity = MIN_CAPACITY;
+            while (capacity < size * 4) {
+                capacity <<= 1;
+            }
+            rehash(capacity, seenBefore, now);
+            return before - size;
+        }
+
+        /**
+         * Moves the cards still in use into a table of the given capacity.
+         */
+        private void rehash(int capacity, long seenBefore, long now) {
+            long[] rehashed = new long[capacity * STRIDE];
+            int rehashedMask = capacity - 1;
+            int kept = 0;
+            for (int slot = 0; slot < table.length; slot += STRIDE) {
+                long key = table[slot + KEY];
+                if (key == 0 || (table[slot + LAST_SEEN] < seenBefore && table[slot + LOCKED_UNTIL] <= now)) {
+                    continue;
+                }
+                int target = insert(rehashed, rehashedMask, key);
+                System.arraycopy(table, slot, rehashed, target, STRIDE);
+                kept++;
+            }
+            table = rehashed;
+            mask = rehashedMask;
+            size = kept;
+        }
+
+        private static int insert(long[] table, int mask, long cardId) {
+            int index = (int) hash(cardId) & mask;
+            while (table[index * STRIDE + KEY] != 0) {
+                index = (index + 1) & mask;
+            }
+            table[index * STRIDE + KEY] = cardId;
+            return index * STRIDE;
+        }
+    }
+}
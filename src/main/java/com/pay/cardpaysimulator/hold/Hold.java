@@ -0,0 +1,8 @@
+package com.pay.cardpaysimulator.hold;
+
+/**
+ * An uncaptured authorization: the amount taken from the card's available balance and when it is
+ * given back unless captured or voided first.
+ */
+record Hold(long transactionId, long cardId, String cardNumber, long amountCents, long expiresAtMillis) {
+}
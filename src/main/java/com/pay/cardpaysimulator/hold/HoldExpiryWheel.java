@@ -0,0 +1,84 @@
+package com.pay.cardpaysimulator.hold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel of hold deadlines.
+ * <p>
+ * Time is divided into ticks of {@code tickMillis} since the epoch and a hold is put in the bucket
+ * of the tick it expires in, modulo the wheel size, so scheduling is a single queue append no
+ * matter how many holds are outstanding. Advancing the wheel visits one bucket per elapsed tick
+ * and only touches the holds in it; holds due in a later revolution stay in the bucket. A hold
+ * scheduled for a tick the wheel has already passed is also put on an overdue queue that is
+ * drained on every advance, so it is never delayed by a whole revolution. A hold may therefore be
+ * returned more than once; callers must expire it idempotently.
+ * <p>
+ * Holds may be scheduled from any thread; {@link #advance} must be called from one thread at a time.
+ */
+final class HoldExpiryWheel {
+
+    private final long tickMillis;
+    private final Queue<Hold>[] buckets;
+    private final int mask;
+    private final Queue<Hold> overdue = new ConcurrentLinkedQueue<>();
+    /** The last tick whose bucket was visited after the tick had ended. */
+    private volatile long processedTick;
+
+    @SuppressWarnings("unchecked")
+    HoldExpiryWheel(long tickMillis, int wheelSize, long nowMillis) {
+        if (tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1) << 1);
+        this.tickMillis = tickMillis;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.processedTick = Math.floorDiv(nowMillis, tickMillis) - 1;
+    }
+
+    void schedule(Hold hold) {
+        // The hold expires at the end of the tick containing its deadline
+        long tick = Math.floorDiv(hold.expiresAtMillis(), tickMillis);
+        buckets[(int) (tick & mask)].add(hold);
+        if (tick <= processedTick) {
+            overdue.add(hold);
+        }
+    }
+
+    /**
+     * Advances the wheel to the current time.
+     *
+     * @return the holds whose deadline has passed
+     */
+    List<Hold> advance(long nowMillis) {
+        long lastEndedTick = Math.floorDiv(nowMillis, tickMillis) - 1;
+        List<Hold> expired = new ArrayList<>();
+        Hold hold;
+        while ((hold = overdue.poll()) != null) {
+            expired.add(hold);
+        }
+        // After a long pause, one revolution visits every bucket
+        long from = Math.max(processedTick + 1, lastEndedTick - mask);
+        List<Hold> later = new ArrayList<>();
+        for (long tick = from; tick <= lastEndedTick; tick++) {
+            Queue<Hold> bucket = buckets[(int) (tick & mask)];
+            while ((hold = bucket.poll()) != null) {
+                if (Math.floorDiv(hold.expiresAtMillis(), tickMillis) <= tick) {
+                    expired.add(hold);
+                } else {
+                    later.add(hold);
+                }
+            }
+            bucket.addAll(later);
+            later.clear();
+            processedTick = tick;
+        }
+        return expired;
+    }
+}
@@ -0,0 +1,202 @@
+package com.pay.cardpaysimulator.hold;
+
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.repository.PendingHold;
+import com.pay.cardpaysimulator.repository.TransactionRepository;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import com.pay.cardpaysimulator.service.CardCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of outstanding holds and the scheduler that releases them when they expire.
+ * <p>
+ * Authorizing debits the hold amount from the card's balance in the {@link BalanceLedger} right
+ * away, so the ledger balance is the available balance and checking it stays a single read. This
+ * index only remembers which holds are outstanding, keyed by transaction ID, and schedules their
+ * expiry on a {@link HoldExpiryWheel}: each tick the wheel returns the holds that are due, and they
+ * are voided with one conditional update each in a single transaction and their amounts credited
+ * back. Captures and voids go through conditional updates too, so whichever of capture, void and
+ * expiry updates the {@code PENDING} row first releases the hold, on this or any other instance;
+ * captured and voided holds are then removed from the index.
+ * <p>
+ * Outstanding holds are reloaded from the {@code PENDING} transactions on startup. The number of
+ * outstanding holds and of expired holds are published as {@code holds.outstanding} and
+ * {@code holds.expired}.
+ */
+@Slf4j
+@Component
+public class HoldRegistry {
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BalanceLedger balanceLedger;
+    private final CardCache cardCache;
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+    private final HoldExpiryWheel wheel;
+    private final Duration expiry;
+    private final int batchSize;
+    private final ReentrantLock expiryLock = new ReentrantLock();
+    private final Counter expired;
+
+    public HoldRegistry(TransactionRepository transactionRepository,
+                        PlatformTransactionManager transactionManager,
+                        BalanceLedger balanceLedger,
+                        CardCache cardCache,
+                        MeterRegistry meterRegistry,
+                        @Value("${simulator.holds.expiry:7d}") Duration expiry,
+                        @Value("${simulator.holds.tick-ms:1000}") long tickMillis,
+                        @Value("${simulator.holds.wheel-size:4096}") int wheelSize,
+                        @Value("${simulator.holds.expiry-batch-size:500}") int batchSize) {
+        if (expiry.isNegative() || expiry.isZero() || batchSize < 1) {
+            throw new IllegalArgumentException("Hold expiry and expiry batch size must be positive");
+        }
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.balanceLedger = balanceLedger;
+        this.cardCache = cardCache;
+        this.wheel = new HoldExpiryWheel(tickMillis, wheelSize, System.currentTimeMillis());
+        this.expiry = expiry;
+        this.batchSize = batchSize;
+
+        Gauge.builder("holds.outstanding", holds, Map::size)
+                .description("Authorizations neither captured, voided nor expired")
+                .register(meterRegistry);
+        this.expired = Counter.builder("holds.expired")
+                .description("Holds voided because they were not captured in time")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns when a hold placed now expires.
+     */
+    public LocalDateTime expiresAt(LocalDateTime authorizedAt) {
+        return authorizedAt.plus(expiry);
+    }
+
+    /**
+     * Adds a committed hold to the index and schedules its expiry.
+     */
+    public void register(long transactionId, Card card, long amountCents, LocalDateTime expiresAt) {
+        add(new Hold(transactionId, card.getId(), card.getCardNumber(), amountCents, toMillis(expiresAt)));
+    }
+
+    /**
+     * Removes a captured or voided hold from the index.
+     */
+    public void remove(long transactionId) {
+        holds.remove(transactionId);
+    }
+
+    @Scheduled(fixedRateString = "${simulator.holds.tick-ms:1000}")
+    public void expire() {
+        expiryLock.lock();
+        try {
+            List<Hold> due = wheel.advance(System.currentTimeMillis()).stream()
+                    .filter(hold -> holds.remove(hold.transactionId(), hold))
+                    .toList();
+            for (int from = 0; from < due.size(); from += batchSize) {
+                expire(due.subList(from, Math.min(due.size(), from + batchSize)));
+            }
+        } finally {
+            expiryLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the holds of the matching cards from the index without releasing them, e.g. because
+     * another node now owns the cards. An expiry in progress finishes first.
+     *
+     * @return the number of holds dropped
+     */
+    public int evict(Predicate<String> cardNumbers) {
+        expiryLock.lock();
+        try {
+            int before = holds.size();
+            holds.values().removeIf(hold -> cardNumbers.test(hold.cardNumber()));
+            return before - holds.size();
+        } finally {
+            expiryLock.unlock();
+        }
+    }
+
+    /**
+     * Adds the pending holds of the matching cards from the database to the index.
+     *
+     * @return the number of holds added
+     */
+    public int load(Predicate<String> cardNumbers) {
+        Integer loaded = transactionTemplate.execute(status -> {
+            int count = 0;
+            try (Stream<PendingHold> pending = transactionRepository.streamPendingHolds()) {
+                for (PendingHold row : (Iterable<PendingHold>) pending::iterator) {
+                    if (cardNumbers.test(row.getCardNumber()) && !holds.containsKey(row.getId())) {
+                        add(new Hold(row.getId(), row.getCardId(), row.getCardNumber(),
+                                BalanceLedger.toMinorUnits(row.getAmount()), toMillis(row.getHoldExpiresAt())));
+                        count++;
+                    }
+                }
+            }
+            return count;
+        });
+        return loaded == null ? 0 : loaded;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        log.info("Restored {} outstanding holds", load(cardNumber -> true));
+    }
+
+    private void add(Hold hold) {
+        holds.put(hold.transactionId(), hold);
+        wheel.schedule(hold);
+    }
+
+    private void expire(List<Hold> batch) {
+        try {
+            Integer voided = transactionTemplate.execute(status -> {
+                int count = 0;
+                for (Hold hold : batch) {
+                    if (transactionRepository.voidHold(hold.transactionId(), ReasonCode.HOLD_EXPIRED) == 0) {
+                        continue;
+                    }
+                    // A deleted card has no balance to give the amount back to
+                    cardCache.findById(hold.cardId()).ifPresent(card -> balanceLedger.credit(card, hold.amountCents()));
+                    count++;
+                }
+                return count;
+            });
+            expired.increment(voided == null ? 0 : voided);
+        } catch (RuntimeException e) {
+            log.error("Could not release {} expired holds, retrying on the next tick", batch.size(), e);
+            batch.forEach(this::add);
+        }
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
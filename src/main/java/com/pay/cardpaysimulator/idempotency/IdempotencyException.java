@@ -0,0 +1,26 @@
+package com.pay.cardpaysimulator.idempotency;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a request with an {@code Idempotency-Key} cannot be processed or replayed.
+ */
+@Getter
+public class IdempotencyException extends RuntimeException {
+
+    public enum Reason {
+        /** A request with the same key is still being processed. */
+        IN_PROGRESS,
+        /** The key was already used for a different request. */
+        KEY_REUSED,
+        /** The store holds as many unexpired keys as it is allowed to. */
+        STORE_FULL
+    }
+
+    private final Reason reason;
+
+    public IdempotencyException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+}
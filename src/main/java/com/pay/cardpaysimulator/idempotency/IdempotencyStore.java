@@ -0,0 +1,471 @@
+package com.pay.cardpaysimulator.idempotency;
+
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.idempotency.IdempotencyException.Reason;
+import com.pay.cardpaysimulator.model.IdempotencyRecord;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.repository.IdempotencyRecordRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Deduplicates payments, authorizations and refunds sent with an {@code Idempotency-Key} header.
+ * <p>
+ * Keys are hashed to 64 bits and kept for a fixed window in segmented open-addressing tables of
+ * primitive arrays, so each key costs a few dozen bytes and no per-entry objects; a replayed
+ * response is rebuilt from its stored status, reason code, message and transaction ID. Processing
+ * errors are not remembered, since nothing was committed and a retry should run again. Each
+ * completed entry is also written to the {@code idempotency_records} table and reloaded on startup,
+ * so duplicates are still recognized after a restart. Expired keys are purged from memory and from
+ * the database periodically.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = Long.MIN_VALUE;
+    /** Status code of a claimed key whose request has not completed yet. */
+    private static final int IN_FLIGHT = 0;
+    private static final int INITIAL_SEGMENT_CAPACITY = 256;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final ReasonCode[] REASON_CODES = ReasonCode.values();
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int maxSegmentCapacity;
+    private final long windowSeconds;
+    private final long epochBase = Instant.now().getEpochSecond();
+
+    public IdempotencyStore(IdempotencyRecordRepository recordRepository,
+                            EntityManager entityManager,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${simulator.idempotency.window:24h}") Duration window,
+                            @Value("${simulator.idempotency.max-keys:2000000}") int maxKeys,
+                            @Value("${simulator.idempotency.segments:64}") int segmentCount) {
+        this.recordRepository = recordRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        int size = Integer.highestOneBit(Math.max(1, segmentCount - 1) << 1);
+        this.segments = new Segment[size];
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment();
+        }
+        this.segmentMask = size - 1;
+        // Tables are kept at most half full, so each segment may grow to twice its share of the keys
+        this.maxSegmentCapacity = Integer.highestOneBit(Math.max(INITIAL_SEGMENT_CAPACITY, 2 * maxKeys / size - 1) << 1);
+        this.windowSeconds = window.toSeconds();
+    }
+
+    /**
+     * Runs the operation unless a request with the same key was completed within the window,
+     * in which case its original response is returned instead.
+     *
+     * @throws IdempotencyException if the key is in use by a different or still running request,
+     *                              or the store is full
+     */
+    public Result execute(String idempotencyKey, long fingerprint, Supplier<PaymentResponse> operation) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        long keyHash = hash(idempotencyKey);
+        Segment segment = segmentFor(keyHash);
+        int now = now();
+        synchronized (segment) {
+            int slot = segment.find(keyHash, now - windowSeconds);
+            if (slot >= 0) {
+                if (segment.fingerprints[slot] != fingerprint) {
+                    throw new IdempotencyException(Reason.KEY_REUSED, "Idempotency key was already used for a different request");
+                }
+                if (segment.codes[slot] == IN_FLIGHT) {
+                    throw new IdempotencyException(Reason.IN_PROGRESS, "A request with this idempotency key is still being processed");
+                }
+                return new Result(segment.response(slot), true);
+            }
+            if (!segment.insert(keyHash, fingerprint, now, IN_FLIGHT, 0, null, now - windowSeconds, maxSegmentCapacity)) {
+                throw new IdempotencyException(Reason.STORE_FULL, "Too many idempotency keys in the current window");
+            }
+        }
+
+        PaymentResponse response;
+        try {
+            response = operation.get();
+        } catch (RuntimeException | Error e) {
+            synchronized (segment) {
+                segment.remove(keyHash);
+            }
+            throw e;
+        }
+
+        if (response.getReasonCode() == ReasonCode.PROCESSING_ERROR) {
+            // Nothing was committed, so a retry must be processed again rather than replay the error
+            synchronized (segment) {
+                segment.remove(keyHash);
+            }
+            return new Result(response, false);
+        }
+        int code = encode(response);
+        long transactionId = response.getTransactionId() == null ? 0 : response.getTransactionId();
+        synchronized (segment) {
+            segment.complete(keyHash, code, transactionId, response.getMessage());
+        }
+        persist(keyHash, fingerprint, now, response);
+        return new Result(response, false);
+    }
+
+    /**
+     * Fingerprint of a payment, used to reject a key reused for a different payment.
+     */
+    public static long fingerprint(PaymentRequest request) {
+        return fingerprint(0x7061796d656e74L, request);
+    }
+
+    /**
+     * Fingerprint of an authorization, distinct from that of a payment with the same fields.
+     */
+    public static long authorizationFingerprint(PaymentRequest request) {
+        return fingerprint(0x686f6c64L, request);
+    }
+
+    private static long fingerprint(long seed, PaymentRequest request) {
+        long h = mix(seed);
+        h = mix(h ^ hash(request.getCardNumber()));
+        h = mix(h ^ (request.getAmount() == null ? 0 : hash(request.getAmount().stripTrailingZeros().toPlainString())));
+        return mix(h ^ hash(request.getDescription()));
+    }
+
+    /**
+     * Fingerprint of a refund of the given transaction, for the given amount or, if it is
+     * {@code null}, everything left to refund.
+     */
+    public static long fingerprint(Long transactionId, BigDecimal amount) {
+        long h = mix(mix(0x726566756e64L) ^ (transactionId == null ? 0 : transactionId));
+        // A refund of everything left mixes in no amount, so it never matches a partial refund of the same transaction
+        return amount == null ? h : mix(h ^ hash(amount.stripTrailingZeros().toPlainString()));
+    }
+
+    /**
+     * Reloads the keys completed within the window, after dropping expired ones.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        int now = now();
+        int[] restored = new int[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            recordRepository.deleteCreatedUpTo(toDateTime(now - windowSeconds));
+            try (Stream<IdempotencyRecord> records = recordRepository.streamCreatedAfter(toDateTime(now - windowSeconds))) {
+                records.forEach(record -> {
+                    Segment segment = segmentFor(record.getKeyHash());
+                    synchronized (segment) {
+                        if (segment.insert(record.getKeyHash(), record.getFingerprint(), toEpochOffset(record.getCreatedAt()),
+                                encode(record.getStatus(), record.getReasonCode()),
+                                record.getTransactionId() == null ? 0 : record.getTransactionId(),
+                                record.getMessage(), now - windowSeconds, maxSegmentCapacity)) {
+                            restored[0]++;
+                        }
+                    }
+                });
+            }
+        });
+        log.info("Restored {} idempotency keys", restored[0]);
+    }
+
+    @Scheduled(fixedDelayString = "${simulator.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long horizon = now() - windowSeconds;
+        try {
+            transactionTemplate.executeWithoutResult(status -> recordRepository.deleteCreatedUpTo(toDateTime(horizon)));
+        } catch (Exception e) {
+            log.warn("Failed to purge expired idempotency records", e);
+        }
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.rehash(horizon, segment.keys.length);
+            }
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.used;
+            }
+        }
+        return size;
+    }
+
+    private void persist(long keyHash, long fingerprint, int createdAt, PaymentResponse response) {
+        String message = response.getMessage();
+        IdempotencyRecord record = IdempotencyRecord.builder()
+                .keyHash(keyHash)
+                .fingerprint(fingerprint)
+                .status(response.getStatus())
+                .reasonCode(response.getReasonCode())
+                .message(message != null && message.length() > IdempotencyRecord.MAX_MESSAGE_LENGTH
+                        ? message.substring(0, IdempotencyRecord.MAX_MESSAGE_LENGTH) : message)
+                .transactionId(response.getTransactionId())
+                .createdAt(toDateTime(createdAt))
+                .build();
+        try {
+            transactionTemplate.executeWithoutResult(status -> entityManager.persist(record));
+        } catch (Exception e) {
+            // An expired record for the same key may not have been purged yet
+            try {
+                transactionTemplate.executeWithoutResult(status -> entityManager.merge(record));
+            } catch (Exception retryFailure) {
+                log.error("Failed to persist idempotency record, key is only deduplicated until restart", retryFailure);
+            }
+        }
+    }
+
+    private Segment segmentFor(long keyHash) {
+        return segments[(int) (keyHash >>> 32) & segmentMask];
+    }
+
+    /**
+     * Current time in seconds since this store was created, so it fits an {@code int}.
+     */
+    private int now() {
+        return (int) (Instant.now().getEpochSecond() - epochBase);
+    }
+
+    private int toEpochOffset(LocalDateTime dateTime) {
+        return (int) (dateTime.atZone(ZoneId.systemDefault()).toEpochSecond() - epochBase);
+    }
+
+    private LocalDateTime toDateTime(long epochOffset) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochBase + epochOffset), ZoneId.systemDefault());
+    }
+
+    private static int encode(PaymentResponse response) {
+        return encode(response.getStatus(), response.getReasonCode());
+    }
+
+    private static int encode(TransactionStatus status, ReasonCode reasonCode) {
+        return (status.ordinal() + 1) | (reasonCode == null ? 0 : (reasonCode.ordinal() + 1) << 8);
+    }
+
+    static long hash(String value) {
+        if (value == null) {
+            return 0;
+        }
+        // FNV-1a followed by a finalizer so that every input bit affects the segment and slot bits
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h = mix(h);
+        return h == EMPTY || h == TOMBSTONE ? 1 : h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Response to return for a request, and whether it was replayed from an earlier request.
+     */
+    public record Result(PaymentResponse response, boolean replayed) {
+    }
+
+    /**
+     * Linear-probing hash table stored in parallel arrays. Removed keys leave a tombstone, and
+     * expired or removed slots are reused by later inserts and dropped when the table is rehashed.
+     * All methods must be called while holding the segment's monitor.
+     */
+    private static final class Segment {
+        private long[] keys = new long[INITIAL_SEGMENT_CAPACITY];
+        private long[] fingerprints = new long[INITIAL_SEGMENT_CAPACITY];
+        private long[] transactionIds = new long[INITIAL_SEGMENT_CAPACITY];
+        private int[] createdAt = new int[INITIAL_SEGMENT_CAPACITY];
+        private int[] codes = new int[INITIAL_SEGMENT_CAPACITY];
+        private String[] messages = new String[INITIAL_SEGMENT_CAPACITY];
+        /** Slots that are not empty, including tombstones and expired entries. */
+        private int used;
+
+        /**
+         * @return the slot of the unexpired or in-flight entry for the key, or -1
+         */
+        private int find(long key, long horizon) {
+            int mask = keys.length - 1;
+            for (int i = (int) key & mask, probes = 0; probes < keys.length; i = (i + 1) & mask, probes++) {
+                long k = keys[i];
+                if (k == EMPTY) {
+                    return -1;
+                }
+                if (k == key) {
+                    return isExpired(i, horizon) ? -1 : i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean insert(long key, long fingerprint, int created, int code, long transactionId, String message,
+                               long horizon, int maxCapacity) {
+            int mask = keys.length - 1;
+            int target = -1;
+            for (int i = (int) key & mask, probes = 0; probes < keys.length; i = (i + 1) & mask, probes++) {
+                long k = keys[i];
+                if (k == EMPTY) {
+                    if (target < 0) {
+                        if (2 * (used + 1) > keys.length) {
+                            return rehash(horizon, maxCapacity) && insert(key, fingerprint, created, code, transactionId, message, horizon, maxCapacity);
+                        }
+                        target = i;
+                        used++;
+                    }
+                    break;
+                }
+                if (k == key) {
+                    if (target < 0) {
+                        target = i;
+                    }
+                    break;
+                }
+                if (target < 0 && (k == TOMBSTONE || isExpired(i, horizon))) {
+                    target = i;
+                }
+            }
+            if (target < 0) {
+                return false;
+            }
+            keys[target] = key;
+            fingerprints[target] = fingerprint;
+            createdAt[target] = created;
+            codes[target] = code;
+            transactionIds[target] = transactionId;
+            messages[target] = message;
+            return true;
+        }
+
+        private void complete(long key, int code, long transactionId, String message) {
+            int slot = slotOf(key);
+            if (slot >= 0) {
+                codes[slot] = code;
+                transactionIds[slot] = transactionId;
+                messages[slot] = message;
+            }
+        }
+
+        private void remove(long key) {
+            int slot = slotOf(key);
+            if (slot >= 0) {
+                keys[slot] = TOMBSTONE;
+                messages[slot] = null;
+            }
+        }
+
+        private int slotOf(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) key & mask, probes = 0; probes < keys.length; i = (i + 1) & mask, probes++) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                if (keys[i] == EMPTY) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isExpired(int slot, long horizon) {
+            return codes[slot] != IN_FLIGHT && createdAt[slot] <= horizon;
+        }
+
+        /**
+         * Rebuilds the table without tombstones and expired entries, growing it if it would
+         * otherwise stay more than half full.
+         *
+         * @return {@code false} if the live entries do not fit in {@code maxCapacity} slots
+         */
+        private boolean rehash(long horizon, int maxCapacity) {
+            int live = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY && keys[i] != TOMBSTONE && !isExpired(i, horizon)) {
+                    live++;
+                }
+            }
+            if (live == used && 2 * (live + 1) <= keys.length) {
+                return true;
+            }
+            int capacity = keys.length;
+            while (2 * (live + 1) > capacity && capacity < maxCapacity) {
+                capacity <<= 1;
+            }
+            if (2 * (live + 1) > capacity) {
+                return false;
+            }
+            long[] oldKeys = keys;
+            long[] oldFingerprints = fingerprints;
+            long[] oldTransactionIds = transactionIds;
+            int[] oldCreatedAt = createdAt;
+            int[] oldCodes = codes;
+            String[] oldMessages = messages;
+            keys = new long[capacity];
+            fingerprints = new long[capacity];
+            transactionIds = new long[capacity];
+            createdAt = new int[capacity];
+            codes = new int[capacity];
+            messages = new String[capacity];
+            used = 0;
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                long key = oldKeys[j];
+                if (key == EMPTY || key == TOMBSTONE || (oldCodes[j] != IN_FLIGHT && oldCreatedAt[j] <= horizon)) {
+                    continue;
+                }
+                int i = (int) key & mask;
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                fingerprints[i] = oldFingerprints[j];
+                transactionIds[i] = oldTransactionIds[j];
+                createdAt[i] = oldCreatedAt[j];
+                codes[i] = oldCodes[j];
+                messages[i] = oldMessages[j];
+                used++;
+            }
+            return true;
+        }
+
+        private PaymentResponse response(int slot) {
+            int code = codes[slot];
+            int reason = code >>> 8;
+            return PaymentResponse.builder()
+                    .status(STATUSES[(code & 0xFF) - 1])
+                    .reasonCode(reason == 0 ? null : REASON_CODES[reason - 1])
+                    .message(messages[slot])
+                    .transactionId(transactionIds[slot] == 0 ? null : transactionIds[slot])
+                    .build();
+        }
+    }
+}
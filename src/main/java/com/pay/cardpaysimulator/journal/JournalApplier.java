@@ -0,0 +1,68 @@
+package com.pay.cardpaysimulator.journal;
+
+import com.pay.cardpaysimulator.model.JournalCheckpoint;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes journal records to the {@code transactions} and {@code cards} tables together with the
+ * new checkpoint, in one database transaction, so every record is applied exactly once.
+ */
+class JournalApplier {
+
+    private static final String INSERT_TRANSACTION =
+            "insert into transactions (id, card_id, amount, status, timestamp, description, version) values (?, ?, ?, ?, ?, ?, 0)";
+    private static final String DEBIT_CARD = "update cards set balance = balance - ?, version = version + 1 where id = ?";
+    private static final String UPDATE_CHECKPOINT =
+            "update journal_checkpoint set segment_index = ?, segment_offset = ? where id = ?";
+    private static final String INSERT_CHECKPOINT =
+            "insert into journal_checkpoint (id, segment_index, segment_offset) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    JournalApplier(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * @return the applied position as {@code {segmentIndex, segmentOffset}}, or {@code null} if
+     * nothing has been applied yet
+     */
+    long[] readCheckpoint() {
+        List<long[]> rows = jdbcTemplate.query("select segment_index, segment_offset from journal_checkpoint where id = ?",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getInt(2)}, JournalCheckpoint.ID);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    void apply(List<JournalRecord> records, long segmentIndex, int segmentOffset) {
+        Map<Long, Long> debits = new HashMap<>();
+        records.forEach(record -> debits.merge(record.cardId(), record.amountCents(), Long::sum));
+        List<Object[]> debitArgs = new ArrayList<>(debits.size());
+        debits.forEach((cardId, cents) -> debitArgs.add(new Object[]{BalanceLedger.fromMinorUnits(cents), cardId}));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_TRANSACTION, records, records.size(), (ps, record) -> {
+                ps.setLong(1, record.id());
+                ps.setLong(2, record.cardId());
+                ps.setBigDecimal(3, BalanceLedger.fromMinorUnits(record.amountCents()));
+                ps.setString(4, TransactionStatus.APPROVED.name());
+                ps.setTimestamp(5, Timestamp.valueOf(record.timestamp()));
+                ps.setString(6, record.description());
+            });
+            jdbcTemplate.batchUpdate(DEBIT_CARD, debitArgs);
+            if (jdbcTemplate.update(UPDATE_CHECKPOINT, segmentIndex, segmentOffset, JournalCheckpoint.ID) == 0) {
+                jdbcTemplate.update(INSERT_CHECKPOINT, JournalCheckpoint.ID, segmentIndex, segmentOffset);
+            }
+        });
+    }
+}
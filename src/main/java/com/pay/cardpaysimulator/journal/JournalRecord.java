@@ -0,0 +1,86 @@
+package com.pay.cardpaysimulator.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * An approved payment as written to the transaction journal.
+ * <p>
+ * Encoded as {@code length:int id:long cardId:long amountCents:long timestampMicros:long
+ * descriptionLength:short description:utf8 crc:int}, where the CRC covers everything between the
+ * length and itself. A zero length or a CRC mismatch marks the end of the valid part of a segment.
+ */
+record JournalRecord(long id, long cardId, long amountCents, LocalDateTime timestamp, String description) {
+
+    static final int HEADER_SIZE = Integer.BYTES + 4 * Long.BYTES + Short.BYTES;
+    static final int TRAILER_SIZE = Integer.BYTES;
+
+    int encodedSize() {
+        return HEADER_SIZE + descriptionBytes().length + TRAILER_SIZE;
+    }
+
+    /**
+     * Writes the record at the buffer's position and advances it.
+     */
+    void encode(ByteBuffer buffer) {
+        byte[] descriptionBytes = descriptionBytes();
+        int start = buffer.position();
+        buffer.putInt(HEADER_SIZE + descriptionBytes.length + TRAILER_SIZE);
+        buffer.putLong(id);
+        buffer.putLong(cardId);
+        buffer.putLong(amountCents);
+        buffer.putLong(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000);
+        buffer.putShort((short) (description == null ? -1 : descriptionBytes.length));
+        buffer.put(descriptionBytes);
+        buffer.putInt(checksum(buffer, start + Integer.BYTES, buffer.position()));
+    }
+
+    /**
+     * Reads the record at the buffer's position, advancing it only if a complete, valid record was found.
+     *
+     * @return the record, or {@code null} at the end of the valid records
+     */
+    static JournalRecord decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE + TRAILER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        if (length < HEADER_SIZE + TRAILER_SIZE || length > buffer.remaining()) {
+            return null;
+        }
+        int end = start + length;
+        if (buffer.getInt(end - TRAILER_SIZE) != checksum(buffer, start + Integer.BYTES, end - TRAILER_SIZE)) {
+            return null;
+        }
+        buffer.position(start + Integer.BYTES);
+        long id = buffer.getLong();
+        long cardId = buffer.getLong();
+        long amountCents = buffer.getLong();
+        long micros = buffer.getLong();
+        short descriptionLength = buffer.getShort();
+        String description = null;
+        if (descriptionLength >= 0) {
+            byte[] bytes = new byte[descriptionLength];
+            buffer.get(bytes);
+            description = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(end);
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+        return new JournalRecord(id, cardId, amountCents, timestamp, description);
+    }
+
+    private byte[] descriptionBytes() {
+        return description == null ? new byte[0] : description.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(to).position(from));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,30 @@
+package com.pay.cardpaysimulator.journal;
+
+import com.pay.cardpaysimulator.model.Transaction;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Hands out transaction IDs from {@code transaction_seq} in blocks, interpreting each sequence
+ * value as the low end of a block of {@link Transaction#ID_ALLOCATION_SIZE} IDs. This matches
+ * Hibernate's pooled-lo optimizer, so IDs never collide with rows inserted through JPA or by
+ * other allocators.
+ */
+public class TransactionIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private long next;
+    private long limit;
+
+    public TransactionIdAllocator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public synchronized long next() {
+        if (next == limit) {
+            Long blockStart = jdbcTemplate.queryForObject("select next value for transaction_seq", Long.class);
+            next = blockStart;
+            limit = blockStart + Transaction.ID_ALLOCATION_SIZE;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,483 @@
+package com.pay.cardpaysimulator.journal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only, memory-mapped journal of approved payments, used in journal durability mode
+ * ({@code simulator.durability.mode=journal}).
+ * <p>
+ * A payment is approved as soon as its record is durable in the journal. Appending threads only
+ * copy the record into the mapped segment and wait for the sync thread, which forces everything
+ * written so far to disk in one call, so concurrent payments share each fsync (group commit).
+ * A scheduled flusher then inserts the records into the {@code transactions} table as JDBC batches,
+ * applies the balance deltas to {@code cards} and advances the checkpoint in the same database
+ * transaction. On startup, records after the checkpoint are replayed before any payment is accepted.
+ * <p>
+ * An append that is not durable within {@code simulator.journal.sync-timeout}, or a sync that keeps
+ * failing for that long, puts the journal in a failed state: records not yet forced are erased so
+ * they are never applied, waiting appends fail with an {@link IOException} so their debits are
+ * undone, and later appends are rejected right away until the application is restarted.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(name = "simulator.durability.mode", havingValue = "journal")
+public class TransactionJournal {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int flushBatchSize;
+    private final long syncIntervalNanos;
+    private final long syncTimeoutNanos;
+    private final JournalApplier applier;
+    private final TransactionIdAllocator idAllocator;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final Condition applied = applyLock.newCondition();
+
+    /** Segment being appended to; guarded by {@link #appendLock}. */
+    private Segment active;
+    /** Journal positions, as {@code segmentIndex << 32 | offset}. */
+    private volatile long writtenPosition;
+    private volatile long forcedPosition;
+    private volatile long appliedPosition;
+    /** Next record to apply; only used by the flusher. */
+    private Segment applySegment;
+    private int applyOffset;
+
+    private volatile boolean running;
+    /** Why the journal stopped accepting appends, {@code null} while it is healthy. */
+    private volatile IOException failure;
+    private Thread syncThread;
+
+    public TransactionJournal(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${simulator.journal.directory:journal}") String directory,
+                              @Value("${simulator.journal.segment-size:64MB}") DataSize segmentSize,
+                              @Value("${simulator.journal.flush-batch-size:1000}") int flushBatchSize,
+                              @Value("${simulator.journal.sync-interval:100us}") Duration syncInterval,
+                              @Value("${simulator.journal.sync-timeout:5s}") Duration syncTimeout) {
+        this.directory = Path.of(directory);
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.flushBatchSize = flushBatchSize;
+        this.syncIntervalNanos = syncInterval.toNanos();
+        this.syncTimeoutNanos = syncTimeout.toNanos();
+        this.applier = new JournalApplier(jdbcTemplate, new TransactionTemplate(transactionManager));
+        this.idAllocator = new TransactionIdAllocator(jdbcTemplate);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        long nextIndex = recover();
+        active = openSegment(nextIndex, segmentSize);
+        segments.put(nextIndex, active);
+        applySegment = active;
+        applyOffset = 0;
+        writtenPosition = forcedPosition = appliedPosition = position(nextIndex, 0);
+
+        running = true;
+        syncThread = new Thread(this::syncLoop, "journal-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    /**
+     * Appends an approved payment and returns once it is durable.
+     *
+     * @return the ID of the transaction the record will be stored as
+     * @throws IOException if the journal has failed, or the record did not become durable in time;
+     *                     the record is then never applied
+     */
+    public long append(long cardId, long amountCents, LocalDateTime timestamp, String description) throws IOException {
+        JournalRecord record = new JournalRecord(idAllocator.next(), cardId, amountCents, timestamp, description);
+        int size = record.encodedSize();
+        long end;
+        appendLock.lock();
+        try {
+            if (!running) {
+                throw new IOException("Transaction journal is closed");
+            }
+            if (failure != null) {
+                throw new IOException("Transaction journal has failed", failure);
+            }
+            if (active.buffer.remaining() < size) {
+                roll();
+            }
+            record.encode(active.buffer);
+            end = position(active.index, active.buffer.position());
+            writtenPosition = end;
+        } finally {
+            appendLock.unlock();
+        }
+        LockSupport.unpark(syncThread);
+        awaitForced(end);
+        return record.id();
+    }
+
+    /**
+     * Waits until every record appended before the call has been applied to the database.
+     *
+     * @return {@code false} if the timeout elapsed first
+     */
+    public boolean awaitApplied(Duration timeout) throws InterruptedException {
+        long target = writtenPosition;
+        long remaining = timeout.toNanos();
+        applyLock.lock();
+        try {
+            while (appliedPosition < target) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = applied.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${simulator.journal.flush-interval-ms:20}")
+    public void flush() {
+        applyLock.lock();
+        try {
+            long durable = forcedPosition;
+            while (true) {
+                Segment segment = applySegment;
+                if (segment.index > segmentIndex(durable)) {
+                    return;
+                }
+                int limit = segment.index == segmentIndex(durable) ? segmentOffset(durable) : segment.sealedLength;
+                ByteBuffer view = segment.buffer.duplicate().limit(limit).position(applyOffset);
+                List<JournalRecord> batch = read(view);
+                if (!batch.isEmpty()) {
+                    applier.apply(batch, segment.index, view.position());
+                    applyOffset = view.position();
+                    appliedPosition = position(segment.index, applyOffset);
+                    applied.signalAll();
+                }
+                if (applyOffset == segment.sealedLength) {
+                    applySegment = segments.get(segment.index + 1);
+                    applyOffset = 0;
+                    segments.remove(segment.index);
+                    Files.deleteIfExists(segment.path);
+                    continue;
+                }
+                if (batch.size() < flushBatchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to apply journal records, retrying on next flush", e);
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        appendLock.lock();
+        try {
+            running = false;
+        } finally {
+            appendLock.unlock();
+        }
+        LockSupport.unpark(syncThread);
+        syncThread.join(TimeUnit.SECONDS.toMillis(5));
+        if (failure == null) {
+            try {
+                active.buffer.force();
+                forcedPosition = writtenPosition;
+            } catch (UncheckedIOException e) {
+                fail(e.getCause());
+            }
+        }
+        syncLock.lock();
+        try {
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+        flush();
+        log.info("Transaction journal closed with all records applied: {}", appliedPosition == forcedPosition);
+    }
+
+    /**
+     * Replays every record after the checkpoint and deletes the replayed segments.
+     *
+     * @return the index to use for the first new segment
+     */
+    private long recover() throws IOException {
+        long[] checkpoint = applier.readCheckpoint();
+        long nextIndex = checkpoint == null ? 1 : checkpoint[0] + 1;
+        long replayed = 0;
+        for (long index : existingSegments()) {
+            nextIndex = Math.max(nextIndex, index + 1);
+            Path path = segmentPath(index);
+            if (checkpoint == null || index >= checkpoint[0]) {
+                Segment segment = openSegment(index, (int) Files.size(path));
+                ByteBuffer view = segment.buffer.duplicate();
+                view.position(checkpoint != null && index == checkpoint[0] ? (int) checkpoint[1] : 0);
+                List<JournalRecord> batch;
+                while (!(batch = read(view)).isEmpty()) {
+                    applier.apply(batch, index, view.position());
+                    replayed += batch.size();
+                }
+            }
+            Files.delete(path);
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} journal records into the database", replayed);
+        }
+        return nextIndex;
+    }
+
+    private List<Long> existingSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private List<JournalRecord> read(ByteBuffer view) {
+        List<JournalRecord> batch = new ArrayList<>();
+        JournalRecord record;
+        while (batch.size() < flushBatchSize && (record = JournalRecord.decode(view)) != null) {
+            batch.add(record);
+        }
+        return batch;
+    }
+
+    /**
+     * Seals the active segment and starts the next one. Must hold {@link #appendLock}.
+     */
+    private void roll() throws IOException {
+        Segment previous = active;
+        previous.buffer.force();
+        Segment next = openSegment(previous.index + 1, segmentSize);
+        segments.put(next.index, next);
+        previous.sealedLength = previous.buffer.position();
+        active = next;
+    }
+
+    private void syncLoop() {
+        long failingSince = 0;
+        try {
+            while (running && failure == null) {
+                long target = writtenPosition;
+                if (target <= forcedPosition) {
+                    LockSupport.parkNanos(syncIntervalNanos);
+                    continue;
+                }
+                // Forced and published under the sync lock, so records are never erased while
+                // they are being acknowledged
+                syncLock.lock();
+                try {
+                    if (failure != null) {
+                        return;
+                    }
+                    segments.get(segmentIndex(target)).buffer.force();
+                    forcedPosition = target;
+                    failingSince = 0;
+                    synced.signalAll();
+                } catch (UncheckedIOException e) {
+                    long now = System.nanoTime();
+                    if (failingSince == 0) {
+                        failingSince = now;
+                        log.error("Failed to sync transaction journal, retrying", e);
+                    } else if (now - failingSince >= syncTimeoutNanos) {
+                        fail(e.getCause());
+                        return;
+                    }
+                } finally {
+                    syncLock.unlock();
+                }
+                if (failingSince != 0) {
+                    LockSupport.parkNanos(syncIntervalNanos);
+                }
+            }
+        } finally {
+            if (failure != null) {
+                syncLock.lock();
+                try {
+                    eraseUnforced();
+                } finally {
+                    syncLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the record ending at {@code position} is durable, failing the journal if it is
+     * not within the sync timeout.
+     */
+    private void awaitForced(long position) throws IOException {
+        if (forcedPosition >= position) {
+            return;
+        }
+        long deadline = System.nanoTime() + syncTimeoutNanos;
+        try {
+            if (!syncLock.tryLock(syncTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw timedOut();
+            }
+            try {
+                while (forcedPosition < position) {
+                    if (failure != null) {
+                        throw new IOException("Transaction journal has failed", failure);
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw timedOut();
+                    }
+                    synced.awaitNanos(remaining);
+                }
+            } finally {
+                syncLock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the transaction journal", e);
+        }
+    }
+
+    private IOException timedOut() {
+        IOException timeout = new IOException("Transaction journal record was not durable within "
+                + Duration.ofNanos(syncTimeoutNanos));
+        fail(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops accepting appends. The records that are not durable yet are erased, so neither the
+     * flusher nor recovery applies them, and waiting appends are woken so they fail. Both happen
+     * right away if the sync lock is free, or otherwise when the sync thread, which holds it while
+     * forcing, stops.
+     */
+    private void fail(IOException cause) {
+        appendLock.lock();
+        try {
+            if (failure != null) {
+                return;
+            }
+            failure = cause;
+        } finally {
+            appendLock.unlock();
+        }
+        log.error("Transaction journal failed, payments are rejected until restart", cause);
+        LockSupport.unpark(syncThread);
+        if (syncLock.tryLock()) {
+            try {
+                eraseUnforced();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Zeroes the records after the forced position and wakes waiting appends. Must hold
+     * {@link #syncLock}; does nothing once done.
+     */
+    private void eraseUnforced() {
+        appendLock.lock();
+        try {
+            long forced = forcedPosition;
+            if (writtenPosition > forced) {
+                for (Segment segment : segments.tailMap(segmentIndex(forced)).values()) {
+                    int from = segment.index == segmentIndex(forced) ? segmentOffset(forced) : 0;
+                    int to = segment == active ? segment.buffer.position() : segment.sealedLength;
+                    for (int i = from; i < to; i++) {
+                        segment.buffer.put(i, (byte) 0);
+                    }
+                    try {
+                        segment.buffer.force();
+                    } catch (UncheckedIOException e) {
+                        log.warn("Could not force erased journal records in segment {}", segment.index, e);
+                    }
+                }
+                writtenPosition = forced;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        synced.signalAll();
+    }
+
+    private Segment openSegment(long index, int size) throws IOException {
+        Path path = segmentPath(index);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(index, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static long position(long segmentIndex, int offset) {
+        return segmentIndex << 32 | offset;
+    }
+
+    private static long segmentIndex(long position) {
+        return position >>> 32;
+    }
+
+    private static int segmentOffset(long position) {
+        return (int) position;
+    }
+
+    private static final class Segment {
+        private final long index;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        /** Length of the records in the segment once it is no longer appended to, -1 before. */
+        private volatile int sealedLength = -1;
+
+        private Segment(long index, Path path, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.pay.cardpaysimulator.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Sends payments and refunds to the simulator's REST API.
+ */
+public class HttpPaymentTarget implements PaymentTarget {
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final URI processUri;
+    private final String refundUri;
+
+    public HttpPaymentTarget(String baseUrl, ObjectMapper objectMapper) {
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        this.objectMapper = objectMapper;
+        this.processUri = URI.create(base + "/api/payments/process");
+        this.refundUri = base + "/api/payments/refund/";
+    }
+
+    @Override
+    public PaymentResponse pay(PaymentRequest request) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(processUri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request)))
+                .build());
+    }
+
+    @Override
+    public PaymentResponse refund(Long transactionId) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(refundUri + transactionId))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build());
+    }
+
+    private PaymentResponse send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("Unexpected HTTP status " + response.statusCode() + " from " + request.uri());
+        }
+        return objectMapper.readValue(response.body(), PaymentResponse.class);
+    }
+}
@@ -0,0 +1,25 @@
+package com.pay.cardpaysimulator.loadgen;
+
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.service.PaymentService;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Calls {@link PaymentService} directly, measuring the service without HTTP and JSON overhead.
+ */
+@RequiredArgsConstructor
+public class InProcessPaymentTarget implements PaymentTarget {
+
+    private final PaymentService paymentService;
+
+    @Override
+    public PaymentResponse pay(PaymentRequest request) {
+        return paymentService.processPayment(request);
+    }
+
+    @Override
+    public PaymentResponse refund(Long transactionId) {
+        return paymentService.processRefund(transactionId);
+    }
+}
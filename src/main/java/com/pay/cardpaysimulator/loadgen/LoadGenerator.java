@@ -0,0 +1,360 @@
+package com.pay.cardpaysimulator.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pay.cardpaysimulator.dto.LoadProfile;
+import com.pay.cardpaysimulator.dto.LoadProfile.CardMix;
+import com.pay.cardpaysimulator.dto.LoadReport;
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.dto.ReplayRequest;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import com.pay.cardpaysimulator.service.PaymentService;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the payment API.
+ * <p>
+ * Requests are issued at Poisson-distributed intended start times regardless of how fast earlier
+ * requests complete, and latency is measured from the intended start time rather than the actual one,
+ * so a stalled server shows up in the percentiles instead of silently lowering the request rate.
+ * Generated traffic can be recorded to a {@link TrafficLog} and replayed with the same timing.
+ * <p>
+ * Requests only name traffic logs; they are read and written in {@code simulator.loadgen.directory}.
+ * HTTP traffic always goes to {@code simulator.loadgen.base-url}, and the rate and concurrency a
+ * request may ask for are capped by {@code simulator.loadgen.max-rate},
+ * {@code simulator.loadgen.max-replay-speed} and {@code simulator.loadgen.max-concurrency}. Without a
+ * card mix, the first {@code simulator.loadgen.max-database-cards} cards in the database are used.
+ */
+@Slf4j
+@Service
+public class LoadGenerator {
+
+    private final PaymentService paymentService;
+    private final CardRepository cardRepository;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final String baseUrl;
+    private final double maxRate;
+    private final int maxConcurrency;
+    private final double maxReplaySpeed;
+    private final int maxDatabaseCards;
+
+    public LoadGenerator(PaymentService paymentService,
+                         CardRepository cardRepository,
+                         ObjectMapper objectMapper,
+                         @Value("${simulator.loadgen.directory:loadgen}") String directory,
+                         @Value("${simulator.loadgen.base-url:http://localhost:${server.port:8080}}") String baseUrl,
+                         @Value("${simulator.loadgen.max-rate:100000}") double maxRate,
+                         @Value("${simulator.loadgen.max-concurrency:1024}") int maxConcurrency,
+                         @Value("${simulator.loadgen.max-replay-speed:10}") double maxReplaySpeed,
+                         @Value("${simulator.loadgen.max-database-cards:10000}") int maxDatabaseCards) {
+        this.paymentService = paymentService;
+        this.cardRepository = cardRepository;
+        this.objectMapper = objectMapper;
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl;
+        this.maxRate = maxRate;
+        this.maxConcurrency = maxConcurrency;
+        this.maxReplaySpeed = maxReplaySpeed;
+        this.maxDatabaseCards = maxDatabaseCards;
+    }
+
+    public LoadReport run(LoadProfile profile) throws IOException, InterruptedException {
+        if (profile.getRatePerSecond() <= 0 || profile.getDurationSeconds() <= 0 || profile.getMaxConcurrency() <= 0) {
+            throw new IllegalArgumentException("Rate, duration and concurrency must be positive");
+        }
+        if (profile.getRatePerSecond() > maxRate || profile.getMaxConcurrency() > maxConcurrency) {
+            throw new IllegalArgumentException("Rate and concurrency must be at most " + maxRate + " and " + maxConcurrency);
+        }
+        if (profile.getRefundRatio() < 0 || profile.getRefundRatio() > 1) {
+            throw new IllegalArgumentException("Refund ratio must be between 0 and 1");
+        }
+        long minCents = toCents(profile.getMinAmount());
+        long maxCents = toCents(profile.getMaxAmount());
+        if (minCents <= 0 || maxCents < minCents) {
+            throw new IllegalArgumentException("Amount range must be positive and ordered");
+        }
+
+        List<CardMix> cards = profile.getCards() == null || profile.getCards().isEmpty()
+                ? databaseCards()
+                : profile.getCards();
+        if (cards.isEmpty()) {
+            throw new IllegalArgumentException("No cards available; initialize cards or pass a card mix");
+        }
+        double[] cumulativeWeights = new double[cards.size()];
+        double totalWeight = 0;
+        for (int i = 0; i < cards.size(); i++) {
+            totalWeight += Math.max(0, cards.get(i).getWeight());
+            cumulativeWeights[i] = totalWeight;
+        }
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("Card weights must not all be zero");
+        }
+
+        SplittableRandom random = profile.getSeed() == null ? new SplittableRandom() : new SplittableRandom(profile.getSeed());
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / profile.getRatePerSecond();
+        long durationNanos = TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+
+        Path recordFile = profile.getRecordFile() == null ? null : resolve(profile.getRecordFile());
+        TrafficLog.Writer recorder = recordFile == null ? null : TrafficLog.create(recordFile, cards);
+        log.info("Starting load run at {}/s for {}s against {}", profile.getRatePerSecond(), profile.getDurationSeconds(), profile.getTarget());
+        Run run = new Run(target(profile.getTarget()), cards, profile.getMaxConcurrency(), recorder);
+        try {
+            long offset = 0;
+            while (true) {
+                offset += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+                if (offset >= durationNanos) {
+                    break;
+                }
+                run.awaitOffset(offset);
+                if (random.nextDouble() < profile.getRefundRatio()) {
+                    int refundOf = run.takeApprovedPayment(random);
+                    if (refundOf < 0) {
+                        run.skippedRefunds.increment();
+                        continue;
+                    }
+                    run.submit(TrafficEvent.refund(offset, refundOf), offset);
+                } else {
+                    int cardIndex = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+                    cardIndex = Math.min(cardIndex < 0 ? -cardIndex - 1 : cardIndex, cards.size() - 1);
+                    long amountCents = minCents == maxCents ? minCents : random.nextLong(minCents, maxCents + 1);
+                    run.submit(TrafficEvent.payment(offset, cardIndex, amountCents), offset);
+                }
+            }
+        } finally {
+            run.finish();
+            if (recorder != null) {
+                recorder.close();
+            }
+        }
+        LoadReport report = run.report();
+        report.setRecordedTo(profile.getRecordFile());
+        return report;
+    }
+
+    public LoadReport replay(ReplayRequest request) throws IOException, InterruptedException {
+        if (request.getSpeed() <= 0 || request.getMaxConcurrency() <= 0) {
+            throw new IllegalArgumentException("Speed and concurrency must be positive");
+        }
+        if (request.getSpeed() > maxReplaySpeed || request.getMaxConcurrency() > maxConcurrency) {
+            throw new IllegalArgumentException("Speed and concurrency must be at most " + maxReplaySpeed + " and " + maxConcurrency);
+        }
+        if (request.getFile() == null) {
+            throw new IllegalArgumentException("A traffic log to replay is required");
+        }
+        try (TrafficLog.Reader reader = TrafficLog.open(resolve(request.getFile()))) {
+            log.info("Replaying {} at {}x against {}", request.getFile(), request.getSpeed(), request.getTarget());
+            Run run = new Run(target(request.getTarget()), reader.getCards(), request.getMaxConcurrency(), null);
+            try {
+                TrafficEvent event;
+                while ((event = reader.next()) != null) {
+                    long offset = (long) (event.offsetNanos() / request.getSpeed());
+                    run.awaitOffset(offset);
+                    run.submit(event, offset);
+                }
+            } finally {
+                run.finish();
+            }
+            return run.report();
+        }
+    }
+
+    private List<CardMix> databaseCards() {
+        List<CardMix> cards = new ArrayList<>();
+        cardRepository.findCredentials(Limit.of(maxDatabaseCards)).forEach(card -> cards.add(CardMix.builder()
+                .cardNumber(card.getCardNumber())
+                .cvv(card.getCvv())
+                .weight(1)
+                .build()));
+        return cards;
+    }
+
+    /**
+     * Resolves the name of a traffic log in the load generator directory. Absolute paths and names
+     * leading out of the directory are rejected, so requests cannot read or write other files.
+     */
+    private Path resolve(String name) {
+        if (name.isBlank() || name.contains("..") || Path.of(name).isAbsolute()) {
+            throw new IllegalArgumentException("Traffic log must be a relative name within the load generator directory");
+        }
+        Path path = directory.resolve(name).normalize();
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            throw new IllegalArgumentException("Traffic log must be a relative name within the load generator directory");
+        }
+        return path;
+    }
+
+    private PaymentTarget target(LoadTarget target) {
+        return target == LoadTarget.HTTP
+                ? new HttpPaymentTarget(baseUrl, objectMapper)
+                : new InProcessPaymentTarget(paymentService);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount range is required");
+        }
+        try {
+            return BalanceLedger.toMinorUnits(amount);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amounts must be whole cents", e);
+        }
+    }
+
+    /**
+     * State of one load run: the worker pool, the latency histogram and the outcome counters.
+     */
+    private static final class Run {
+        private final PaymentTarget target;
+        private final List<CardMix> cards;
+        private final ExecutorService executor;
+        private final TrafficLog.Writer recorder;
+        private final Histogram latencies = new ConcurrentHistogram(3);
+        private final LongAdder[] statusCounts = new LongAdder[TransactionStatus.values().length];
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder skippedRefunds = new LongAdder();
+        private final Map<Integer, Long> approvedTransactions = new ConcurrentHashMap<>();
+        private final List<Integer> refundablePayments = new ArrayList<>();
+        private final long startNanos;
+        private long requests;
+        private long endNanos;
+
+        private Run(PaymentTarget target, List<CardMix> cards, int maxConcurrency, TrafficLog.Writer recorder) {
+            this.target = target;
+            this.cards = cards;
+            this.executor = Executors.newFixedThreadPool(maxConcurrency);
+            this.recorder = recorder;
+            for (int i = 0; i < statusCounts.length; i++) {
+                statusCounts[i] = new LongAdder();
+            }
+            this.startNanos = System.nanoTime();
+        }
+
+        private void awaitOffset(long offsetNanos) {
+            long remaining;
+            while ((remaining = startNanos + offsetNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+
+        /**
+         * Issues the event, measuring its latency from {@code offsetNanos} into the run: the recorded
+         * offset scaled by the replay speed, not the offset recorded in the event.
+         */
+        private void submit(TrafficEvent event, long offsetNanos) throws IOException {
+            int sequence = (int) requests++;
+            if (recorder != null) {
+                recorder.append(event);
+            }
+            long intendedStart = startNanos + offsetNanos;
+            executor.execute(() -> execute(sequence, event, intendedStart));
+        }
+
+        private void execute(int sequence, TrafficEvent event, long intendedStart) {
+            try {
+                PaymentResponse response;
+                if (event.isRefund()) {
+                    Long transactionId = approvedTransactions.remove(event.refundOf());
+                    if (transactionId == null) {
+                        skippedRefunds.increment();
+                        return;
+                    }
+                    response = target.refund(transactionId);
+                } else {
+                    CardMix card = cards.get(event.cardIndex());
+                    response = target.pay(PaymentRequest.builder()
+                            .cardNumber(card.getCardNumber())
+                            .cvv(card.getCvv())
+                            .amount(BigDecimal.valueOf(event.amountCents(), 2))
+                            .description("Load test")
+                            .build());
+                    if (response.getStatus() == TransactionStatus.APPROVED && response.getTransactionId() != null) {
+                        approvedTransactions.put(sequence, response.getTransactionId());
+                        synchronized (refundablePayments) {
+                            refundablePayments.add(sequence);
+                        }
+                    }
+                }
+                latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart));
+                if (response.getStatus() != null) {
+                    statusCounts[response.getStatus().ordinal()].increment();
+                }
+            } catch (Exception e) {
+                errors.increment();
+            }
+        }
+
+        /**
+         * Removes and returns a random approved payment that has not been refunded yet, or -1 if none.
+         */
+        private int takeApprovedPayment(SplittableRandom random) {
+            synchronized (refundablePayments) {
+                int size = refundablePayments.size();
+                if (size == 0) {
+                    return -1;
+                }
+                int index = random.nextInt(size);
+                int sequence = refundablePayments.get(index);
+                refundablePayments.set(index, refundablePayments.get(size - 1));
+                refundablePayments.remove(size - 1);
+                return sequence;
+            }
+        }
+
+        private void finish() throws InterruptedException {
+            executor.shutdown();
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+            endNanos = System.nanoTime();
+        }
+
+        private LoadReport report() {
+            long elapsedNanos = endNanos - startNanos;
+            long completed = latencies.getTotalCount();
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (TransactionStatus status : TransactionStatus.values()) {
+                long count = statusCounts[status.ordinal()].sum();
+                if (count > 0) {
+                    counts.put(status.name(), count);
+                }
+            }
+            return LoadReport.builder()
+                    .requests(requests)
+                    .skippedRefunds(skippedRefunds.sum())
+                    .errors(errors.sum())
+                    .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                    .throughputPerSecond(elapsedNanos == 0 ? 0 : completed * 1e9 / elapsedNanos)
+                    .statusCounts(counts)
+                    .p50Micros(latencies.getValueAtPercentile(50))
+                    .p99Micros(latencies.getValueAtPercentile(99))
+                    .p999Micros(latencies.getValueAtPercentile(99.9))
+                    .maxMicros(latencies.getMaxValue())
+                    .meanMicros(latencies.getMean())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.pay.cardpaysimulator.loadgen;
+
+public enum LoadTarget {
+    IN_PROCESS,
+    HTTP
+}
@@ -0,0 +1,14 @@
+package com.pay.cardpaysimulator.loadgen;
+
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+
+/**
+ * Something the load generator can send payments and refunds to.
+ */
+public interface PaymentTarget {
+
+    PaymentResponse pay(PaymentRequest request) throws Exception;
+
+    PaymentResponse refund(Long transactionId) throws Exception;
+}
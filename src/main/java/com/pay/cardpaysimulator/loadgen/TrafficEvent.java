@@ -0,0 +1,24 @@
+package com.pay.cardpaysimulator.loadgen;
+
+/**
+ * One request of a load run.
+ *
+ * @param offsetNanos intended start time relative to the start of the run
+ * @param cardIndex   index into the run's card table; unused for refunds
+ * @param amountCents payment amount; unused for refunds
+ * @param refundOf    sequence number of the payment event to refund, or {@code -1} for a payment
+ */
+public record TrafficEvent(long offsetNanos, int cardIndex, long amountCents, int refundOf) {
+
+    public static TrafficEvent payment(long offsetNanos, int cardIndex, long amountCents) {
+        return new TrafficEvent(offsetNanos, cardIndex, amountCents, -1);
+    }
+
+    public static TrafficEvent refund(long offsetNanos, int refundOf) {
+        return new TrafficEvent(offsetNanos, -1, 0, refundOf);
+    }
+
+    public boolean isRefund() {
+        return refundOf >= 0;
+    }
+}
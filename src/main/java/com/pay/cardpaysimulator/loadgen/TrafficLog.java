@@ -0,0 +1,148 @@
+package com.pay.cardpaysimulator.loadgen;
+
+import com.pay.cardpaysimulator.dto.LoadProfile.CardMix;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary log of load generator traffic.
+ * <p>
+ * The file starts with a header holding the card table, followed by one record per event. Records
+ * store the offset as a variable-length delta from the previous event and the amount in cents, so a
+ * typical payment takes 5 to 8 bytes:
+ * <pre>
+ * header:  magic:int version:byte cardCount:varint (cardNumber:utf cvv:utf)*
+ * payment: 0:byte offsetDelta:varlong cardIndex:varint amountCents:varlong
+ * refund:  1:byte offsetDelta:varlong refundOf:varint
+ * </pre>
+ */
+public final class TrafficLog {
+
+    private static final int MAGIC = 0x43505354;
+    private static final int VERSION = 1;
+    private static final int PAYMENT = 0;
+    private static final int REFUND = 1;
+
+    private TrafficLog() {
+    }
+
+    public static Writer create(Path path, List<CardMix> cards) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarLong(out, cards.size());
+        for (CardMix card : cards) {
+            out.writeUTF(card.getCardNumber());
+            out.writeUTF(card.getCvv());
+        }
+        return new Writer(out);
+    }
+
+    public static Reader open(Path path) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not a traffic log: " + path);
+            }
+            int count = (int) readVarLong(in);
+            List<CardMix> cards = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                cards.add(CardMix.builder().cardNumber(in.readUTF()).cvv(in.readUTF()).build());
+            }
+            return new Reader(in, cards);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private long lastOffset;
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        public void append(TrafficEvent event) throws IOException {
+            out.writeByte(event.isRefund() ? REFUND : PAYMENT);
+            writeVarLong(out, event.offsetNanos() - lastOffset);
+            lastOffset = event.offsetNanos();
+            if (event.isRefund()) {
+                writeVarLong(out, event.refundOf());
+            } else {
+                writeVarLong(out, event.cardIndex());
+                writeVarLong(out, event.amountCents());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<CardMix> cards;
+        private long lastOffset;
+
+        private Reader(DataInputStream in, List<CardMix> cards) {
+            this.in = in;
+            this.cards = cards;
+        }
+
+        public List<CardMix> getCards() {
+            return cards;
+        }
+
+        /**
+         * @return the next event, or {@code null} at the end of the log
+         */
+        public TrafficEvent next() throws IOException {
+            int type = in.read();
+            if (type < 0) {
+                return null;
+            }
+            lastOffset += readVarLong(in);
+            if (type == REFUND) {
+                return TrafficEvent.refund(lastOffset, (int) readVarLong(in));
+            }
+            int cardIndex = (int) readVarLong(in);
+            return TrafficEvent.payment(lastOffset, cardIndex, readVarLong(in));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length number in traffic log");
+    }
+}
@@ -0,0 +1,98 @@
+package com.pay.cardpaysimulator.metrics;
+
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot-path instrumentation for payments, refunds and holds.
+ * <p>
+ * Every timer and counter is registered up front and looked up by enum ordinal, so recording a
+ * stage or an outcome is an array access plus a lock-free add, with no tag or meter lookups and no
+ * allocation on the request thread.
+ */
+@Component
+public class PaymentMetrics {
+
+    public enum Operation {
+        PAYMENT,
+        REFUND,
+        AUTHORIZE,
+        CAPTURE,
+        VOID
+    }
+
+    public enum Stage {
+        /** Loading the card (payments and authorizations) or the transaction (refunds, captures and voids). */
+        LOOKUP,
+        /** Scenario rules, including injected issuer latency, expiry, CVV and velocity checks. */
+        CARD_CHECKS,
+        /** Debiting or crediting the balance ledger. */
+        BALANCE_UPDATE,
+        /** The database transaction, including the insert or update and the commit. */
+        PERSIST,
+        /** The whole operation. */
+        TOTAL
+    }
+
+    private final Timer[][] stageTimers = new Timer[Operation.values().length][Stage.values().length];
+    private final Counter[][] statusCounters = new Counter[Operation.values().length][TransactionStatus.values().length];
+    private final Counter[][] reasonCounters = new Counter[Operation.values().length][ReasonCode.values().length];
+
+    public PaymentMetrics(MeterRegistry registry) {
+        for (Operation operation : Operation.values()) {
+            String operationTag = operation.name().toLowerCase();
+            for (Stage stage : Stage.values()) {
+                stageTimers[operation.ordinal()][stage.ordinal()] = Timer.builder("payments.stage")
+                        .description("Time spent in each stage of payment and refund processing")
+                        .tag("operation", operationTag)
+                        .tag("stage", stage.name().toLowerCase())
+                        .publishPercentileHistogram()
+                        .register(registry);
+            }
+            for (TransactionStatus status : TransactionStatus.values()) {
+                statusCounters[operation.ordinal()][status.ordinal()] = Counter.builder("payments.outcome")
+                        .description("Payments and refunds by resulting transaction status")
+                        .tag("operation", operationTag)
+                        .tag("status", status.name())
+                        .register(registry);
+            }
+            for (ReasonCode reason : ReasonCode.values()) {
+                reasonCounters[operation.ordinal()][reason.ordinal()] = Counter.builder("payments.rejected")
+                        .description("Declined and failed payments and refunds by reason")
+                        .tag("operation", operationTag)
+                        .tag("reason", reason.name())
+                        .register(registry);
+            }
+        }
+    }
+
+    /**
+     * Records the time since {@code startNanos} for the stage and returns the current time,
+     * so consecutive stages can be chained.
+     */
+    public long record(Operation operation, Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        stageTimers[operation.ordinal()][stage.ordinal()].record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /**
+     * Records the total time and the outcome of an operation.
+     */
+    public void complete(Operation operation, long startNanos, PaymentResponse response) {
+        record(operation, Stage.TOTAL, startNanos);
+        if (response.getStatus() != null) {
+            statusCounters[operation.ordinal()][response.getStatus().ordinal()].increment();
+        }
+        if (response.getReasonCode() != null) {
+            reasonCounters[operation.ordinal()][response.getReasonCode().ordinal()].increment();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.pay.cardpaysimulator.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.pay.cardpaysimulator.validation.ValidCardNumber;
+import com.pay.cardpaysimulator.validation.ValidCvv;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
@@ -19,8 +22,7 @@ public class Card {
     private Long id;
 
     @NotBlank(message = "Card number is required")
-    @Pattern(regexp = "^(?:4[0-9]{12}(?:[0-9]{3})?|5[1-5][0-9]{14}|3[47][0-9]{13}|6(?:011|5[0-9]{2})[0-9]{12})$", 
-             message = "Invalid card number format")
+    @ValidCardNumber
     @Column(unique = true, nullable = false)
     private String cardNumber;
 
@@ -29,17 +31,38 @@ public class Card {
     private String cardholderName;
 
     @NotNull(message = "Expiration date is required")
-    @Future(message = "Card must not be expired")
     @Column(nullable = false)
     private LocalDate expirationDate;
 
     @NotBlank(message = "CVV is required")
-    @Pattern(regexp = "^[0-9]{3,4}$", message = "CVV must be 3 or 4 digits")
+    @ValidCvv
     @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String cvv;
 
     @NotNull(message = "Balance is required")
     @DecimalMin(value = "0.0", message = "Balance must be greater than or equal to 0")
     @Column(nullable = false)
     private BigDecimal balance;
+
+    /**
+     * The balance the card was created with, less the net amount of its archived transactions, so
+     * that it plus the transactions still in the table add up to {@link #balance}. Empty for cards
+     * created before it was tracked, which cannot be reconciled.
+     */
+    @Column(updatable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private BigDecimal openingBalance;
+
+    @Version
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    @PrePersist
+    void initOpeningBalance() {
+        if (openingBalance == null) {
+            openingBalance = balance;
+        }
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.pay.cardpaysimulator.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persisted outcome of a request made with an {@code Idempotency-Key}, so duplicates are still
+ * recognized after a restart. Keys are stored as their 64-bit hash.
+ */
+@Entity
+@Table(name = "idempotency_records", indexes = @Index(name = "idx_idempotency_created_at", columnList = "createdAt"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+    public static final int MAX_MESSAGE_LENGTH = 512;
+
+    @Id
+    private Long keyHash;
+
+    @Column(nullable = false)
+    private Long fingerprint;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransactionStatus status;
+
+    @Enumerated(EnumType.STRING)
+    private ReasonCode reasonCode;
+
+    @Column(length = MAX_MESSAGE_LENGTH)
+    private String message;
+
+    private Long transactionId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,28 @@
+package com.pay.cardpaysimulator.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Position in the transaction journal up to which records have been applied to the database.
+ * A single row, updated in the same transaction as the rows it covers.
+ */
+@Entity
+@Table(name = "journal_checkpoint")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JournalCheckpoint {
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private Long segmentIndex;
+
+    @Column(nullable = false)
+    private Integer segmentOffset;
+}
@@ -0,0 +1,24 @@
+package com.pay.cardpaysimulator.model;
+
+/**
+ * Why a payment, refund or hold operation was declined or failed, or why a hold was voided.
+ */
+public enum ReasonCode {
+    ISSUER_DECLINED,
+    EXPIRED_CARD,
+    INVALID_CVV,
+    CARD_LOCKED,
+    VELOCITY_LIMIT_EXCEEDED,
+    AMOUNT_LIMIT_EXCEEDED,
+    INSUFFICIENT_FUNDS,
+    CARD_NOT_FOUND,
+    TRANSACTION_NOT_FOUND,
+    NOT_REFUNDABLE,
+    REFUND_EXCEEDS_AMOUNT,
+    NOT_PENDING,
+    CAPTURE_EXCEEDS_HOLD,
+    HOLD_EXPIRED,
+    ISSUER_ERROR,
+    INVALID_REQUEST,
+    PROCESSING_ERROR
+}
@@ -1,5 +1,6 @@
 package com.pay.cardpaysimulator.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
@@ -8,19 +9,28 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_timestamp", columnList = "timestamp, id"),
+        @Index(name = "idx_transactions_card_timestamp", columnList = "card_id, timestamp, id"),
+        @Index(name = "idx_transactions_status_timestamp", columnList = "status, timestamp, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Transaction {
+    /** IDs handed out per sequence call; shared with the journal's ID allocator. */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
+    /** Empty for attempts with an unknown card number. */
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "card_id", nullable = false)
+    @JoinColumn(name = "card_id")
     private Card card;
 
     @NotNull(message = "Amount is required")
@@ -28,14 +38,32 @@ public class Transaction {
     @Column(nullable = false)
     private BigDecimal amount;
 
+    /**
+     * Total refunded so far, maintained by each refund's conditional update; empty until the first
+     * refund. The transaction stays {@code APPROVED} until it is refunded in full.
+     */
+    private BigDecimal refundedAmount;
+
     @NotNull(message = "Status is required")
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private TransactionStatus status;
 
+    /** Why a declined or failed attempt was rejected; empty for approved payments. */
+    @Enumerated(EnumType.STRING)
+    private ReasonCode reasonCode;
+
     @Column(nullable = false)
     private LocalDateTime timestamp;
 
     @Size(max = 255, message = "Description must not exceed 255 characters")
     private String description;
+
+    /** When an uncaptured hold is released; empty for anything but {@code PENDING} holds. */
+    private LocalDateTime holdExpiresAt;
+
+    @Version
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 } 
\ No newline at end of file
@@ -5,5 +5,6 @@ public enum TransactionStatus {
     APPROVED,
     DECLINED,
     FAILED,
-    REFUNDED
+    REFUNDED,
+    VOIDED
 } 
\ No newline at end of file
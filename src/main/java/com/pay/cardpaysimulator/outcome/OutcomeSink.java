@@ -0,0 +1,247 @@
+package com.pay.cardpaysimulator.outcome;
+
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.journal.TransactionIdAllocator;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.service.CardCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records declined and failed payment attempts in the {@code transactions} table without adding a
+ * database round trip to the request.
+ * <p>
+ * The attempt gets its transaction ID up front, from a pooled-lo block of {@code transaction_seq},
+ * and is put on a bounded queue. A scheduled writer drains the queue and inserts the attempts as
+ * JDBC batches, resolving card IDs through the {@link CardCache}; attempts with an unknown card
+ * number are stored without a card. When the queue is full, the {@code drop} policy discards the
+ * attempt and the {@code block} policy waits up to the block timeout for space before discarding it.
+ * Attempts still queued at shutdown are written before the application stops; dropped attempts keep
+ * the ID returned to the client but are never stored. Queue depth, dropped, blocked and written
+ * attempts are published as {@code payments.outcomes.*} metrics.
+ */
+@Slf4j
+@Component
+public class OutcomeSink {
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    private static final String INSERT_TRANSACTION =
+            "insert into transactions (id, card_id, amount, status, reason_code, timestamp, description, version) "
+                    + "values (?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionIdAllocator idAllocator;
+    private final CardCache cardCache;
+    private final BlockingQueue<Outcome> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final int batchSize;
+    private final boolean enabled;
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Timer blocked;
+
+    public OutcomeSink(JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       CardCache cardCache,
+                       MeterRegistry meterRegistry,
+                       @Value("${simulator.outcomes.enabled:true}") boolean enabled,
+                       @Value("${simulator.outcomes.queue-capacity:65536}") int queueCapacity,
+                       @Value("${simulator.outcomes.overflow-policy:drop}") String overflowPolicy,
+                       @Value("${simulator.outcomes.block-timeout:1s}") Duration blockTimeout,
+                       @Value("${simulator.outcomes.batch-size:1000}") int batchSize) {
+        if (queueCapacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Outcome queue capacity and batch size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idAllocator = new TransactionIdAllocator(jdbcTemplate);
+        this.cardCache = cardCache;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase(Locale.ROOT));
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.batchSize = batchSize;
+        this.enabled = enabled;
+
+        Gauge.builder("payments.outcomes.queue.size", queue, BlockingQueue::size)
+                .description("Declined and failed attempts waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("payments.outcomes.queue.remaining", queue, BlockingQueue::remainingCapacity)
+                .description("Free space in the outcome queue")
+                .register(meterRegistry);
+        this.written = Counter.builder("payments.outcomes.written")
+                .description("Declined and failed attempts written to the transactions table")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("payments.outcomes.dropped")
+                .description("Declined and failed attempts discarded because the queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("payments.outcomes.failed")
+                .description("Declined and failed attempts lost because their batch could not be written")
+                .register(meterRegistry);
+        this.blocked = Timer.builder("payments.outcomes.blocked")
+                .description("Time request threads waited for space in the outcome queue")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Assigns the rejected payment a transaction ID, sets it on the response and queues the attempt
+     * for writing, waiting for space if the policy is {@code block}. Approved payments and placed
+     * holds are ignored.
+     */
+    public void record(PaymentRequest request, PaymentResponse response) {
+        if (!enabled || !isRejected(response)) {
+            return;
+        }
+        long id = idAllocator.next();
+        response.setTransactionId(id);
+        Outcome outcome = toOutcome(id, request, response);
+        if (queue.offer(outcome)) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            long start = System.nanoTime();
+            try {
+                boolean queued = queue.offer(outcome, blockTimeoutNanos, TimeUnit.NANOSECONDS);
+                blocked.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (queued) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        dropped.increment();
+    }
+
+    /**
+     * Queues a rejected payment that already has a transaction ID, without ever waiting, for
+     * callers that must not block such as event loop threads.
+     */
+    public void offer(long id, PaymentRequest request, PaymentResponse response) {
+        if (!enabled || !isRejected(response)) {
+            return;
+        }
+        response.setTransactionId(id);
+        if (!queue.offer(toOutcome(id, request, response))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Writes every queued attempt, in batches of at most {@code simulator.outcomes.batch-size}.
+     */
+    @Scheduled(fixedDelayString = "${simulator.outcomes.flush-interval-ms:20}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Outcome> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            while (queue.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    private void write(List<Outcome> batch) {
+        try {
+            Set<String> cardNumbers = new HashSet<>();
+            batch.forEach(outcome -> {
+                if (outcome.reasonCode() != ReasonCode.CARD_NOT_FOUND && outcome.cardNumber() != null) {
+                    cardNumbers.add(outcome.cardNumber());
+                }
+            });
+            Map<String, Card> cards = cardCache.findByCardNumbers(cardNumbers);
+
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_TRANSACTION, batch, batch.size(), (ps, outcome) -> {
+                        Card card = outcome.cardNumber() == null ? null : cards.get(outcome.cardNumber());
+                        ps.setLong(1, outcome.id());
+                        if (card == null) {
+                            ps.setNull(2, Types.BIGINT);
+                        } else {
+                            ps.setLong(2, card.getId());
+                        }
+                        ps.setBigDecimal(3, outcome.amount());
+                        ps.setString(4, outcome.status().name());
+                        ps.setString(5, outcome.reasonCode() == null ? null : outcome.reasonCode().name());
+                        ps.setTimestamp(6, Timestamp.valueOf(outcome.timestamp()));
+                        ps.setString(7, outcome.description());
+                    }));
+            written.increment(batch.size());
+        } catch (RuntimeException e) {
+            failed.increment(batch.size());
+            log.error("Could not write {} declined and failed attempts", batch.size(), e);
+        }
+    }
+
+    private static boolean isRejected(PaymentResponse response) {
+        return response.getStatus() == TransactionStatus.DECLINED || response.getStatus() == TransactionStatus.FAILED;
+    }
+
+    private static Outcome toOutcome(long id, PaymentRequest request, PaymentResponse response) {
+        return new Outcome(id, request.getCardNumber(), amount(request.getAmount()), response.getStatus(),
+                response.getReasonCode(), LocalDateTime.now(), description(request.getDescription()));
+    }
+
+    /**
+     * Rejected attempts may carry amounts the column cannot hold as is, so they are stored rounded to cents.
+     */
+    private static BigDecimal amount(BigDecimal amount) {
+        return amount == null ? BigDecimal.ZERO.setScale(2) : amount.setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    private static String description(String description) {
+        return description == null || description.length() <= 255 ? description : description.substring(0, 255);
+    }
+
+    private record Outcome(long id, String cardNumber, BigDecimal amount, TransactionStatus status,
+                           ReasonCode reasonCode, LocalDateTime timestamp, String description) {
+    }
+}
@@ -0,0 +1,282 @@
+package com.pay.cardpaysimulator.provisioning;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pay.cardpaysimulator.dto.CardGenerationRequest;
+import com.pay.cardpaysimulator.dto.ProvisioningReport;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import com.pay.cardpaysimulator.validation.CardNumbers;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts large numbers of cards, either generated by {@link CardGenerator} or streamed from a
+ * CSV or NDJSON import, as JDBC batches committed one chunk at a time.
+ * <p>
+ * Rows are consumed as they are produced or read, so memory use does not depend on the number of
+ * cards. A chunk that contains an existing card number is retried row by row and the duplicates
+ * are skipped. Inserted cards are picked up by the balance ledger and the card cache on first use.
+ */
+@Slf4j
+@Service
+public class CardBulkLoader {
+
+    private static final String INSERT_CARD =
+            "insert into cards (card_number, cardholder_name, expiration_date, cvv, balance, opening_balance, version) values (?, ?, ?, ?, ?, ?, 0)";
+    private static final String CSV_HEADER = "cardNumber,cardholderName,expirationDate,cvv,balance";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long maxCount;
+
+    public CardBulkLoader(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          ObjectMapper objectMapper,
+                          @Value("${simulator.cards.provisioning.batch-size:5000}") int batchSize,
+                          @Value("${simulator.cards.provisioning.max-count:10000000}") long maxCount) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxCount = maxCount;
+    }
+
+    public ProvisioningReport generate(CardGenerationRequest request) {
+        if (request.getCount() > maxCount) {
+            throw new IllegalArgumentException("Count must not exceed " + maxCount);
+        }
+        return load(new CardGenerator(request), new long[1]);
+    }
+
+    /**
+     * Imports cards from CSV with the columns {@value #CSV_HEADER}. The header line is optional
+     * and fields must not contain commas.
+     */
+    public ProvisioningReport importCsv(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        long[] rejected = new long[1];
+        Iterator<CardRow> rows = new ParsingIterator(rejected) {
+            private long lineNumber;
+
+            @Override
+            protected CardRow parseNext() throws IOException {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank() || (lineNumber == 1 && line.startsWith("cardNumber"))) {
+                        continue;
+                    }
+                    String[] fields = line.split(",", -1);
+                    if (fields.length != 5) {
+                        reject(lineNumber, "expected 5 fields");
+                        continue;
+                    }
+                    CardRow row = toRow(fields[0].trim(), fields[1].trim(), fields[2].trim(), fields[3].trim(), fields[4].trim());
+                    if (row == null) {
+                        reject(lineNumber, "invalid card");
+                        continue;
+                    }
+                    return row;
+                }
+                return null;
+            }
+        };
+        return load(rows, rejected);
+    }
+
+    /**
+     * Imports cards from newline-delimited JSON objects with the same fields as {@code POST /api/cards}.
+     */
+    public ProvisioningReport importNdjson(InputStream in) throws IOException {
+        MappingIterator<Card> cards = objectMapper.readerFor(Card.class).readValues(in);
+        long[] rejected = new long[1];
+        Iterator<CardRow> rows = new ParsingIterator(rejected) {
+            private long lineNumber;
+
+            @Override
+            protected CardRow parseNext() {
+                while (true) {
+                    lineNumber++;
+                    Card card;
+                    try {
+                        if (!cards.hasNextValue()) {
+                            return null;
+                        }
+                        card = cards.nextValue();
+                    } catch (IOException e) {
+                        // The parser cannot resynchronize after malformed JSON, so stop reading
+                        reject(lineNumber, e.getMessage());
+                        return null;
+                    }
+                    CardRow row = toRow(card.getCardNumber(), card.getCardholderName(),
+                            card.getExpirationDate() == null ? null : card.getExpirationDate().toString(),
+                            card.getCvv(), card.getBalance() == null ? null : card.getBalance().toPlainString());
+                    if (row != null) {
+                        return row;
+                    }
+                    reject(lineNumber, "invalid card");
+                }
+            }
+        };
+        try {
+            return load(rows, rejected);
+        } finally {
+            cards.close();
+        }
+    }
+
+    private ProvisioningReport load(Iterator<CardRow> rows, long[] rejected) {
+        long start = System.nanoTime();
+        long total = 0;
+        long inserted = 0;
+        List<CardRow> batch = new ArrayList<>(batchSize);
+        while (rows.hasNext()) {
+            batch.add(rows.next());
+            total++;
+            if (batch.size() == batchSize) {
+                inserted += insert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            inserted += insert(batch);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("Provisioned {} of {} cards in {} ms", inserted, total, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        return ProvisioningReport.builder()
+                .rows(total + rejected[0])
+                .inserted(inserted)
+                .duplicates(total - inserted)
+                .rejected(rejected[0])
+                .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                .rowsPerSecond(elapsedNanos == 0 ? 0 : inserted * 1e9 / elapsedNanos)
+                .build();
+    }
+
+    /**
+     * Inserts the rows as one batch in one transaction, or row by row if the batch hits an
+     * existing card number.
+     *
+     * @return the number of rows inserted
+     */
+    private int insert(List<CardRow> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_CARD, batch, batch.size(), CardBulkLoader::bind));
+            return batch.size();
+        } catch (DataIntegrityViolationException e) {
+            int inserted = 0;
+            for (CardRow row : batch) {
+                try {
+                    jdbcTemplate.update(INSERT_CARD, ps -> bind(ps, row));
+                    inserted++;
+                } catch (DataIntegrityViolationException duplicate) {
+                    log.debug("Skipping existing card number during bulk load");
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private static void bind(PreparedStatement ps, CardRow row) throws SQLException {
+        ps.setString(1, row.cardNumber());
+        ps.setString(2, row.cardholderName());
+        ps.setDate(3, Date.valueOf(row.expirationDate()));
+        ps.setString(4, row.cvv());
+        ps.setBigDecimal(5, BalanceLedger.fromMinorUnits(row.balanceCents()));
+        ps.setBigDecimal(6, BalanceLedger.fromMinorUnits(row.balanceCents()));
+    }
+
+    /**
+     * Validates one imported card.
+     *
+     * @return the row, or {@code null} if any field is missing or invalid
+     */
+    private static CardRow toRow(String cardNumber, String cardholderName, String expirationDate, String cvv, String balance) {
+        // The same checks as the card API, so every imported card can pay
+        if (cardNumber == null || !CardNumbers.isValid(cardNumber)) {
+            return null;
+        }
+        if (cardholderName == null || cardholderName.isBlank() || cvv == null || !CardNumbers.isValidCvv(cvv)) {
+            return null;
+        }
+        try {
+            long balanceCents = BalanceLedger.toMinorUnits(new BigDecimal(balance));
+            if (balanceCents < 0) {
+                return null;
+            }
+            return new CardRow(cardNumber, cardholderName, LocalDate.parse(expirationDate), cvv, balanceCents);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Iterator over rows parsed on demand, counting the rows it had to skip.
+     */
+    private abstract static class ParsingIterator implements Iterator<CardRow> {
+        private final long[] rejected;
+        private CardRow next;
+
+        private ParsingIterator(long[] rejected) {
+            this.rejected = rejected;
+        }
+
+        /**
+         * @return the next valid row, or {@code null} at the end of the input
+         */
+        protected abstract CardRow parseNext() throws IOException;
+
+        protected void reject(long lineNumber, String reason) {
+            rejected[0]++;
+            log.debug("Rejected import line {}: {}", lineNumber, reason);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = parseNext();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public CardRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CardRow row = next;
+            next = null;
+            return row;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.pay.cardpaysimulator.provisioning;
+
+import com.pay.cardpaysimulator.dto.CardGenerationRequest;
+import com.pay.cardpaysimulator.dto.CardGenerationRequest.BalanceDistribution;
+import com.pay.cardpaysimulator.dto.CardGenerationRequest.BinWeight;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import com.pay.cardpaysimulator.validation.CardNetwork;
+import com.pay.cardpaysimulator.validation.CardNumbers;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Lazily generates Luhn-valid synthetic cards, so any number of cards can be produced in
+ * constant memory. Every BIN and length must form numbers of one of the accepted
+ * {@link CardNetwork}s, so generated cards pass the same validation as cards created through the API.
+ * <p>
+ * Account numbers within a BIN are produced by stepping through the account number space with a
+ * stride coprime to its size, starting at a seeded offset. The sequence visits every account number
+ * exactly once before repeating, so generated numbers are unique without remembering them.
+ */
+final class CardGenerator implements Iterator<CardRow> {
+
+    private static final List<BinWeight> DEFAULT_BINS = List.of(
+            BinWeight.builder().bin("411111").length(16).weight(45).build(),
+            BinWeight.builder().bin("555555").length(16).weight(35).build(),
+            BinWeight.builder().bin("378282").length(15).weight(10).build(),
+            BinWeight.builder().bin("601100").length(16).weight(10).build());
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda",
+            "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica"};
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis",
+            "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas"};
+    private static final int MAX_EXPIRY_MONTHS = 60;
+
+    private final SplittableRandom random;
+    private final Bin[] bins;
+    private final double[] cumulativeWeights;
+    private final double totalWeight;
+    private final BalanceDistribution distribution;
+    private final long minCents;
+    private final long maxCents;
+    private final LocalDate today = LocalDate.now();
+    private long remaining;
+
+    CardGenerator(CardGenerationRequest request) {
+        if (request.getCount() <= 0) {
+            throw new IllegalArgumentException("Count must be positive");
+        }
+        minCents = BalanceLedger.toMinorUnits(request.getMinBalance());
+        maxCents = BalanceLedger.toMinorUnits(request.getMaxBalance());
+        if (minCents < 0 || maxCents < minCents) {
+            throw new IllegalArgumentException("Balance range must be non-negative and ordered");
+        }
+        distribution = request.getBalanceDistribution() == null ? BalanceDistribution.UNIFORM : request.getBalanceDistribution();
+        if (distribution == BalanceDistribution.LOG_UNIFORM && minCents == 0) {
+            throw new IllegalArgumentException("Log-uniform balances need a positive minimum balance");
+        }
+
+        random = request.getSeed() == null ? new SplittableRandom() : new SplittableRandom(request.getSeed());
+        List<BinWeight> binWeights = request.getBins() == null || request.getBins().isEmpty() ? DEFAULT_BINS : request.getBins();
+        bins = new Bin[binWeights.size()];
+        cumulativeWeights = new double[binWeights.size()];
+        double total = 0;
+        for (int i = 0; i < bins.length; i++) {
+            BinWeight binWeight = binWeights.get(i);
+            bins[i] = new Bin(binWeight.getBin(), binWeight.getLength(), random);
+            if (binWeight.getWeight() > 0 && bins[i].space < request.getCount()) {
+                throw new IllegalArgumentException("BIN " + binWeight.getBin() + " has room for only " + bins[i].space + " cards");
+            }
+            total += Math.max(0, binWeight.getWeight());
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("BIN weights must not all be zero");
+        }
+        totalWeight = total;
+        remaining = request.getCount();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+
+    @Override
+    public CardRow next() {
+        if (remaining == 0) {
+            throw new NoSuchElementException();
+        }
+        remaining--;
+        int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+        Bin bin = bins[Math.min(index < 0 ? -index - 1 : index, bins.length - 1)];
+        return new CardRow(
+                bin.nextNumber(),
+                FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                today.plusMonths(1 + random.nextInt(MAX_EXPIRY_MONTHS)).withDayOfMonth(1).plusMonths(1).minusDays(1),
+                bin.amex ? fourDigits() : threeDigits(),
+                nextBalance());
+    }
+
+    private long nextBalance() {
+        if (minCents == maxCents) {
+            return minCents;
+        }
+        if (distribution == BalanceDistribution.LOG_UNIFORM) {
+            double log = random.nextDouble(Math.log(minCents), Math.log(maxCents));
+            return Math.min(maxCents, Math.max(minCents, Math.round(Math.exp(log))));
+        }
+        return random.nextLong(minCents, maxCents + 1);
+    }
+
+    private String threeDigits() {
+        return String.format("%03d", random.nextInt(1000));
+    }
+
+    private String fourDigits() {
+        return String.format("%04d", random.nextInt(10000));
+    }
+
+    private static final class Bin {
+        private final String prefix;
+        private final int accountDigits;
+        private final boolean amex;
+        private final long space;
+        private final long stride;
+        private final StringBuilder number;
+        private long current;
+
+        private Bin(String prefix, int length, SplittableRandom random) {
+            // Networks are told apart by the first four digits, so shorter BINs could span several
+            if (prefix == null || !prefix.matches("[0-9]{4,8}")) {
+                throw new IllegalArgumentException("BIN must be 4 to 8 digits");
+            }
+            this.prefix = prefix;
+            this.accountDigits = length - prefix.length() - 1;
+            if (accountDigits < 1 || accountDigits > 15) {
+                throw new IllegalArgumentException("BIN " + prefix + " leaves no room for account numbers of length " + length);
+            }
+            this.number = new StringBuilder(length);
+            CardNetwork network = CardNumbers.network(format(0));
+            if (network == null) {
+                throw new IllegalArgumentException("BIN " + prefix + " with length " + length + " is not a card number range of any accepted network");
+            }
+            this.amex = network == CardNetwork.AMEX;
+            long size = 1;
+            for (int i = 0; i < accountDigits; i++) {
+                size *= 10;
+            }
+            this.space = size;
+            // A stride that is neither even nor a multiple of 5 is coprime to 10^n, so the walk is a permutation
+            long candidate = space <= 10 ? 1 : random.nextLong(space / 3, space);
+            while (candidate % 2 == 0 || candidate % 5 == 0) {
+                candidate = candidate + 1 < space ? candidate + 1 : 1;
+            }
+            this.stride = candidate;
+            this.current = random.nextLong(space);
+        }
+
+        private String nextNumber() {
+            current += stride;
+            if (current >= space) {
+                current -= space;
+            }
+            return format(current);
+        }
+
+        private String format(long accountNumber) {
+            number.setLength(0);
+            number.append(prefix);
+            String account = Long.toString(accountNumber);
+            for (int i = account.length(); i < accountDigits; i++) {
+                number.append('0');
+            }
+            number.append(account);
+            number.append((char) ('0' + CardNumbers.luhnCheckDigit(number)));
+            return number.toString();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.pay.cardpaysimulator.provisioning;
+
+import java.time.LocalDate;
+
+/**
+ * A card to insert, with its balance in cents.
+ */
+record CardRow(String cardNumber, String cardholderName, LocalDate expirationDate, String cvv, long balanceCents) {
+}
@@ -0,0 +1,56 @@
+package com.pay.cardpaysimulator.reactive;
+
+import io.r2dbc.spi.Closeable;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Pooled R2DBC connections to the same H2 database the JPA stack uses.
+ * <p>
+ * The connection factory is deliberately not exposed as a bean: a {@link ConnectionFactory} bean
+ * would switch off the JDBC {@code DataSource} auto-configuration, and a reactive transaction
+ * manager bean would replace the JPA one.
+ */
+@Component
+@Profile("reactive")
+@DependsOn("entityManagerFactory")
+public class ReactiveDatabase {
+
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient databaseClient;
+
+    public ReactiveDatabase(@Value("${simulator.reactive.r2dbc.url}") String url,
+                            @Value("${spring.datasource.username:sa}") String username,
+                            @Value("${spring.datasource.password:}") String password) {
+        this.connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+    }
+
+    ConnectionFactory connectionFactory() {
+        return connectionFactory;
+    }
+
+    DatabaseClient databaseClient() {
+        return databaseClient;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (connectionFactory instanceof Closeable closeable) {
+            Mono.from(closeable.close()).block(Duration.ofSeconds(5));
+        }
+    }
+}
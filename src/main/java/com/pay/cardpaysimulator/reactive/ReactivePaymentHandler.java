@@ -0,0 +1,111 @@
+package com.pay.cardpaysimulator.reactive;
+
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.dto.TransactionView;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * Functional WebFlux handlers mirroring the endpoints of {@code PaymentController}, with the same
+ * paths, DTOs and status codes.
+ */
+@Slf4j
+@Component
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactivePaymentHandler {
+
+    private final ReactivePaymentService paymentService;
+    private final Validator validator;
+
+    public Mono<ServerResponse> processPayment(ServerRequest request) {
+        return request.bodyToMono(PaymentRequest.class)
+                .doOnNext(this::validate)
+                .flatMap(paymentService::processPayment)
+                .flatMap(response -> {
+                    log.debug("Payment processed with status: {}", response.getStatus());
+                    return ServerResponse.ok().bodyValue(response);
+                })
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.badRequest().build()))
+                .onErrorResume(ServerWebInputException.class, e -> {
+                    log.warn("Rejected payment request: {}", e.getReason());
+                    return ServerResponse.badRequest().build();
+                })
+                .onErrorResume(e -> {
+                    log.error("Error processing payment", e);
+                    return ServerResponse.status(500).build();
+                });
+    }
+
+    /**
+     * Applies the request's bean validation constraints, as {@code @Valid} does for the servlet endpoint.
+     */
+    private void validate(PaymentRequest paymentRequest) {
+        Set<ConstraintViolation<PaymentRequest>> violations = validator.validate(paymentRequest);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<PaymentRequest> violation = violations.iterator().next();
+            throw new ServerWebInputException(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+    }
+
+    public Mono<ServerResponse> processRefund(ServerRequest request) {
+        Long transactionId;
+        try {
+            transactionId = Long.valueOf(request.pathVariable("transactionId"));
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        return paymentService.processRefund(transactionId)
+                .flatMap(response -> ServerResponse.ok().bodyValue(response))
+                .onErrorResume(e -> {
+                    log.error("Error processing refund for transaction ID: {}", transactionId, e);
+                    return ServerResponse.status(500).build();
+                });
+    }
+
+    public Mono<ServerResponse> getTransactionStatus(ServerRequest request) {
+        Long transactionId;
+        try {
+            transactionId = Long.valueOf(request.pathVariable("transactionId"));
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        return paymentService.getTransactionStatus(transactionId)
+                .flatMap(status -> ServerResponse.ok().bodyValue(status))
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.notFound().build()))
+                .onErrorResume(e -> {
+                    log.error("Error fetching status for transaction ID: {}", transactionId, e);
+                    return ServerResponse.status(500).build();
+                });
+    }
+
+    public Mono<ServerResponse> streamAllTransactions(ServerRequest request) {
+        return stream(null);
+    }
+
+    public Mono<ServerResponse> streamTransactionsByCardNumber(ServerRequest request) {
+        return stream(request.pathVariable("cardNumber"));
+    }
+
+    /**
+     * Writes the transactions as newline-delimited JSON. The encoder requests rows only as fast as
+     * the connection accepts them, so the stream is subject to backpressure end to end.
+     */
+    private Mono<ServerResponse> stream(String cardNumber) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(paymentService.streamTransactions(cardNumber), TransactionView.class);
+    }
+}
@@ -0,0 +1,89 @@
+package com.pay.cardpaysimulator.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+/**
+ * Reactor Netty server for the reactive payment API, started in the {@code reactive} profile on
+ * {@code simulator.reactive.port} next to the servlet stack.
+ * <p>
+ * The routes are functional endpoints rather than annotated controllers, so they are not picked
+ * up by Spring MVC, and the server is started here rather than by Spring Boot, which only runs one
+ * web server type per application. Both stacks therefore share one database, ledger and card set,
+ * and can be compared side by side.
+ */
+@Slf4j
+@Component
+@Profile("reactive")
+public class ReactivePaymentServer {
+
+    private static final String PAYMENTS = "/api/payments";
+
+    private final ReactivePaymentHandler handler;
+    private final ObjectMapper objectMapper;
+    private final int port;
+    private DisposableServer server;
+
+    public ReactivePaymentServer(ReactivePaymentHandler handler,
+                                 ObjectMapper objectMapper,
+                                 @Value("${simulator.reactive.port:8081}") int port) {
+        this.handler = handler;
+        this.objectMapper = objectMapper;
+        this.port = port;
+    }
+
+    @PostConstruct
+    public void start() {
+        RouterFunction<ServerResponse> routes = RouterFunctions.route()
+                .POST(PAYMENTS + "/process", handler::processPayment)
+                .POST(PAYMENTS + "/refund/{transactionId}", handler::processRefund)
+                .GET(PAYMENTS + "/status/{transactionId}", handler::getTransactionStatus)
+                .GET(PAYMENTS + "/transactions/stream", handler::streamAllTransactions)
+                .GET(PAYMENTS + "/transactions/card/{cardNumber}/stream", handler::streamTransactionsByCardNumber)
+                .build();
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper, MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper, MediaType.APPLICATION_JSON));
+                })
+                .build();
+        HttpHandler httpHandler = RouterFunctions.toHttpHandler(routes, strategies);
+        server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+        log.info("Reactive payment API listening on port {}", server.port());
+    }
+
+    /**
+     * @return the port the server is bound to, which differs from the configured one if that was 0
+     */
+    public int getPort() {
+        return server.port();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (server != null) {
+            server.disposeNow(Duration.ofSeconds(5));
+        }
+    }
+}
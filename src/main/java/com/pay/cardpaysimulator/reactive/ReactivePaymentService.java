@@ -0,0 +1,364 @@
+package com.pay.cardpaysimulator.reactive;
+
+import com.pay.cardpaysimulator.analytics.PaymentAnalytics;
+import com.pay.cardpaysimulator.audit.AuditLog;
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.dto.TransactionView;
+import com.pay.cardpaysimulator.fraud.VelocityGuard;
+import com.pay.cardpaysimulator.journal.TransactionJournal;
+import com.pay.cardpaysimulator.metrics.PaymentMetrics;
+import com.pay.cardpaysimulator.metrics.PaymentMetrics.Operation;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.model.Transaction;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.outcome.OutcomeSink;
+import com.pay.cardpaysimulator.scenario.ScenarioEngine;
+import com.pay.cardpaysimulator.scenario.ScenarioOutcome;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Non-blocking implementation of the payment API on R2DBC, served by {@link ReactivePaymentServer}
+ * in the {@code reactive} profile.
+ * <p>
+ * It applies the same checks as {@code PaymentService} and shares its {@link BalanceLedger},
+ * velocity guard, scenario engine, metrics, audit log and analytics, but never blocks an event
+ * loop thread: simulated issuer latency is a timer instead of a parked thread, and card lookups
+ * and inserts are R2DBC statements. Without per-card locks, the ledger's compare-and-set still rules out
+ * overdrafts, and refunds rely on the conditional {@code APPROVED} to {@code REFUNDED} update.
+ * Refunds are always for everything not refunded yet; partial refunds are only on the servlet API.
+ */
+@Service
+@Profile("reactive")
+public class ReactivePaymentService {
+
+    private static final String FIND_CARD =
+            "select id, card_number, cardholder_name, expiration_date, cvv, balance, version from cards where card_number = :cardNumber";
+    private static final String INSERT_TRANSACTION =
+            "insert into transactions (id, card_id, amount, status, timestamp, description, version) "
+                    + "values (:id, :cardId, :amount, 'APPROVED', :timestamp, :description, 0)";
+    private static final String ADJUST_BALANCE = "update cards set balance = balance + :delta, version = version + 1 where id = :id";
+    private static final String REFUND_TRANSACTION =
+            "update transactions set refunded_amount = amount, status = 'REFUNDED', version = version + 1 "
+                    + "where id = :id and status = 'APPROVED' and coalesce(refunded_amount, 0) = :refunded";
+    private static final String FIND_REFUNDABLE =
+            "select t.amount, t.refunded_amount, t.status, c.id as card_id, c.card_number, c.balance "
+                    + "from transactions t left join cards c on c.id = t.card_id where t.id = :id";
+    private static final String SELECT_VIEWS =
+            "select t.id, c.id as card_id, c.card_number, c.cardholder_name, t.amount, t.refunded_amount, t.status, t.reason_code, t.timestamp, t.description, t.hold_expires_at "
+                    + "from transactions t left join cards c on c.id = t.card_id ";
+    private static final String ORDER_BY = "order by t.timestamp, t.id";
+    private static final Duration JOURNAL_APPLY_TIMEOUT = Duration.ofSeconds(5);
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ReactiveTransactionIds transactionIds;
+    private final BalanceLedger balanceLedger;
+    private final ScenarioEngine scenarioEngine;
+    private final PaymentMetrics paymentMetrics;
+    private final AuditLog auditLog;
+    private final PaymentAnalytics paymentAnalytics;
+    private final TransactionJournal transactionJournal;
+    private final OutcomeSink outcomeSink;
+    private final VelocityGuard velocityGuard;
+    private final int streamPrefetch;
+
+    public ReactivePaymentService(ReactiveDatabase reactiveDatabase,
+                                  BalanceLedger balanceLedger,
+                                  ScenarioEngine scenarioEngine,
+                                  PaymentMetrics paymentMetrics,
+                                  AuditLog auditLog,
+                                  PaymentAnalytics paymentAnalytics,
+                                  ObjectProvider<TransactionJournal> transactionJournal,
+                                  OutcomeSink outcomeSink,
+                                  VelocityGuard velocityGuard,
+                                  @Value("${simulator.reactive.stream-prefetch:256}") int streamPrefetch) {
+        this.databaseClient = reactiveDatabase.databaseClient();
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(reactiveDatabase.connectionFactory()));
+        this.transactionIds = new ReactiveTransactionIds(databaseClient);
+        this.balanceLedger = balanceLedger;
+        this.scenarioEngine = scenarioEngine;
+        this.paymentMetrics = paymentMetrics;
+        this.auditLog = auditLog;
+        this.paymentAnalytics = paymentAnalytics;
+        this.transactionJournal = transactionJournal.getIfAvailable();
+        this.outcomeSink = outcomeSink;
+        this.velocityGuard = velocityGuard;
+        this.streamPrefetch = streamPrefetch;
+    }
+
+    public Mono<PaymentResponse> processPayment(PaymentRequest request) {
+        long start = System.nanoTime();
+        return authorizeAndPersist(request)
+                .onErrorResume(e -> Mono.just(createFailedResponse(ReasonCode.PROCESSING_ERROR, "Payment processing failed: " + e.getMessage())))
+                .flatMap(response -> response.getStatus() == TransactionStatus.APPROVED
+                        ? Mono.just(response)
+                        : transactionIds.next()
+                                .doOnNext(id -> outcomeSink.offer(id, request, response))
+                                .thenReturn(response)
+                                .onErrorReturn(response))
+                .doOnNext(response -> {
+                    paymentMetrics.complete(Operation.PAYMENT, start, response);
+                    auditLog.payment(request.getCardNumber(), request.getAmount(), response, System.nanoTime() - start);
+                    paymentAnalytics.recordPayment(request.getCardNumber(), request.getAmount(), response);
+                });
+    }
+
+    private Mono<PaymentResponse> authorizeAndPersist(PaymentRequest request) {
+        return databaseClient.sql(FIND_CARD)
+                .bind("cardNumber", request.getCardNumber())
+                .map(ReactivePaymentService::toCard)
+                .one()
+                .flatMap(card -> {
+                    long amountCents = BalanceLedger.toMinorUnits(request.getAmount());
+                    if (velocityGuard.isLocked(card)) {
+                        return Mono.just(createDeclinedResponse(ReasonCode.CARD_LOCKED, VelocityGuard.message(ReasonCode.CARD_LOCKED)));
+                    }
+                    ScenarioOutcome scenario = scenarioEngine.evaluate(card.getCardNumber(), amountCents);
+                    Mono<Long> latency = scenario == null || scenario.getLatencyNanos() <= 0
+                            ? Mono.just(0L)
+                            : Mono.delay(Duration.ofNanos(scenario.getLatencyNanos()));
+                    return latency.then(Mono.defer(() -> {
+                        PaymentResponse rejection = checkCard(card, request, amountCents, scenario);
+                        return rejection != null ? Mono.just(rejection) : debitAndInsert(card, request, amountCents);
+                    }));
+                })
+                .switchIfEmpty(Mono.fromSupplier(() ->
+                        createFailedResponse(ReasonCode.CARD_NOT_FOUND, "Payment processing failed: Card not found")));
+    }
+
+    private PaymentResponse checkCard(Card card, PaymentRequest request, long amountCents, ScenarioOutcome scenario) {
+        if (scenario != null) {
+            switch (scenario.resolveAction()) {
+                case DECLINE:
+                    return createDeclinedResponse(ReasonCode.ISSUER_DECLINED,
+                            scenario.getMessage() != null ? scenario.getMessage() : "Card declined by issuer");
+                case FAIL:
+                    return createFailedResponse(ReasonCode.ISSUER_ERROR,
+                            scenario.getMessage() != null ? scenario.getMessage() : "Issuer processing error");
+                default:
+                    break;
+            }
+        }
+
+        if (card.getExpirationDate().isBefore(LocalDate.now())) {
+            return createDeclinedResponse(ReasonCode.EXPIRED_CARD, "Card is expired");
+        }
+
+        if (!card.getCvv().equals(request.getCvv())) {
+            velocityGuard.recordCvvFailure(card);
+            return createDeclinedResponse(ReasonCode.INVALID_CVV, "Invalid CVV");
+        }
+
+        ReasonCode velocity = velocityGuard.tryRecord(card, amountCents);
+        if (velocity != null) {
+            return createDeclinedResponse(velocity, VelocityGuard.message(velocity));
+        }
+
+        return null;
+    }
+
+    /**
+     * Debits the ledger, then inserts the transaction in an R2DBC transaction. The debit is undone
+     * if the insert fails.
+     */
+    private Mono<PaymentResponse> debitAndInsert(Card card, PaymentRequest request, long amountCents) {
+        if (!balanceLedger.tryDebit(card, amountCents)) {
+            return Mono.just(createDeclinedResponse(ReasonCode.INSUFFICIENT_FUNDS, "Insufficient funds"));
+        }
+        return transactionIds.next()
+                .flatMap(transactionId -> {
+                    GenericExecuteSpec insert = databaseClient.sql(INSERT_TRANSACTION)
+                            .bind("id", transactionId)
+                            .bind("cardId", card.getId())
+                            .bind("amount", request.getAmount())
+                            .bind("timestamp", LocalDateTime.now());
+                    insert = request.getDescription() == null
+                            ? insert.bindNull("description", String.class)
+                            : insert.bind("description", request.getDescription());
+                    Mono<Long> write = insert.fetch().rowsUpdated();
+                    if (!balanceLedger.isWriteBack()) {
+                        write = write.then(adjustBalance(card.getId(), -amountCents));
+                    }
+                    return transactionalOperator.transactional(write).thenReturn(createApprovedResponse(transactionId));
+                })
+                .onErrorResume(e -> {
+                    balanceLedger.credit(card, amountCents);
+                    return Mono.just(createFailedResponse(ReasonCode.PROCESSING_ERROR, "Payment processing failed: " + e.getMessage()));
+                });
+    }
+
+    public Mono<PaymentResponse> processRefund(Long transactionId) {
+        long start = System.nanoTime();
+        return refundAndPersist(transactionId)
+                .flatMap(response -> response.getReasonCode() == ReasonCode.TRANSACTION_NOT_FOUND && transactionJournal != null
+                        // The payment may still be in the journal; wait for it off the event loop
+                        ? Mono.fromCallable(() -> transactionJournal.awaitApplied(JOURNAL_APPLY_TIMEOUT))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(applied -> applied ? refundAndPersist(transactionId) : Mono.just(response))
+                        : Mono.just(response))
+                .onErrorResume(e -> Mono.just(createFailedResponse(ReasonCode.PROCESSING_ERROR, "Refund processing failed: " + e.getMessage())))
+                .doOnNext(response -> {
+                    paymentMetrics.complete(Operation.REFUND, start, response);
+                    auditLog.refund(transactionId, null, response, System.nanoTime() - start);
+                });
+    }
+
+    private Mono<PaymentResponse> refundAndPersist(Long transactionId) {
+        return databaseClient.sql(FIND_REFUNDABLE)
+                .bind("id", transactionId)
+                .map(ReactivePaymentService::toRefundable)
+                .one()
+                .flatMap(transaction -> {
+                    if (transaction.getStatus() != TransactionStatus.APPROVED) {
+                        return Mono.just(createDeclinedResponse(ReasonCode.NOT_REFUNDABLE, "Cannot refund a non-approved transaction"));
+                    }
+                    Card card = transaction.getCard();
+                    BigDecimal refunded = transaction.getRefundedAmount() == null ? BigDecimal.ZERO : transaction.getRefundedAmount();
+                    // Refunds whatever partial refunds on the servlet API have left
+                    long amountCents = BalanceLedger.toMinorUnits(transaction.getAmount()) - BalanceLedger.toMinorUnits(refunded);
+                    Mono<Long> refund = databaseClient.sql(REFUND_TRANSACTION)
+                            .bind("id", transactionId)
+                            .bind("refunded", refunded)
+                            .fetch()
+                            .rowsUpdated()
+                            .flatMap(updated -> updated == 0 || balanceLedger.isWriteBack()
+                                    ? Mono.just(updated)
+                                    : adjustBalance(card.getId(), amountCents).thenReturn(updated));
+                    return transactionalOperator.transactional(refund).map(updated -> {
+                        if (updated == 0) {
+                            return createDeclinedResponse(ReasonCode.NOT_REFUNDABLE, "Cannot refund a non-approved transaction");
+                        }
+                        balanceLedger.credit(card, amountCents);
+                        paymentAnalytics.recordRefund(card.getCardNumber(), amountCents);
+                        return PaymentResponse.builder()
+                                .status(TransactionStatus.REFUNDED)
+                                .message("Refund processed successfully")
+                                .transactionId(transactionId)
+                                .build();
+                    });
+                })
+                .switchIfEmpty(Mono.fromSupplier(() ->
+                        createFailedResponse(ReasonCode.TRANSACTION_NOT_FOUND, "Refund processing failed: Transaction not found")));
+    }
+
+    public Mono<String> getTransactionStatus(Long transactionId) {
+        return databaseClient.sql("select status from transactions where id = :id")
+                .bind("id", transactionId)
+                .map(row -> row.get("status", String.class))
+                .one();
+    }
+
+    /**
+     * Streams transactions ordered by timestamp and ID, optionally restricted to a card. Rows are
+     * requested from the database as the subscriber consumes them, at most
+     * {@code simulator.reactive.stream-prefetch} ahead, so a slow client slows the query down
+     * instead of filling memory.
+     */
+    public Flux<TransactionView> streamTransactions(String cardNumber) {
+        GenericExecuteSpec query = cardNumber == null
+                ? databaseClient.sql(SELECT_VIEWS + ORDER_BY)
+                : databaseClient.sql(SELECT_VIEWS + "where c.card_number = :cardNumber " + ORDER_BY).bind("cardNumber", cardNumber);
+        return query.map(ReactivePaymentService::toView)
+                .all()
+                .limitRate(streamPrefetch);
+    }
+
+    private Mono<Long> adjustBalance(Long cardId, long deltaCents) {
+        return databaseClient.sql(ADJUST_BALANCE)
+                .bind("delta", BalanceLedger.fromMinorUnits(deltaCents))
+                .bind("id", cardId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static Card toCard(Readable row) {
+        return Card.builder()
+                .id(row.get("id", Long.class))
+                .cardNumber(row.get("card_number", String.class))
+                .cardholderName(row.get("cardholder_name", String.class))
+                .expirationDate(row.get("expiration_date", LocalDate.class))
+                .cvv(row.get("cvv", String.class))
+                .balance(row.get("balance", BigDecimal.class))
+                .version(row.get("version", Long.class))
+                .build();
+    }
+
+    /**
+     * Maps a refund candidate to a transaction carrying just the fields the refund needs.
+     */
+    private static Transaction toRefundable(Readable row) {
+        Card card = Card.builder()
+                .id(row.get("card_id", Long.class))
+                .cardNumber(row.get("card_number", String.class))
+                .balance(row.get("balance", BigDecimal.class))
+                .build();
+        return Transaction.builder()
+                .card(card)
+                .amount(row.get("amount", BigDecimal.class))
+                .refundedAmount(row.get("refunded_amount", BigDecimal.class))
+                .status(TransactionStatus.valueOf(row.get("status", String.class)))
+                .build();
+    }
+
+    private static TransactionView toView(Readable row) {
+        return new TransactionView(
+                row.get("id", Long.class),
+                row.get("card_id", Long.class),
+                row.get("card_number", String.class),
+                row.get("cardholder_name", String.class),
+                row.get("amount", BigDecimal.class),
+                row.get("refunded_amount", BigDecimal.class),
+                TransactionStatus.valueOf(row.get("status", String.class)),
+                reasonCode(row.get("reason_code", String.class)),
+                row.get("timestamp", LocalDateTime.class),
+                row.get("description", String.class),
+                row.get("hold_expires_at", LocalDateTime.class));
+    }
+
+    private static ReasonCode reasonCode(String name) {
+        return name == null ? null : ReasonCode.valueOf(name);
+    }
+
+    private static PaymentResponse createApprovedResponse(Long transactionId) {
+        return PaymentResponse.builder()
+                .status(TransactionStatus.APPROVED)
+                .message("Payment processed successfully")
+                .transactionId(transactionId)
+                .build();
+    }
+
+    private static PaymentResponse createDeclinedResponse(ReasonCode reasonCode, String message) {
+        return PaymentResponse.builder()
+                .status(TransactionStatus.DECLINED)
+                .message(message)
+                .reasonCode(reasonCode)
+                .build();
+    }
+
+    private static PaymentResponse createFailedResponse(ReasonCode reasonCode, String message) {
+        return PaymentResponse.builder()
+                .status(TransactionStatus.FAILED)
+                .message(message)
+                .reasonCode(reasonCode)
+                .build();
+    }
+}
@@ -0,0 +1,54 @@
+package com.pay.cardpaysimulator.reactive;
+
+import com.pay.cardpaysimulator.model.Transaction;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of the journal's ID allocator: hands out transaction IDs from
+ * {@code transaction_seq} in pooled-lo blocks of {@link Transaction#ID_ALLOCATION_SIZE}, so IDs
+ * never collide with rows inserted through JPA. Callers that find the block exhausted share a
+ * single sequence query and then retry.
+ */
+class ReactiveTransactionIds {
+
+    private final DatabaseClient databaseClient;
+    private long next;
+    private long limit;
+    private Mono<Long> refill;
+
+    ReactiveTransactionIds(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    Mono<Long> next() {
+        return Mono.defer(() -> {
+            Mono<Long> pending;
+            synchronized (this) {
+                if (next < limit) {
+                    return Mono.just(next++);
+                }
+                if (refill == null) {
+                    refill = databaseClient.sql("select next value for transaction_seq")
+                            .map(row -> row.get(0, Long.class))
+                            .one()
+                            .doOnNext(this::startBlock)
+                            .doOnError(e -> clearRefill())
+                            .cache();
+                }
+                pending = refill;
+            }
+            return pending.then(next());
+        });
+    }
+
+    private synchronized void startBlock(long blockStart) {
+        next = blockStart;
+        limit = blockStart + Transaction.ID_ALLOCATION_SIZE;
+        refill = null;
+    }
+
+    private synchronized void clearRefill() {
+        refill = null;
+    }
+}
@@ -0,0 +1,16 @@
+package com.pay.cardpaysimulator.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * A card's stored and opening balance, as needed to reconcile it.
+ */
+public interface CardBalance {
+    Long getId();
+
+    String getCardNumber();
+
+    BigDecimal getBalance();
+
+    BigDecimal getOpeningBalance();
+}
@@ -0,0 +1,10 @@
+package com.pay.cardpaysimulator.repository;
+
+/**
+ * A card's number and CVV, as needed to send payments on it.
+ */
+public interface CardCredentials {
+    String getCardNumber();
+
+    String getCvv();
+}
@@ -1,9 +1,56 @@
 package com.pay.cardpaysimulator.repository;
 
+import com.pay.cardpaysimulator.dto.CardView;
 import com.pay.cardpaysimulator.model.Card;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CardRepository extends JpaRepository<Card, Long> {
     Optional<Card> findByCardNumber(String cardNumber);
-} 
\ No newline at end of file
+    List<Card> findByCardNumberIn(Collection<? extends String> cardNumbers);
+
+    @Query("select new com.pay.cardpaysimulator.dto.CardView(c.id, c.cardNumber, c.cardholderName, c.expirationDate, c.balance) from Card c")
+    List<CardView> findAllViews();
+
+    @Query("select c.cardNumber as cardNumber, c.cvv as cvv from Card c order by c.id")
+    List<CardCredentials> findCredentials(Limit limit);
+
+    @Modifying
+    @Query("update versioned Card c set c.balance = :balance where c.id = :id")
+    int updateBalance(@Param("id") Long id, @Param("balance") BigDecimal balance);
+
+    @Modifying
+    @Query("update versioned Card c set c.balance = c.balance + :delta where c.id = :id")
+    int adjustBalance(@Param("id") Long id, @Param("delta") BigDecimal delta);
+
+    /**
+     * Moves the net amount of archived transactions into the opening balance, so reconciliation
+     * still adds up once they are gone. Not versioned, as it does not touch the balance.
+     */
+    @Modifying
+    @Query("update Card c set c.openingBalance = c.openingBalance - :netDebit where c.id = :id")
+    int carryForward(@Param("id") Long id, @Param("netDebit") BigDecimal netDebit);
+
+    @Query("select min(c.id) from Card c")
+    Optional<Long> findMinId();
+
+    @Query("select max(c.id) from Card c")
+    Optional<Long> findMaxId();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select c.id as id, c.cardNumber as cardNumber, c.balance as balance, c.openingBalance as openingBalance "
+            + "from Card c where c.id between :fromId and :toId order by c.id")
+    Stream<CardBalance> streamBalances(@Param("fromId") long fromId, @Param("toId") long toId);
+}
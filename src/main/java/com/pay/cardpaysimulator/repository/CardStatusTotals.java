@@ -0,0 +1,23 @@
+package com.pay.cardpaysimulator.repository;
+
+import com.pay.cardpaysimulator.model.TransactionStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * Number and sum of the transactions of one card in one status, and of what was refunded of them.
+ */
+public interface CardStatusTotals {
+    String getCardNumber();
+
+    TransactionStatus getStatus();
+
+    long getCount();
+
+    BigDecimal getAmount();
+
+    long getRefundedCount();
+
+    /** Empty if none of the transactions was refunded. */
+    BigDecimal getRefundedAmount();
+}
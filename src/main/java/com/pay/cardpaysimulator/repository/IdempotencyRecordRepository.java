@@ -0,0 +1,27 @@
+package com.pay.cardpaysimulator.repository;
+
+import com.pay.cardpaysimulator.model.IdempotencyRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select r from IdempotencyRecord r where r.createdAt > :since")
+    Stream<IdempotencyRecord> streamCreatedAfter(@Param("since") LocalDateTime since);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.createdAt <= :cutoff")
+    int deleteCreatedUpTo(@Param("cutoff") LocalDateTime cutoff);
+}
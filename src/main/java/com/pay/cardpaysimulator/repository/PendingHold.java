@@ -0,0 +1,19 @@
+package com.pay.cardpaysimulator.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An uncaptured authorization and its card, as needed to schedule its expiry.
+ */
+public interface PendingHold {
+    Long getId();
+
+    Long getCardId();
+
+    String getCardNumber();
+
+    BigDecimal getAmount();
+
+    LocalDateTime getHoldExpiresAt();
+}
@@ -0,0 +1,18 @@
+package com.pay.cardpaysimulator.repository;
+
+import com.pay.cardpaysimulator.model.TransactionStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * The fields of a transaction a refund checks, read without loading the entity.
+ */
+public interface RefundableTransaction {
+    Long getCardId();
+
+    BigDecimal getAmount();
+
+    BigDecimal getRefundedAmount();
+
+    TransactionStatus getStatus();
+}
@@ -0,0 +1,21 @@
+package com.pay.cardpaysimulator.repository;
+
+import com.pay.cardpaysimulator.model.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The fields of a transaction that settlement and reconciliation add up.
+ */
+public interface SettlementRow {
+    Long getCardId();
+
+    TransactionStatus getStatus();
+
+    BigDecimal getAmount();
+
+    BigDecimal getRefundedAmount();
+
+    LocalDateTime getTimestamp();
+}
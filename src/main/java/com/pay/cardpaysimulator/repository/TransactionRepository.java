@@ -1,10 +1,175 @@
 package com.pay.cardpaysimulator.repository;
 
+import com.pay.cardpaysimulator.dto.TransactionView;
+import com.pay.cardpaysimulator.model.ReasonCode;
 import com.pay.cardpaysimulator.model.Transaction;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+    /** Selects transactions with their card as {@link TransactionView}s, in one query and without entities. */
+    String SELECT_VIEW = "select new com.pay.cardpaysimulator.dto.TransactionView(t.id, c.id, c.cardNumber, c.cardholderName, "
+            + "t.amount, t.refundedAmount, t.status, t.reasonCode, t.timestamp, t.description, t.holdExpiresAt) from Transaction t left join t.card c ";
+
     List<Transaction> findByCardId(Long cardId);
-    List<Transaction> findByCardCardNumber(String cardNumber);
-} 
\ No newline at end of file
+
+    @Query("select t.card.id from Transaction t where t.id = :id")
+    Optional<Long> findCardIdById(@Param("id") Long id);
+
+    /**
+     * Reads what a refund needs from the transaction row alone, without loading the entity or its card.
+     */
+    @Query("select t.card.id as cardId, t.amount as amount, t.refundedAmount as refundedAmount, t.status as status "
+            + "from Transaction t where t.id = :id")
+    Optional<RefundableTransaction> findRefundableById(@Param("id") Long id);
+
+    /**
+     * Adds the amount to what was refunded of an approved transaction, unless that would refund more
+     * than the transaction amount, and marks it {@code REFUNDED} once it is refunded in full. The
+     * check and the increment are one statement, so concurrent refunds, even on different instances,
+     * never refund more than the amount in total and need no lock on the row beforehand.
+     *
+     * @return 1 if the refund was applied, 0 if the transaction is not approved or the amount exceeds what is left
+     */
+    @Modifying
+    @Query("update versioned Transaction t set t.refundedAmount = coalesce(t.refundedAmount, 0) + :amount, "
+            + "t.status = case when coalesce(t.refundedAmount, 0) + :amount = t.amount "
+            + "then com.pay.cardpaysimulator.model.TransactionStatus.REFUNDED else t.status end "
+            + "where t.id = :id and t.status = com.pay.cardpaysimulator.model.TransactionStatus.APPROVED "
+            + "and coalesce(t.refundedAmount, 0) + :amount <= t.amount")
+    int refund(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Captures a pending hold for the given amount, unless it was already captured, voided or has
+     * expired.
+     *
+     * @return 1 if the hold was captured, 0 otherwise
+     */
+    @Modifying
+    @Query("update versioned Transaction t set t.status = com.pay.cardpaysimulator.model.TransactionStatus.APPROVED, "
+            + "t.amount = :amount, t.holdExpiresAt = null "
+            + "where t.id = :id and t.status = com.pay.cardpaysimulator.model.TransactionStatus.PENDING and t.holdExpiresAt > :now")
+    int captureHold(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    /**
+     * Voids a pending hold, unless it was already captured or voided.
+     *
+     * @return 1 if the hold was voided, 0 otherwise
+     */
+    @Modifying
+    @Query("update versioned Transaction t set t.status = com.pay.cardpaysimulator.model.TransactionStatus.VOIDED, "
+            + "t.reasonCode = :reasonCode, t.holdExpiresAt = null "
+            + "where t.id = :id and t.status = com.pay.cardpaysimulator.model.TransactionStatus.PENDING")
+    int voidHold(@Param("id") Long id, @Param("reasonCode") ReasonCode reasonCode);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select t.id as id, c.id as cardId, c.cardNumber as cardNumber, t.amount as amount, t.holdExpiresAt as holdExpiresAt "
+            + "from Transaction t join t.card c where t.status = com.pay.cardpaysimulator.model.TransactionStatus.PENDING")
+    Stream<PendingHold> streamPendingHolds();
+
+    @Query("select c.cardNumber as cardNumber, t.status as status, count(t) as count, sum(t.amount) as amount, "
+            + "count(t.refundedAmount) as refundedCount, sum(t.refundedAmount) as refundedAmount "
+            + "from Transaction t join t.card c group by c.cardNumber, t.status")
+    List<CardStatusTotals> summarizeByCardAndStatus();
+
+    @Query(SELECT_VIEW + "order by t.timestamp, t.id")
+    List<TransactionView> findFirstPage(Limit limit);
+
+    @Query(SELECT_VIEW + "where t.timestamp > :timestamp or (t.timestamp = :timestamp and t.id > :id) "
+            + "order by t.timestamp, t.id")
+    List<TransactionView> findPageAfter(@Param("timestamp") LocalDateTime timestamp, @Param("id") Long id, Limit limit);
+
+    @Query(SELECT_VIEW + "where t.card.id = :cardId order by t.timestamp, t.id")
+    List<TransactionView> findFirstPageByCardId(@Param("cardId") Long cardId, Limit limit);
+
+    @Query(SELECT_VIEW + "where t.card.id = :cardId "
+            + "and (t.timestamp > :timestamp or (t.timestamp = :timestamp and t.id > :id)) "
+            + "order by t.timestamp, t.id")
+    List<TransactionView> findPageByCardIdAfter(@Param("cardId") Long cardId,
+                                                @Param("timestamp") LocalDateTime timestamp,
+                                                @Param("id") Long id,
+                                                Limit limit);
+
+    /**
+     * Returns the oldest transactions before {@code to} that are no longer pending. Pending holds
+     * are left out, since they still tie up part of the card's balance until captured or released.
+     */
+    @Query(SELECT_VIEW + "where t.timestamp < :to and t.status <> com.pay.cardpaysimulator.model.TransactionStatus.PENDING "
+            + "order by t.timestamp, t.id")
+    List<TransactionView> findFirstArchivablePageBefore(@Param("to") LocalDateTime to, Limit limit);
+
+    /**
+     * Returns the transactions after the cursor and before {@code to}. Passing the start of the
+     * range with {@link Long#MIN_VALUE} as the cursor selects the first page of the range.
+     */
+    @Query(SELECT_VIEW + "where t.timestamp < :to "
+            + "and (t.timestamp > :timestamp or (t.timestamp = :timestamp and t.id > :id)) "
+            + "order by t.timestamp, t.id")
+    List<TransactionView> findPageBefore(@Param("to") LocalDateTime to,
+                                         @Param("timestamp") LocalDateTime timestamp,
+                                         @Param("id") Long id,
+                                         Limit limit);
+
+    @Query(SELECT_VIEW + "where t.card.id = :cardId and t.timestamp < :to "
+            + "and (t.timestamp > :timestamp or (t.timestamp = :timestamp and t.id > :id)) "
+            + "order by t.timestamp, t.id")
+    List<TransactionView> findPageByCardIdBefore(@Param("cardId") Long cardId,
+                                                 @Param("to") LocalDateTime to,
+                                                 @Param("timestamp") LocalDateTime timestamp,
+                                                 @Param("id") Long id,
+                                                 Limit limit);
+
+    @Query(SELECT_VIEW + "where t.status = :status and t.timestamp < :to "
+            + "and (t.timestamp > :timestamp or (t.timestamp = :timestamp and t.id > :id)) "
+            + "order by t.timestamp, t.id")
+    List<TransactionView> findPageByStatusBefore(@Param("status") TransactionStatus status,
+                                                 @Param("to") LocalDateTime to,
+                                                 @Param("timestamp") LocalDateTime timestamp,
+                                                 @Param("id") Long id,
+                                                 Limit limit);
+
+    /**
+     * Deletes the given transactions, skipping any whose status or refunded amount is no longer the
+     * expected one.
+     */
+    @Modifying
+    @Query("delete from Transaction t where t.id in :ids and t.status = :status and coalesce(t.refundedAmount, 0) = :refundedAmount")
+    int deleteByIdsAndState(@Param("ids") Collection<Long> ids, @Param("status") TransactionStatus status,
+                            @Param("refundedAmount") BigDecimal refundedAmount);
+
+    @Query(SELECT_VIEW + "where t.id = :id")
+    Optional<TransactionView> findViewById(@Param("id") Long id);
+
+    /**
+     * Streams the transactions of the cards in the ID range that moved money, ordered by card, for
+     * settlement and reconciliation. Served by the card and timestamp index.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select t.card.id as cardId, t.status as status, t.amount as amount, t.refundedAmount as refundedAmount, "
+            + "t.timestamp as timestamp from Transaction t "
+            + "where t.card.id between :fromId and :toId and t.status in :statuses order by t.card.id")
+    Stream<SettlementRow> streamForSettlement(@Param("fromId") long fromId, @Param("toId") long toId,
+                                              @Param("statuses") Collection<TransactionStatus> statuses);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_VIEW + "order by t.timestamp, t.id")
+    Stream<TransactionView> streamAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_VIEW + "where t.card.id = :cardId order by t.timestamp, t.id")
+    Stream<TransactionView> streamByCardId(@Param("cardId") Long cardId);
+}
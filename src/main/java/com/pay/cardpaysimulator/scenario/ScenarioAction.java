@@ -0,0 +1,7 @@
+package com.pay.cardpaysimulator.scenario;
+
+public enum ScenarioAction {
+    APPROVE,
+    DECLINE,
+    FAIL
+}
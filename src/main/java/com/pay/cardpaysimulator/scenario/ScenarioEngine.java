@@ -0,0 +1,84 @@
+package com.pay.cardpaysimulator.scenario;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides simulated issuer outcomes for test cards from a rules file.
+ * <p>
+ * The file is compiled into {@link ScenarioRules} on load. When it lives on the file system it is
+ * polled for changes and recompiled without a restart; if the new version is invalid the previous
+ * rules stay in effect.
+ */
+@Slf4j
+@Component
+public class ScenarioEngine {
+
+    private final ObjectMapper objectMapper;
+    private final Resource resource;
+    private volatile ScenarioRules rules = ScenarioRules.EMPTY;
+    private volatile long lastModified;
+
+    public ScenarioEngine(ObjectMapper objectMapper,
+                          ResourceLoader resourceLoader,
+                          @Value("${simulator.scenarios.location:classpath:scenarios.json}") String location) {
+        this.objectMapper = objectMapper;
+        this.resource = resourceLoader.getResource(location);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!resource.exists()) {
+            log.warn("Scenario rules file {} not found, all payments use default processing", resource);
+            return;
+        }
+        try {
+            lastModified = resource.isFile() ? resource.lastModified() : 0;
+            try (InputStream in = resource.getInputStream()) {
+                RulesFile file = objectMapper.readValue(in, RulesFile.class);
+                rules = ScenarioRules.compile(file.getRules());
+            }
+            log.info("Loaded {} scenario rules from {}", rules.size(), resource);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to load scenario rules from {}, keeping previous rules", resource, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${simulator.scenarios.reload-interval-ms:2000}")
+    public void reloadIfModified() {
+        try {
+            if (resource.isFile() && resource.exists() && resource.lastModified() != lastModified) {
+                load();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to check scenario rules file {} for changes", resource, e);
+        }
+    }
+
+    /**
+     * Returns the outcome of the most specific rule matching the card number and amount,
+     * or {@code null} if the payment should be processed normally.
+     */
+    public ScenarioOutcome evaluate(String cardNumber, long amountCents) {
+        return rules.evaluate(cardNumber, amountCents);
+    }
+
+    @Getter
+    @Setter
+    static class RulesFile {
+        private List<ScenarioRule> rules = new ArrayList<>();
+    }
+}
@@ -0,0 +1,65 @@
+package com.pay.cardpaysimulator.scenario;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compiled form of a {@link ScenarioRule}, with amounts in cents and latency in nanoseconds.
+ */
+public final class ScenarioOutcome {
+
+    private final ScenarioAction action;
+    private final String message;
+    private final long minAmountCents;
+    private final long maxAmountCents;
+    private final long latencyNanos;
+    private final double failureRate;
+
+    ScenarioOutcome(ScenarioAction action, String message, long minAmountCents, long maxAmountCents,
+                    long latencyNanos, double failureRate) {
+        this.action = action;
+        this.message = message;
+        this.minAmountCents = minAmountCents;
+        this.maxAmountCents = maxAmountCents;
+        this.latencyNanos = latencyNanos;
+        this.failureRate = failureRate;
+    }
+
+    boolean matches(long amountCents) {
+        return amountCents >= minAmountCents && amountCents <= maxAmountCents;
+    }
+
+    /**
+     * Returns the action to take, turning the configured action into {@link ScenarioAction#FAIL}
+     * for the configured fraction of payments.
+     */
+    public ScenarioAction resolveAction() {
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            return ScenarioAction.FAIL;
+        }
+        return action;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Blocks the calling thread for the configured latency, if any.
+     */
+    public void injectLatency() {
+        if (latencyNanos <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + latencyNanos;
+        long remaining = latencyNanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+}
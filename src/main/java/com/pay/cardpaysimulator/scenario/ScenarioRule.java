@@ -0,0 +1,26 @@
+package com.pay.cardpaysimulator.scenario;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * A scenario rule as written in the rules file. A rule applies to every card number starting
+ * with {@code prefix} (a BIN, a range or a full card number) whose payment amount falls within
+ * the optional, inclusive amount range.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScenarioRule {
+    private String prefix;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    @Builder.Default
+    private ScenarioAction action = ScenarioAction.APPROVE;
+    private String message;
+    private long latencyMs;
+    private double failureRate;
+}
@@ -0,0 +1,105 @@
+package com.pay.cardpaysimulator.scenario;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable lookup table compiled from a list of {@link ScenarioRule}s.
+ * <p>
+ * Rules are stored in a digit trie keyed by their prefix, so evaluating a card number walks at most
+ * one node per digit and never scans the rule list. The most specific (longest) matching prefix wins;
+ * among rules on the same prefix, the first one whose amount range matches wins.
+ */
+public final class ScenarioRules {
+
+    public static final ScenarioRules EMPTY = compile(List.of());
+
+    private final Node root;
+    private final int size;
+
+    private ScenarioRules(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static ScenarioRules compile(List<ScenarioRule> rules) {
+        Node root = new Node();
+        for (ScenarioRule rule : rules) {
+            String prefix = rule.getPrefix();
+            if (prefix == null || prefix.isEmpty()) {
+                throw new IllegalArgumentException("Scenario rule prefix is required");
+            }
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                int digit = prefix.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IllegalArgumentException("Scenario rule prefix must contain only digits: " + prefix);
+                }
+                if (node.children[digit] == null) {
+                    node.children[digit] = new Node();
+                }
+                node = node.children[digit];
+            }
+            node.outcomes.add(new ScenarioOutcome(
+                    rule.getAction() == null ? ScenarioAction.APPROVE : rule.getAction(),
+                    rule.getMessage(),
+                    rule.getMinAmount() == null ? Long.MIN_VALUE : toCents(rule.getMinAmount()),
+                    rule.getMaxAmount() == null ? Long.MAX_VALUE : toCents(rule.getMaxAmount()),
+                    TimeUnit.MILLISECONDS.toNanos(rule.getLatencyMs()),
+                    rule.getFailureRate()));
+        }
+        root.freeze();
+        return new ScenarioRules(root, rules.size());
+    }
+
+    /**
+     * Returns the outcome of the most specific rule matching the card number and amount,
+     * or {@code null} if no rule applies.
+     */
+    public ScenarioOutcome evaluate(String cardNumber, long amountCents) {
+        ScenarioOutcome match = null;
+        Node node = root;
+        for (int i = 0; i < cardNumber.length(); i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || (node = node.children[digit]) == null) {
+                break;
+            }
+            for (ScenarioOutcome outcome : node.compiled) {
+                if (outcome.matches(amountCents)) {
+                    match = outcome;
+                    break;
+                }
+            }
+        }
+        return match;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    private static final class Node {
+        private static final ScenarioOutcome[] NONE = new ScenarioOutcome[0];
+
+        private final Node[] children = new Node[10];
+        private List<ScenarioOutcome> outcomes = new ArrayList<>(1);
+        private ScenarioOutcome[] compiled = NONE;
+
+        private void freeze() {
+            compiled = outcomes.isEmpty() ? NONE : outcomes.toArray(NONE);
+            outcomes = null;
+            for (Node child : children) {
+                if (child != null) {
+                    child.freeze();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.pay.cardpaysimulator.service;
+
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * In-memory, authoritative card balances used on the authorization path.
+ * <p>
+ * Balances are kept in minor units (cents) in sharded maps keyed by card number and are
+ * debited with a compare-and-set loop, so concurrent authorizations never oversell a card
+ * and never block on the database. Changed balances are written back to {@link CardRepository}
+ * asynchronously, coalescing any number of updates to the same card into a single UPDATE.
+ * <p>
+ * In journal durability mode there is no write-back: changes made inside a database transaction
+ * are applied to the card row as a delta in that transaction, and changes made outside one are
+ * carried to the database by the transaction journal.
+ */
+@Slf4j
+@Component
+public class BalanceLedger {
+
+    private final CardRepository cardRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrentHashMap<String, Account>[] shards;
+    private final int shardMask;
+    private final int flushBatchSize;
+    private final boolean writeBack;
+    private final Queue<Account> dirtyAccounts = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @SuppressWarnings("unchecked")
+    public BalanceLedger(CardRepository cardRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${simulator.ledger.shards:64}") int shardCount,
+                         @Value("${simulator.ledger.flush-batch-size:500}") int flushBatchSize,
+                         @Value("${simulator.durability.mode:database}") String durabilityMode) {
+        this.cardRepository = cardRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        int size = Integer.highestOneBit(Math.max(1, shardCount - 1) << 1);
+        this.shards = new ConcurrentHashMap[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        this.shardMask = size - 1;
+        this.flushBatchSize = flushBatchSize;
+        this.writeBack = !"journal".equalsIgnoreCase(durabilityMode);
+    }
+
+    /**
+     * Atomically debits the card if its balance covers the amount.
+     * When called inside a transaction the debit is undone on rollback and only
+     * scheduled for write-back once the transaction commits.
+     *
+     * @return {@code false} if the balance is insufficient
+     * @throws IllegalArgumentException if the amount is not positive, which would credit the card
+     */
+    public boolean tryDebit(Card card, long amountCents) {
+        if (amountCents <= 0) {
+            throw new IllegalArgumentException("Debit amount must be positive");
+        }
+        Account account = accountFor(card);
+        long current;
+        do {
+            current = account.balance.get();
+            if (current < amountCents) {
+                return false;
+            }
+        } while (!account.balance.compareAndSet(current, current - amountCents));
+        afterCompletion(account, -amountCents);
+        return true;
+    }
+
+    /**
+     * Credits the card, undoing the credit if the surrounding transaction rolls back.
+     */
+    public void credit(Card card, long amountCents) {
+        Account account = accountFor(card);
+        account.balance.addAndGet(amountCents);
+        afterCompletion(account, amountCents);
+    }
+
+    /**
+     * Whether changed balances are written back to the {@code cards} table by the ledger. When they
+     * are not (journal durability mode), callers persisting outside a JPA transaction must update
+     * the table themselves.
+     */
+    public boolean isWriteBack() {
+        return writeBack;
+    }
+
+    public Optional<BigDecimal> getBalance(String cardNumber) {
+        Account account = shardFor(cardNumber).get(cardNumber);
+        return account == null ? Optional.empty() : Optional.of(fromMinorUnits(account.balance.get()));
+    }
+
+    /**
+     * Replaces the cached balance with the one on the given card, e.g. after it was
+     * (re)created through the card management API. A pending write-back of the replaced balance is
+     * discarded, so it cannot overwrite the card row the caller just saved.
+     */
+    public void reload(Card card) {
+        Account replaced = shardFor(card.getCardNumber()).put(card.getCardNumber(), newAccount(card));
+        if (replaced != null) {
+            replaced.retire();
+        }
+    }
+
+    /**
+     * Drops every cached account and discards their pending write-backs, e.g. after the cards were
+     * deleted and created again. Call {@link #flush()} first to keep them.
+     */
+    public void clear() {
+        for (ConcurrentHashMap<String, Account> shard : shards) {
+            Iterator<Account> accounts = shard.values().iterator();
+            while (accounts.hasNext()) {
+                Account account = accounts.next();
+                accounts.remove();
+                account.retire();
+            }
+        }
+    }
+
+    /**
+     * Drops the cached accounts of the matching card numbers, so their balances are reloaded from
+     * the database on next use. Their pending write-backs are flushed before this returns; changes
+     * made to a dropped account after that are lost, so the cards must not be in use.
+     *
+     * @return the number of accounts dropped
+     */
+    public int evict(Predicate<String> cardNumbers) {
+        List<Account> evicted = new ArrayList<>();
+        for (ConcurrentHashMap<String, Account> shard : shards) {
+            Iterator<Map.Entry<String, Account>> entries = shard.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Account> entry = entries.next();
+                if (cardNumbers.test(entry.getKey())) {
+                    entries.remove();
+                    evicted.add(entry.getValue());
+                }
+            }
+        }
+        if (!evicted.isEmpty()) {
+            flush();
+            evicted.forEach(Account::retire);
+        }
+        return evicted.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Card> cards = cardRepository.findAll();
+        cards.forEach(card -> shardFor(card.getCardNumber()).putIfAbsent(card.getCardNumber(), newAccount(card)));
+        log.info("Balance ledger rebuilt with {} cards", cards.size());
+    }
+
+    @Scheduled(fixedDelayString = "${simulator.ledger.flush-interval-ms:20}")
+    public void flush() {
+        // Flushes run one at a time, so an older balance can never be written after a newer one
+        flushLock.lock();
+        try {
+            List<Account> batch = new ArrayList<>(flushBatchSize);
+            Account account;
+            while ((account = dirtyAccounts.poll()) != null) {
+                if (account.retired) {
+                    continue;
+                }
+                // Clear the flag before reading the balance so a concurrent change re-queues the account
+                account.dirty.set(false);
+                batch.add(account);
+                if (batch.size() == flushBatchSize) {
+                    writeBack(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBack(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void writeBack(List<Account> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(account -> {
+                // Replaced or dropped while the batch was being collected
+                if (!account.retired) {
+                    cardRepository.updateBalance(account.cardId, fromMinorUnits(account.balance.get()));
+                }
+            }));
+        } catch (Exception e) {
+            log.error("Failed to write back {} card balances, retrying on next flush", batch.size(), e);
+            batch.forEach(this::markDirty);
+        }
+    }
+
+    private void afterCompletion(Account account, long delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            markDirty(account);
+            return;
+        }
+        if (!writeBack) {
+            cardRepository.adjustBalance(account.cardId, fromMinorUnits(delta));
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    account.balance.addAndGet(-delta);
+                }
+                markDirty(account);
+            }
+        });
+    }
+
+    private void markDirty(Account account) {
+        if (writeBack && !account.retired && account.dirty.compareAndSet(false, true)) {
+            dirtyAccounts.add(account);
+        }
+    }
+
+    private Account accountFor(Card card) {
+        return shardFor(card.getCardNumber()).computeIfAbsent(card.getCardNumber(), number -> newAccount(card));
+    }
+
+    private ConcurrentHashMap<String, Account> shardFor(String cardNumber) {
+        int h = cardNumber.hashCode();
+        return shards[(h ^ (h >>> 16)) & shardMask];
+    }
+
+    private static Account newAccount(Card card) {
+        return new Account(card.getId(), card.getBalance().setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Converts an amount to cents, failing if it has fractions of a cent.
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinorUnits(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static final class Account {
+        private final Long cardId;
+        private final AtomicLong balance;
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private volatile boolean retired;
+
+        private Account(Long cardId, long balanceCents) {
+            this.cardId = cardId;
+            this.balance = new AtomicLong(balanceCents);
+        }
+
+        /**
+         * Stops the account's balance from being written back once it is no longer in the ledger.
+         */
+        private void retire() {
+            retired = true;
+            dirty.set(false);
+        }
+    }
+}
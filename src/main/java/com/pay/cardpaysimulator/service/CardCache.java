@@ -0,0 +1,122 @@
+package com.pay.cardpaysimulator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Read-through cache of card metadata keyed by card number and by ID.
+ * <p>
+ * Entries are detached copies of the card as loaded, so they are safe to share between threads
+ * and must not be modified. Their balance is only a snapshot: the authoritative balance is kept by
+ * {@link BalanceLedger}. Lookups that find no card are not cached, and the cache is bounded in size
+ * and expires entries after a fixed time, so cards changed directly in the database are picked up
+ * eventually. Hit and miss statistics are published as {@code cache.*} metrics.
+ */
+@Component
+public class CardCache {
+
+    private final CardRepository cardRepository;
+    private final Cache<String, Card> byNumber;
+    private final Cache<Long, Card> byId;
+
+    public CardCache(CardRepository cardRepository,
+                     MeterRegistry meterRegistry,
+                     @Value("${simulator.cards.cache.max-size:10000}") long maxSize,
+                     @Value("${simulator.cards.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cardRepository = cardRepository;
+        this.byNumber = CaffeineCacheMetrics.monitor(meterRegistry, newCache(maxSize, expireAfterWrite), "cards.byNumber");
+        this.byId = CaffeineCacheMetrics.monitor(meterRegistry, newCache(maxSize, expireAfterWrite), "cards.byId");
+    }
+
+    public Optional<Card> findByCardNumber(String cardNumber) {
+        Card card = byNumber.get(cardNumber, number -> cardRepository.findByCardNumber(number)
+                .map(loaded -> index(byId, loaded.getId(), loaded))
+                .orElse(null));
+        return Optional.ofNullable(card);
+    }
+
+    public Optional<Card> findById(Long id) {
+        Card card = byId.get(id, key -> cardRepository.findById(key)
+                .map(loaded -> index(byNumber, loaded.getCardNumber(), loaded))
+                .orElse(null));
+        return Optional.ofNullable(card);
+    }
+
+    /**
+     * Returns the cards with the given numbers, loading all cache misses with a single query.
+     * Numbers without a card are missing from the result.
+     */
+    public Map<String, Card> findByCardNumbers(Collection<String> cardNumbers) {
+        return byNumber.getAll(cardNumbers, missing -> {
+            Map<String, Card> loaded = new HashMap<>();
+            cardRepository.findByCardNumberIn(missing)
+                    .forEach(card -> loaded.put(card.getCardNumber(), index(byId, card.getId(), card)));
+            return loaded;
+        });
+    }
+
+    public void invalidate(String cardNumber) {
+        Card card = byNumber.getIfPresent(cardNumber);
+        byNumber.invalidate(cardNumber);
+        if (card != null) {
+            byId.invalidate(card.getId());
+        }
+    }
+
+    /**
+     * Invalidates the cards whose numbers match, e.g. after another instance took over the cards.
+     */
+    public void invalidateIf(Predicate<String> cardNumbers) {
+        byNumber.asMap().values().removeIf(card -> {
+            if (!cardNumbers.test(card.getCardNumber())) {
+                return false;
+            }
+            byId.invalidate(card.getId());
+            return true;
+        });
+        byId.asMap().values().removeIf(card -> cardNumbers.test(card.getCardNumber()));
+    }
+
+    public void invalidateAll() {
+        byNumber.invalidateAll();
+        byId.invalidateAll();
+    }
+
+    /**
+     * Copies the loaded card so the cached instance is not attached to any persistence context,
+     * and adds the copy to the other index. The loading cache itself stores the returned copy.
+     */
+    private static <K> Card index(Cache<K, Card> other, K key, Card card) {
+        Card copy = Card.builder()
+                .id(card.getId())
+                .cardNumber(card.getCardNumber())
+                .cardholderName(card.getCardholderName())
+                .expirationDate(card.getExpirationDate())
+                .cvv(card.getCvv())
+                .balance(card.getBalance())
+                .build();
+        other.put(key, copy);
+        return copy;
+    }
+
+    private static <K> Cache<K, Card> newCache(long maxSize, Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+}
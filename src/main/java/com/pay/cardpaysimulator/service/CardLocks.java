@@ -0,0 +1,71 @@
+package com.pay.cardpaysimulator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks that serialize balance-changing operations on the same card.
+ * <p>
+ * Card IDs are spread over a fixed number of locks, so operations on different cards almost never
+ * contend and scale with the number of cores, while operations on the same card run one at a time
+ * in the order they acquired the lock. Locks are {@link ReentrantLock}s so waiting virtual threads
+ * do not pin their carrier.
+ */
+@Component
+public class CardLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public CardLocks(@Value("${simulator.payments.lock-stripes:1024}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public <T> T withLock(long cardId, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripe(cardId)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the action holding the locks of all given cards. Locks are acquired in stripe order,
+     * so concurrent callers with overlapping cards cannot deadlock.
+     */
+    public <T> T withLocks(Collection<Long> cardIds, Supplier<T> action) {
+        boolean[] needed = new boolean[stripes.length];
+        cardIds.forEach(cardId -> needed[stripe(cardId)] = true);
+        int acquired = 0;
+        try {
+            for (; acquired < stripes.length; acquired++) {
+                if (needed[acquired]) {
+                    stripes[acquired].lock();
+                }
+            }
+            return action.get();
+        } finally {
+            for (int i = acquired - 1; i >= 0; i--) {
+                if (needed[i]) {
+                    stripes[i].unlock();
+                }
+            }
+        }
+    }
+
+    private int stripe(long cardId) {
+        // Fibonacci hashing, so sequential IDs land on different stripes
+        return (int) ((cardId * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
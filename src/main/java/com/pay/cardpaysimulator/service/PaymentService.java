@@ -1,131 +1,778 @@
 package com.pay.cardpaysimulator.service;
 
+import com.pay.cardpaysimulator.analytics.PaymentAnalytics;
+import com.pay.cardpaysimulator.audit.AuditLog;
 import com.pay.cardpaysimulator.dto.PaymentRequest;
 import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.dto.TransactionPage;
+import com.pay.cardpaysimulator.dto.TransactionView;
+import com.pay.cardpaysimulator.fraud.VelocityGuard;
+import com.pay.cardpaysimulator.hold.HoldRegistry;
+import com.pay.cardpaysimulator.journal.TransactionJournal;
+import com.pay.cardpaysimulator.metrics.PaymentMetrics;
+import com.pay.cardpaysimulator.metrics.PaymentMetrics.Operation;
+import com.pay.cardpaysimulator.metrics.PaymentMetrics.Stage;
 import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.model.ReasonCode;
 import com.pay.cardpaysimulator.model.Transaction;
 import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.outcome.OutcomeSink;
 import com.pay.cardpaysimulator.repository.CardRepository;
+import com.pay.cardpaysimulator.repository.RefundableTransaction;
 import com.pay.cardpaysimulator.repository.TransactionRepository;
-import lombok.RequiredArgsConstructor;
+import com.pay.cardpaysimulator.scenario.ScenarioEngine;
+import com.pay.cardpaysimulator.scenario.ScenarioOutcome;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
-@RequiredArgsConstructor
 public class PaymentService {
 
+    private static final Duration JOURNAL_APPLY_TIMEOUT = Duration.ofSeconds(5);
+
     private final CardRepository cardRepository;
+    private final CardCache cardCache;
     private final TransactionRepository transactionRepository;
+    private final BalanceLedger balanceLedger;
+    private final ScenarioEngine scenarioEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentMetrics paymentMetrics;
+    private final AuditLog auditLog;
+    private final PaymentAnalytics paymentAnalytics;
+    private final TransactionJournal transactionJournal;
+    private final CardLocks cardLocks;
+    private final OutcomeSink outcomeSink;
+    private final HoldRegistry holdRegistry;
+    private final VelocityGuard velocityGuard;
+    private final Validator validator;
+    private final int maxBatchSize;
+    private final int maxAttempts;
+    private final int maxPageSize;
+
+    public PaymentService(CardRepository cardRepository,
+                          CardCache cardCache,
+                          TransactionRepository transactionRepository,
+                          BalanceLedger balanceLedger,
+                          ScenarioEngine scenarioEngine,
+                          PlatformTransactionManager transactionManager,
+                          PaymentMetrics paymentMetrics,
+                          AuditLog auditLog,
+                          PaymentAnalytics paymentAnalytics,
+                          ObjectProvider<TransactionJournal> transactionJournal,
+                          CardLocks cardLocks,
+                          OutcomeSink outcomeSink,
+                          HoldRegistry holdRegistry,
+                          VelocityGuard velocityGuard,
+                          Validator validator,
+                          @Value("${simulator.payments.max-batch-size:1000}") int maxBatchSize,
+                          @Value("${simulator.payments.max-attempts:3}") int maxAttempts,
+                          @Value("${simulator.transactions.max-page-size:1000}") int maxPageSize) {
+        this.cardRepository = cardRepository;
+        this.cardCache = cardCache;
+        this.transactionRepository = transactionRepository;
+        this.balanceLedger = balanceLedger;
+        this.scenarioEngine = scenarioEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.paymentMetrics = paymentMetrics;
+        this.auditLog = auditLog;
+        this.paymentAnalytics = paymentAnalytics;
+        this.transactionJournal = transactionJournal.getIfAvailable();
+        this.cardLocks = cardLocks;
+        this.outcomeSink = outcomeSink;
+        this.holdRegistry = holdRegistry;
+        this.velocityGuard = velocityGuard;
+        this.validator = validator;
+        this.maxBatchSize = maxBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.maxPageSize = maxPageSize;
+    }
 
-    @Transactional
+    /**
+     * Processes a single payment. Card checks and simulated issuer latency run before the database
+     * transaction starts, so a slow issuer never holds a pooled connection; only the balance debit
+     * and the transaction insert run inside it. In journal durability mode the approval is appended
+     * to the {@link TransactionJournal} instead, and the row is inserted later in the background.
+     * The debit and the insert run under the card's lock, so payments and refunds on one card
+     * apply one at a time. Declined and failed attempts are handed to the {@link OutcomeSink}.
+     */
     public PaymentResponse processPayment(PaymentRequest request) {
+        long start = System.nanoTime();
+        PaymentResponse response = authorizeAndPersist(request, start);
+        outcomeSink.record(request, response);
+        paymentMetrics.complete(Operation.PAYMENT, start, response);
+        auditLog.payment(request.getCardNumber(), request.getAmount(), response, System.nanoTime() - start);
+        paymentAnalytics.recordPayment(request.getCardNumber(), request.getAmount(), response);
+        return response;
+    }
+
+    private PaymentResponse authorizeAndPersist(PaymentRequest request, long start) {
         try {
-            Card card = cardRepository.findByCardNumber(request.getCardNumber())
-                    .orElseThrow(() -> new IllegalArgumentException("Card not found"));
+            Card card = cardCache.findByCardNumber(request.getCardNumber()).orElse(null);
+            long checksStart = paymentMetrics.record(Operation.PAYMENT, Stage.LOOKUP, start);
+            if (card == null) {
+                return createFailedResponse(ReasonCode.CARD_NOT_FOUND, "Payment processing failed: Card not found");
+            }
+            long amountCents = BalanceLedger.toMinorUnits(request.getAmount());
+
+            PaymentResponse rejection = checkCard(card, request, amountCents);
+            long persistStart = paymentMetrics.record(Operation.PAYMENT, Stage.CARD_CHECKS, checksStart);
+            if (rejection != null) {
+                return rejection;
+            }
+
+            if (transactionJournal != null) {
+                PaymentResponse response = cardLocks.withLock(card.getId(), () -> authorizeAndJournal(card, request, amountCents));
+                paymentMetrics.record(Operation.PAYMENT, Stage.PERSIST, persistStart);
+                return response;
+            }
+
+            PaymentResponse response = cardLocks.withLock(card.getId(), () -> inTransaction(status -> {
+                long debitStart = System.nanoTime();
+                Authorization authorization = authorize(card, request, amountCents, null);
+                paymentMetrics.record(Operation.PAYMENT, Stage.BALANCE_UPDATE, debitStart);
+                if (!authorization.isApproved()) {
+                    return authorization.response();
+                }
+                transactionRepository.save(authorization.transaction());
+                return createApprovedResponse(authorization.transaction().getId());
+            }));
+            paymentMetrics.record(Operation.PAYMENT, Stage.PERSIST, persistStart);
+            return response;
+
+        } catch (Exception e) {
+            return createFailedResponse(ReasonCode.PROCESSING_ERROR, "Payment processing failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Authorizes a batch of payments in a single database transaction. Cards missing from the card
+     * cache are loaded with one query and approved transactions are inserted as one JDBC batch. Responses are returned in
+     * request order; a declined or failed item does not affect the others. Items are validated here, since the
+     * controller cannot validate them one by one; an invalid item fails with {@code INVALID_REQUEST}. The locks of all cards
+     * in the batch are held for the duration of the transaction.
+     */
+    public List<PaymentResponse> processPayments(List<PaymentRequest> requests) {
+        if (requests.isEmpty() || requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + maxBatchSize);
+        }
+        long start = System.nanoTime();
+
+        PaymentResponse[] responses = new PaymentResponse[requests.size()];
+        Set<String> cardNumbers = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            PaymentRequest request = requests.get(i);
+            Set<ConstraintViolation<PaymentRequest>> violations = request == null ? Set.of() : validator.validate(request);
+            if (request == null || !violations.isEmpty()) {
+                responses[i] = createFailedResponse(ReasonCode.INVALID_REQUEST, "Payment processing failed: "
+                        + (request == null ? "Missing payment" : violations.iterator().next().getMessage()));
+                continue;
+            }
+            cardNumbers.add(request.getCardNumber());
+        }
+        Map<String, Card> cards = cardCache.findByCardNumbers(cardNumbers);
 
-            if (isCardExpired(card.getExpirationDate())) {
-                return createDeclinedResponse("Card is expired");
+        long[] amounts = new long[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            if (responses[i] != null) {
+                continue;
             }
+            PaymentRequest request = requests.get(i);
+            try {
+                Card card = cards.get(request.getCardNumber());
+                if (card == null) {
+                    responses[i] = createFailedResponse(ReasonCode.CARD_NOT_FOUND, "Payment processing failed: Card not found");
+                    continue;
+                }
+                amounts[i] = BalanceLedger.toMinorUnits(request.getAmount());
+                responses[i] = checkCard(card, request, amounts[i]);
+            } catch (Exception e) {
+                responses[i] = createFailedResponse(ReasonCode.PROCESSING_ERROR, "Payment processing failed: " + e.getMessage());
+            }
+        }
 
-            if (!card.getCvv().equals(request.getCvv())) {
-                return createDeclinedResponse("Invalid CVV");
+        Set<Long> cardIds = new HashSet<>();
+        cards.values().forEach(card -> cardIds.add(card.getId()));
+        cardLocks.withLocks(cardIds, () -> transactionTemplate.execute(status -> {
+            Transaction[] approved = new Transaction[requests.size()];
+            List<Transaction> inserts = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                if (responses[i] != null) {
+                    continue;
+                }
+                PaymentRequest request = requests.get(i);
+                Authorization authorization = authorize(cards.get(request.getCardNumber()), request, amounts[i], null);
+                if (authorization.isApproved()) {
+                    approved[i] = authorization.transaction();
+                    inserts.add(authorization.transaction());
+                } else {
+                    responses[i] = authorization.response();
+                }
             }
 
-            if (card.getBalance().compareTo(request.getAmount()) < 0) {
-                return createDeclinedResponse("Insufficient funds");
+            transactionRepository.saveAll(inserts);
+            transactionRepository.flush();
+
+            for (int i = 0; i < approved.length; i++) {
+                if (approved[i] != null) {
+                    responses[i] = createApprovedResponse(approved[i].getId());
+                }
+            }
+            return null;
+        }));
+        long elapsed = System.nanoTime() - start;
+        for (int i = 0; i < responses.length; i++) {
+            // Every item took as long as the whole batch
+            paymentMetrics.complete(Operation.PAYMENT, start, responses[i]);
+            PaymentRequest request = requests.get(i);
+            if (request == null) {
+                auditLog.payment(null, null, responses[i], elapsed);
+                continue;
             }
+            auditLog.payment(request.getCardNumber(), request.getAmount(), responses[i], elapsed);
+            outcomeSink.record(request, responses[i]);
+            paymentAnalytics.recordPayment(request.getCardNumber(), request.getAmount(), responses[i]);
+        }
+        return Arrays.asList(responses);
+    }
 
-            // Create and save transaction
-            Transaction transaction = Transaction.builder()
-                    .card(card)
-                    .amount(request.getAmount())
-                    .status(TransactionStatus.APPROVED)
-                    .timestamp(LocalDateTime.now())
-                    .description(request.getDescription())
-                    .build();
+    /**
+     * Applies the simulated issuer scenario and the card checks that need no database access,
+     * including the {@link VelocityGuard} rules.
+     *
+     * @return the response for a declined or failed payment, or {@code null} if it may proceed
+     */
+    private PaymentResponse checkCard(Card card, PaymentRequest request, long amountCents) {
+        if (velocityGuard.isLocked(card)) {
+            return createDeclinedResponse(ReasonCode.CARD_LOCKED, VelocityGuard.message(ReasonCode.CARD_LOCKED));
+        }
 
-            transactionRepository.save(transaction);
+        ScenarioOutcome scenario = scenarioEngine.evaluate(card.getCardNumber(), amountCents);
+        if (scenario != null) {
+            scenario.injectLatency();
+            switch (scenario.resolveAction()) {
+                case DECLINE:
+                    return createDeclinedResponse(ReasonCode.ISSUER_DECLINED,
+                            scenario.getMessage() != null ? scenario.getMessage() : "Card declined by issuer");
+                case FAIL:
+                    return createFailedResponse(ReasonCode.ISSUER_ERROR,
+                            scenario.getMessage() != null ? scenario.getMessage() : "Issuer processing error");
+                default:
+                    break;
+            }
+        }
 
-            // Update card balance
-            card.setBalance(card.getBalance().subtract(request.getAmount()));
-            cardRepository.save(card);
+        if (isCardExpired(card.getExpirationDate())) {
+            return createDeclinedResponse(ReasonCode.EXPIRED_CARD, "Card is expired");
+        }
 
-            return PaymentResponse.builder()
-                    .status(TransactionStatus.APPROVED)
-                    .message("Payment processed successfully")
-                    .transactionId(transaction.getId())
-                    .build();
+        if (!card.getCvv().equals(request.getCvv())) {
+            velocityGuard.recordCvvFailure(card);
+            return createDeclinedResponse(ReasonCode.INVALID_CVV, "Invalid CVV");
+        }
 
-        } catch (Exception e) {
-            return createFailedResponse("Payment processing failed: " + e.getMessage());
+        ReasonCode velocity = velocityGuard.tryRecord(card, amountCents);
+        if (velocity != null) {
+            return createDeclinedResponse(velocity, VelocityGuard.message(velocity));
         }
+
+        return null;
+    }
+
+    /**
+     * Debits the card and builds the transaction to persist: an approved payment, or a pending hold
+     * if {@code holdExpiresAt} is given. Must run inside a transaction so the debit is undone if the
+     * insert fails. The transaction references the card by ID, so the cached card is never attached
+     * to the persistence context.
+     */
+    private Authorization authorize(Card card, PaymentRequest request, long amountCents, LocalDateTime holdExpiresAt) {
+        if (!balanceLedger.tryDebit(card, amountCents)) {
+            return Authorization.rejected(createDeclinedResponse(ReasonCode.INSUFFICIENT_FUNDS, "Insufficient funds"));
+        }
+
+        return Authorization.approved(Transaction.builder()
+                .card(cardRepository.getReferenceById(card.getId()))
+                .amount(request.getAmount())
+                .status(holdExpiresAt == null ? TransactionStatus.APPROVED : TransactionStatus.PENDING)
+                .timestamp(LocalDateTime.now())
+                .description(request.getDescription())
+                .holdExpiresAt(holdExpiresAt)
+                .build());
+    }
+
+    /**
+     * Debits the card and appends the approval to the journal, without a database round trip.
+     * The debit is undone if the journal cannot be written.
+     */
+    private PaymentResponse authorizeAndJournal(Card card, PaymentRequest request, long amountCents) {
+        long debitStart = System.nanoTime();
+        if (!balanceLedger.tryDebit(card, amountCents)) {
+            return createDeclinedResponse(ReasonCode.INSUFFICIENT_FUNDS, "Insufficient funds");
+        }
+        paymentMetrics.record(Operation.PAYMENT, Stage.BALANCE_UPDATE, debitStart);
+        try {
+            long transactionId = transactionJournal.append(card.getId(), amountCents, LocalDateTime.now(), request.getDescription());
+            return createApprovedResponse(transactionId);
+        } catch (IOException | RuntimeException e) {
+            balanceLedger.credit(card, amountCents);
+            return createFailedResponse(ReasonCode.PROCESSING_ERROR, "Payment processing failed: " + e.getMessage());
+        }
+    }
+
+    private PaymentResponse createApprovedResponse(Long transactionId) {
+        return PaymentResponse.builder()
+                .status(TransactionStatus.APPROVED)
+                .message("Payment processed successfully")
+                .transactionId(transactionId)
+                .build();
     }
 
     private boolean isCardExpired(LocalDate expirationDate) {
         return expirationDate.isBefore(LocalDate.now());
     }
 
-    private PaymentResponse createDeclinedResponse(String message) {
+    private PaymentResponse createDeclinedResponse(ReasonCode reasonCode, String message) {
         return PaymentResponse.builder()
                 .status(TransactionStatus.DECLINED)
                 .message(message)
+                .reasonCode(reasonCode)
                 .build();
     }
 
-    private PaymentResponse createFailedResponse(String message) {
+    private PaymentResponse createFailedResponse(ReasonCode reasonCode, String message) {
         return PaymentResponse.builder()
                 .status(TransactionStatus.FAILED)
                 .message(message)
+                .reasonCode(reasonCode)
                 .build();
     }
 
+    /**
+     * Returns one page of transactions ordered by timestamp and ID, optionally restricted to a card
+     * or a status and to the time range from {@code from} (inclusive) to {@code to} (exclusive).
+     * Pages are addressed by the timestamp and ID of the last transaction of the previous page,
+     * so the cost of a page does not grow with its position in the table. Card queries go by card
+     * ID, so they are answered from the card and timestamp index without joining on the card number.
+     */
     @Transactional(readOnly = true)
-    public List<Transaction> getAllTransactions() {
-        return transactionRepository.findAll();
+    public TransactionPage getTransactions(String cardNumber, TransactionStatus status,
+                                           LocalDateTime from, LocalDateTime to,
+                                           LocalDateTime afterTimestamp, Long afterId, int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxPageSize);
+        }
+        if ((afterTimestamp == null) != (afterId == null)) {
+            throw new IllegalArgumentException("afterTimestamp and afterId must be provided together");
+        }
+        if ((from == null) != (to == null)) {
+            throw new IllegalArgumentException("from and to must be provided together");
+        }
+        if (from != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (status != null && (from == null || cardNumber != null)) {
+            throw new IllegalArgumentException("status can only be combined with a time range across all cards");
+        }
+
+        Long cardId = null;
+        if (cardNumber != null) {
+            Optional<Card> card = cardCache.findByCardNumber(cardNumber);
+            if (card.isEmpty()) {
+                return TransactionPage.builder().items(List.of()).build();
+            }
+            cardId = card.get().getId();
+        }
+
+        Limit fetchLimit = Limit.of(limit + 1);
+        List<TransactionView> transactions;
+        if (from != null) {
+            // Start at the beginning of the range unless the cursor is already inside it
+            boolean resume = afterTimestamp != null && !afterTimestamp.isBefore(from);
+            LocalDateTime timestamp = resume ? afterTimestamp : from;
+            long id = resume ? afterId : Long.MIN_VALUE;
+            if (cardId != null) {
+                transactions = transactionRepository.findPageByCardIdBefore(cardId, to, timestamp, id, fetchLimit);
+            } else if (status != null) {
+                transactions = transactionRepository.findPageByStatusBefore(status, to, timestamp, id, fetchLimit);
+            } else {
+                transactions = transactionRepository.findPageBefore(to, timestamp, id, fetchLimit);
+            }
+        } else if (cardId == null) {
+            transactions = afterId == null
+                    ? transactionRepository.findFirstPage(fetchLimit)
+                    : transactionRepository.findPageAfter(afterTimestamp, afterId, fetchLimit);
+        } else {
+            transactions = afterId == null
+                    ? transactionRepository.findFirstPageByCardId(cardId, fetchLimit)
+                    : transactionRepository.findPageByCardIdAfter(cardId, afterTimestamp, afterId, fetchLimit);
+        }
+
+        boolean hasMore = transactions.size() > limit;
+        List<TransactionView> items = hasMore ? transactions.subList(0, limit) : transactions;
+        TransactionView last = items.isEmpty() ? null : items.get(items.size() - 1);
+        return TransactionPage.builder()
+                .items(items)
+                .hasMore(hasMore)
+                .nextAfterTimestamp(hasMore ? last.timestamp() : null)
+                .nextAfterId(hasMore ? last.id() : null)
+                .build();
     }
 
+    /**
+     * Streams every transaction, optionally restricted to a card, to the given consumer.
+     * Rows are read through a forward-only cursor as views rather than entities, so nothing
+     * accumulates in the persistence context and memory use stays constant regardless of the
+     * table size.
+     */
     @Transactional(readOnly = true)
-    public Optional<Transaction> getTransactionById(Long transactionId) {
-        return transactionRepository.findById(transactionId);
+    public void streamTransactions(String cardNumber, Consumer<TransactionView> consumer) {
+        if (cardNumber == null) {
+            try (Stream<TransactionView> transactions = transactionRepository.streamAll()) {
+                transactions.forEach(consumer);
+            }
+            return;
+        }
+        cardCache.findByCardNumber(cardNumber).ifPresent(card -> {
+            try (Stream<TransactionView> transactions = transactionRepository.streamByCardId(card.getId())) {
+                transactions.forEach(consumer);
+            }
+        });
     }
 
     @Transactional(readOnly = true)
-    public List<Transaction> getTransactionsByCardNumber(String cardNumber) {
-        return transactionRepository.findByCardCardNumber(cardNumber);
+    public Optional<TransactionView> getTransactionById(Long transactionId) {
+        return transactionRepository.findViewById(transactionId);
     }
 
-    @Transactional
     public PaymentResponse processRefund(Long transactionId) {
+        return processRefund(transactionId, null);
+    }
+
+    /**
+     * Refunds {@code amount} of a transaction, or everything not refunded yet if it is {@code null}.
+     * A transaction can be refunded partially any number of times until its whole amount has been
+     * refunded, at which point it becomes {@code REFUNDED}.
+     */
+    public PaymentResponse processRefund(Long transactionId, BigDecimal amount) {
+        long start = System.nanoTime();
+        PaymentResponse response = refundAndPersist(transactionId, amount, start);
+        if (response.getReasonCode() == ReasonCode.TRANSACTION_NOT_FOUND && awaitJournal()) {
+            // The payment may still be in the journal, waiting to be inserted
+            response = refundAndPersist(transactionId, amount, start);
+        }
+        paymentMetrics.complete(Operation.REFUND, start, response);
+        auditLog.refund(transactionId, amount, response, System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Refunds a transaction under the lock of its card. The refundable amount is read from the
+     * transaction row's running refunded total, and the refund is applied by a single conditional
+     * update that adds to that total only if it stays within the transaction amount, so concurrent
+     * refunds of the same transaction, even on different instances, never credit the card more than
+     * was paid. A full refund that loses to a concurrent partial one reads the total again.
+     */
+    private PaymentResponse refundAndPersist(Long transactionId, BigDecimal amount, long start) {
+        try {
+            RefundableTransaction found = transactionRepository.findRefundableById(transactionId).orElse(null);
+            long creditStart = paymentMetrics.record(Operation.REFUND, Stage.LOOKUP, start);
+            if (found == null) {
+                return createFailedResponse(ReasonCode.TRANSACTION_NOT_FOUND, "Refund processing failed: Transaction not found");
+            }
+            Long cardId = found.getCardId();
+            if (cardId == null) {
+                // Rejected attempts with an unknown card number are stored without a card
+                return createDeclinedResponse(ReasonCode.NOT_REFUNDABLE, "Cannot refund a non-approved transaction");
+            }
+
+            PaymentResponse response = cardLocks.withLock(cardId, () -> inTransaction(status -> {
+                RefundableTransaction transaction = found;
+                for (int attempt = 1; ; attempt++) {
+                    if (transaction == null || transaction.getStatus() != TransactionStatus.APPROVED) {
+                        return createDeclinedResponse(ReasonCode.NOT_REFUNDABLE, "Cannot refund a non-approved transaction");
+                    }
+                    long refundableCents = BalanceLedger.toMinorUnits(transaction.getAmount())
+                            - (transaction.getRefundedAmount() == null ? 0 : BalanceLedger.toMinorUnits(transaction.getRefundedAmount()));
+                    long refundCents = amount == null ? refundableCents : BalanceLedger.toMinorUnits(amount);
+                    if (refundCents > refundableCents) {
+                        return createDeclinedResponse(ReasonCode.REFUND_EXCEEDS_AMOUNT, "Refund amount exceeds the amount left to refund");
+                    }
+                    if (transactionRepository.refund(transactionId, BalanceLedger.fromMinorUnits(refundCents)) == 1) {
+                        Card card = cardCache.findById(cardId)
+                                .orElseThrow(() -> new IllegalStateException("Card of transaction " + transactionId + " not found"));
+                        balanceLedger.credit(card, refundCents);
+                        paymentAnalytics.recordRefund(card.getCardNumber(), refundCents);
+                        paymentMetrics.record(Operation.REFUND, Stage.BALANCE_UPDATE, creditStart);
+
+                        return PaymentResponse.builder()
+                                .status(TransactionStatus.REFUNDED)
+                                .message(refundCents == refundableCents ? "Refund processed successfully" : "Partial refund processed successfully")
+                                .transactionId(transactionId)
+                                .build();
+                    }
+                    if (attempt >= maxAttempts) {
+                        return createFailedResponse(ReasonCode.PROCESSING_ERROR, "Refund processing failed: Transaction kept changing");
+                    }
+                    // Refunded or archived elsewhere since it was read
+                    transaction = transactionRepository.findRefundableById(transactionId).orElse(null);
+                }
+            }));
+            paymentMetrics.record(Operation.REFUND, Stage.PERSIST, creditStart);
+            return response;
+
+        } catch (Exception e) {
+            return createFailedResponse(ReasonCode.PROCESSING_ERROR, "Refund processing failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Places a hold for the amount of the request: the card goes through the same checks as a
+     * payment and the amount is debited from its available balance, but the transaction stays
+     * {@code PENDING} until it is captured, voided or expires. Holds are always inserted before the
+     * response is returned, also in journal durability mode, so they can be captured or voided
+     * right away. Declined and failed attempts are handed to the {@link OutcomeSink}.
+     */
+    public PaymentResponse authorize(PaymentRequest request) {
+        long start = System.nanoTime();
+        PaymentResponse response = placeHold(request, start);
+        outcomeSink.record(request, response);
+        paymentMetrics.complete(Operation.AUTHORIZE, start, response);
+        auditLog.authorization(request.getCardNumber(), request.getAmount(), response, System.nanoTime() - start);
+        paymentAnalytics.recordPayment(request.getCardNumber(), request.getAmount(), response);
+        return response;
+    }
+
+    private PaymentResponse placeHold(PaymentRequest request, long start) {
         try {
-            Transaction transaction = transactionRepository.findById(transactionId)
-                    .orElseThrow(() -> new IllegalArgumentException("Transaction not found"));
+            Card card = cardCache.findByCardNumber(request.getCardNumber()).orElse(null);
+            long checksStart = paymentMetrics.record(Operation.AUTHORIZE, Stage.LOOKUP, start);
+            if (card == null) {
+                return createFailedResponse(ReasonCode.CARD_NOT_FOUND, "Authorization failed: Card not found");
+            }
+            long amountCents = BalanceLedger.toMinorUnits(request.getAmount());
+
+            PaymentResponse rejection = checkCard(card, request, amountCents);
+            long persistStart = paymentMetrics.record(Operation.AUTHORIZE, Stage.CARD_CHECKS, checksStart);
+            if (rejection != null) {
+                return rejection;
+            }
+
+            LocalDateTime expiresAt = holdRegistry.expiresAt(LocalDateTime.now());
+            PaymentResponse response = cardLocks.withLock(card.getId(), () -> {
+                PaymentResponse placed = inTransaction(status -> {
+                    long debitStart = System.nanoTime();
+                    Authorization authorization = authorize(card, request, amountCents, expiresAt);
+                    paymentMetrics.record(Operation.AUTHORIZE, Stage.BALANCE_UPDATE, debitStart);
+                    if (!authorization.isApproved()) {
+                        return authorization.response();
+                    }
+                    transactionRepository.save(authorization.transaction());
+                    return PaymentResponse.builder()
+                            .status(TransactionStatus.PENDING)
+                            .message("Hold placed successfully")
+                            .transactionId(authorization.transaction().getId())
+                            .build();
+                });
+                // Registered once committed, before a capture or void of the hold can take the lock
+                if (placed.getStatus() == TransactionStatus.PENDING) {
+                    holdRegistry.register(placed.getTransactionId(), card, amountCents, expiresAt);
+                }
+                return placed;
+            });
+            paymentMetrics.record(Operation.AUTHORIZE, Stage.PERSIST, persistStart);
+            return response;
+
+        } catch (Exception e) {
+            return createFailedResponse(ReasonCode.PROCESSING_ERROR, "Authorization failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Captures a hold, in full if {@code amount} is {@code null} or partially otherwise; the part
+     * of the hold that is not captured goes back to the card's available balance. The transaction
+     * becomes {@code APPROVED} with the captured amount, so it can be refunded like a payment.
+     */
+    public PaymentResponse capture(Long transactionId, BigDecimal amount) {
+        long start = System.nanoTime();
+        PaymentResponse response = captureAndPersist(transactionId, amount, start);
+        paymentMetrics.complete(Operation.CAPTURE, start, response);
+        auditLog.capture(transactionId, amount, response, System.nanoTime() - start);
+        return response;
+    }
+
+    private PaymentResponse captureAndPersist(Long transactionId, BigDecimal amount, long start) {
+        try {
+            Long cardId = transactionRepository.findCardIdById(transactionId).orElse(null);
+            long creditStart = paymentMetrics.record(Operation.CAPTURE, Stage.LOOKUP, start);
+            if (cardId == null) {
+                return unknownHold(transactionId, "Capture failed: Transaction not found");
+            }
+
+            PaymentResponse response = cardLocks.withLock(cardId, () -> {
+                PaymentResponse captured = inTransaction(status -> {
+                    Transaction transaction = transactionRepository.findById(transactionId).orElse(null);
+                    PaymentResponse rejection = checkHold(transaction);
+                    if (rejection != null) {
+                        return rejection;
+                    }
+                    long heldCents = BalanceLedger.toMinorUnits(transaction.getAmount());
+                    long capturedCents = amount == null ? heldCents : BalanceLedger.toMinorUnits(amount);
+                    if (capturedCents > heldCents) {
+                        return createDeclinedResponse(ReasonCode.CAPTURE_EXCEEDS_HOLD, "Capture amount exceeds the held amount");
+                    }
+                    // Loses to a concurrent capture, void or expiry of the same hold
+                    if (transactionRepository.captureHold(transactionId, amount == null ? transaction.getAmount() : amount,
+                            LocalDateTime.now()) == 0) {
+                        return createDeclinedResponse(ReasonCode.NOT_PENDING, "Transaction is not an outstanding hold");
+                    }
+
+                    Card card = cardCache.findById(cardId)
+                            .orElseThrow(() -> new IllegalStateException("Card of transaction " + transactionId + " not found"));
+                    if (capturedCents < heldCents) {
+                        balanceLedger.credit(card, heldCents - capturedCents);
+                    }
+                    paymentAnalytics.recordCapture(card.getCardNumber(), capturedCents);
+                    paymentMetrics.record(Operation.CAPTURE, Stage.BALANCE_UPDATE, creditStart);
 
-            if (transaction.getStatus() != TransactionStatus.APPROVED) {
-                return createDeclinedResponse("Cannot refund a non-approved transaction");
+                    return PaymentResponse.builder()
+                            .status(TransactionStatus.APPROVED)
+                            .message("Hold captured successfully")
+                            .transactionId(transactionId)
+                            .build();
+                });
+                if (captured.getStatus() == TransactionStatus.APPROVED) {
+                    holdRegistry.remove(transactionId);
+                }
+                return captured;
+            });
+            paymentMetrics.record(Operation.CAPTURE, Stage.PERSIST, creditStart);
+            return response;
+
+        } catch (Exception e) {
+            return createFailedResponse(ReasonCode.PROCESSING_ERROR, "Capture failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Voids a hold and gives its whole amount back to the card's available balance.
+     */
+    public PaymentResponse voidHold(Long transactionId) {
+        long start = System.nanoTime();
+        PaymentResponse response = voidAndPersist(transactionId, start);
+        paymentMetrics.complete(Operation.VOID, start, response);
+        auditLog.voidHold(transactionId, response, System.nanoTime() - start);
+        return response;
+    }
+
+    private PaymentResponse voidAndPersist(Long transactionId, long start) {
+        try {
+            Long cardId = transactionRepository.findCardIdById(transactionId).orElse(null);
+            long creditStart = paymentMetrics.record(Operation.VOID, Stage.LOOKUP, start);
+            if (cardId == null) {
+                return unknownHold(transactionId, "Void failed: Transaction not found");
             }
 
-            Card card = transaction.getCard();
-            card.setBalance(card.getBalance().add(transaction.getAmount()));
-            cardRepository.save(card);
+            PaymentResponse response = cardLocks.withLock(cardId, () -> {
+                PaymentResponse voided = inTransaction(status -> {
+                    Transaction transaction = transactionRepository.findById(transactionId).orElse(null);
+                    if (transaction == null || transaction.getStatus() != TransactionStatus.PENDING
+                            || transactionRepository.voidHold(transactionId, null) == 0) {
+                        return createDeclinedResponse(ReasonCode.NOT_PENDING, "Transaction is not an outstanding hold");
+                    }
 
-            transaction.setStatus(TransactionStatus.REFUNDED);
-            transactionRepository.save(transaction);
+                    Card card = cardCache.findById(cardId)
+                            .orElseThrow(() -> new IllegalStateException("Card of transaction " + transactionId + " not found"));
+                    balanceLedger.credit(card, BalanceLedger.toMinorUnits(transaction.getAmount()));
+                    paymentMetrics.record(Operation.VOID, Stage.BALANCE_UPDATE, creditStart);
 
-            return PaymentResponse.builder()
-                    .status(TransactionStatus.REFUNDED)
-                    .message("Refund processed successfully")
-                    .transactionId(transaction.getId())
-                    .build();
+                    return PaymentResponse.builder()
+                            .status(TransactionStatus.VOIDED)
+                            .message("Hold voided successfully")
+                            .transactionId(transactionId)
+                            .build();
+                });
+                if (voided.getStatus() == TransactionStatus.VOIDED) {
+                    holdRegistry.remove(transactionId);
+                }
+                return voided;
+            });
+            paymentMetrics.record(Operation.VOID, Stage.PERSIST, creditStart);
+            return response;
 
         } catch (Exception e) {
-            return createFailedResponse("Refund processing failed: " + e.getMessage());
+            return createFailedResponse(ReasonCode.PROCESSING_ERROR, "Void failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the response for a capture of a transaction that is not an outstanding hold, or
+     *         {@code null} if it may be captured
+     */
+    private PaymentResponse checkHold(Transaction transaction) {
+        if (transaction == null || transaction.getStatus() != TransactionStatus.PENDING) {
+            return createDeclinedResponse(ReasonCode.NOT_PENDING, "Transaction is not an outstanding hold");
+        }
+        if (!transaction.getHoldExpiresAt().isAfter(LocalDateTime.now())) {
+            return createDeclinedResponse(ReasonCode.HOLD_EXPIRED, "Hold has expired");
+        }
+        return null;
+    }
+
+    private PaymentResponse unknownHold(Long transactionId, String notFoundMessage) {
+        // Rejected attempts with an unknown card number are stored without a card
+        return transactionRepository.existsById(transactionId)
+                ? createDeclinedResponse(ReasonCode.NOT_PENDING, "Transaction is not an outstanding hold")
+                : createFailedResponse(ReasonCode.TRANSACTION_NOT_FOUND, notFoundMessage);
+    }
+
+    /**
+     * Runs the callback in a new transaction, retrying it from the start if it fails on a stale
+     * {@code @Version}. A rolled back attempt also rolls back its balance ledger changes.
+     */
+    private <T> T inTransaction(TransactionCallback<T> callback) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(callback);
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private boolean awaitJournal() {
+        if (transactionJournal == null) {
+            return false;
+        }
+        try {
+            return transactionJournal.awaitApplied(JOURNAL_APPLY_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
@@ -134,4 +781,23 @@ public class PaymentService {
         return transactionRepository.findById(transactionId)
                 .map(transaction -> transaction.getStatus().name());
     }
+
+    /**
+     * Outcome of the authorization checks: either an approved, not yet persisted transaction
+     * or the response to return for a declined or failed payment.
+     */
+    private record Authorization(Transaction transaction, PaymentResponse response) {
+
+        static Authorization approved(Transaction transaction) {
+            return new Authorization(transaction, null);
+        }
+
+        static Authorization rejected(PaymentResponse response) {
+            return new Authorization(null, response);
+        }
+
+        boolean isApproved() {
+            return transaction != null;
+        }
+    }
 } 
\ No newline at end of file
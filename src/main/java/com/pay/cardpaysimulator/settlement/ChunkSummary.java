@@ -0,0 +1,24 @@
+package com.pay.cardpaysimulator.settlement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What one card range contributed to a settlement run. Written next to the range's files once they
+ * are complete, it is the checkpoint a restarted run resumes from.
+ *
+ * @param cards        cards in the range
+ * @param unreconciled cards without an opening balance to reconcile against
+ * @param drifting     cards whose balance does not match their transactions
+ * @param bins         settled totals per BIN
+ */
+public record ChunkSummary(long cards, long unreconciled, long drifting, Map<String, SettledTotals> bins) {
+
+    public static final ChunkSummary EMPTY = new ChunkSummary(0, 0, 0, Map.of());
+
+    public ChunkSummary plus(ChunkSummary other) {
+        Map<String, SettledTotals> merged = new HashMap<>(bins);
+        other.bins.forEach((bin, totals) -> merged.merge(bin, totals, SettledTotals::plus));
+        return new ChunkSummary(cards + other.cards, unreconciled + other.unreconciled, drifting + other.drifting, merged);
+    }
+}
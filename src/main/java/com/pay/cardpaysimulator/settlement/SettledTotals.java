@@ -0,0 +1,18 @@
+package com.pay.cardpaysimulator.settlement;
+
+/**
+ * Settled transactions of one card or one BIN, with amounts in cents.
+ */
+public record SettledTotals(long cards, long transactions, long grossCents, long refundedCents) {
+
+    public static final SettledTotals ZERO = new SettledTotals(0, 0, 0, 0);
+
+    public SettledTotals plus(SettledTotals other) {
+        return new SettledTotals(cards + other.cards, transactions + other.transactions,
+                grossCents + other.grossCents, refundedCents + other.refundedCents);
+    }
+
+    public long netCents() {
+        return grossCents - refundedCents;
+    }
+}
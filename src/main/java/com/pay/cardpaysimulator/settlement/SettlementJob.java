@@ -0,0 +1,469 @@
+package com.pay.cardpaysimulator.settlement;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pay.cardpaysimulator.audit.AuditLog;
+import com.pay.cardpaysimulator.dto.SettlementReport;
+import com.pay.cardpaysimulator.journal.TransactionJournal;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.repository.CardBalance;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import com.pay.cardpaysimulator.repository.SettlementRow;
+import com.pay.cardpaysimulator.repository.TransactionRepository;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * End-of-day settlement and balance reconciliation.
+ * <p>
+ * A run covers a time window and splits the cards into ranges of {@code cards-per-chunk} card IDs,
+ * which a fork-join pool of {@code parallelism} workers splits down to single ranges and processes
+ * in parallel. Each range streams its cards and their transactions, both ordered by card ID, through
+ * forward-only cursors and walks them side by side, so only one card's totals are in memory at a
+ * time whatever the number of rows. For every card it adds up the approved and refunded transactions
+ * in the window into the per-card settlement lines and per-BIN totals, and checks that the card's
+ * balance equals its opening balance less the net amount of all its transactions, listing the cards
+ * that drift.
+ * <p>
+ * Each range writes its lines to its own files, forces them to disk and then writes a small summary
+ * as its checkpoint, so a run that is interrupted and started again for the same window only
+ * processes the ranges without one. Once all ranges are done, their files are concatenated into
+ * {@code cards.csv} and {@code reconciliation.csv}, the BIN totals are written to {@code bins.csv},
+ * and the report is written last to {@code report.json}; a window with a report is not run again.
+ */
+@Slf4j
+@Component
+public class SettlementJob {
+
+    private static final Set<TransactionStatus> SETTLED = EnumSet.of(TransactionStatus.APPROVED, TransactionStatus.REFUNDED);
+    /** Statuses whose amount has left the card: settled payments and outstanding holds. */
+    private static final Set<TransactionStatus> DEBITED = EnumSet.of(TransactionStatus.APPROVED, TransactionStatus.REFUNDED,
+            TransactionStatus.PENDING);
+    private static final DateTimeFormatter WINDOW_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final Duration JOURNAL_APPLY_TIMEOUT = Duration.ofSeconds(30);
+    private static final String REPORT_FILE = "report.json";
+    private static final String CARDS_HEADER = "cardId,card,bin,transactions,gross,refunded,net";
+    private static final String DRIFT_HEADER = "cardId,card,balance,expected,drift";
+    private static final String BINS_HEADER = "bin,cards,transactions,gross,refunded,net";
+
+    private final CardRepository cardRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BalanceLedger balanceLedger;
+    private final TransactionJournal transactionJournal;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final long cardsPerChunk;
+    private final int parallelism;
+    private final ReentrantLock running = new ReentrantLock();
+
+    public SettlementJob(CardRepository cardRepository,
+                         TransactionRepository transactionRepository,
+                         PlatformTransactionManager transactionManager,
+                         BalanceLedger balanceLedger,
+                         ObjectProvider<TransactionJournal> transactionJournal,
+                         ObjectMapper objectMapper,
+                         @Value("${simulator.settlement.directory:settlement}") String directory,
+                         @Value("${simulator.settlement.cards-per-chunk:10000}") long cardsPerChunk,
+                         @Value("${simulator.settlement.parallelism:4}") int parallelism) {
+        if (cardsPerChunk < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Settlement chunk size and parallelism must be positive");
+        }
+        this.cardRepository = cardRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.balanceLedger = balanceLedger;
+        this.transactionJournal = transactionJournal.getIfAvailable();
+        this.objectMapper = objectMapper;
+        this.directory = Path.of(directory);
+        this.cardsPerChunk = cardsPerChunk;
+        this.parallelism = parallelism;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Settles the previous day. Disabled unless {@code simulator.settlement.cron} is set.
+     */
+    @Scheduled(cron = "${simulator.settlement.cron:-}")
+    public void settlePreviousDay() {
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        try {
+            settle(today.minusDays(1), today);
+        } catch (RuntimeException e) {
+            log.error("Settlement of the previous day failed, it resumes from its checkpoints when run again", e);
+        }
+    }
+
+    /**
+     * Settles the transactions from {@code from} (inclusive) to {@code to} (exclusive) and reconciles
+     * every card, resuming from the checkpoints of an earlier run for the same window.
+     *
+     * @throws IllegalStateException if another run is in progress
+     */
+    public SettlementReport settle(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (!running.tryLock()) {
+            throw new IllegalStateException("A settlement run is already in progress");
+        }
+        try {
+            Path runDirectory = directory.resolve(WINDOW_FORMAT.format(from) + "_" + WINDOW_FORMAT.format(to));
+            Path reportFile = runDirectory.resolve(REPORT_FILE);
+            if (Files.exists(reportFile)) {
+                deleteChunkFiles(runDirectory);
+                return objectMapper.readValue(reportFile.toFile(), SettlementReport.class);
+            }
+            Files.createDirectories(runDirectory);
+            return run(new Window(from, to, runDirectory));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private SettlementReport run(Window window) throws IOException {
+        long start = System.nanoTime();
+        prepareBalances();
+
+        long firstChunk = cardRepository.findMinId().orElse(0L) / cardsPerChunk;
+        long lastChunk = cardRepository.findMaxId().orElse(-1L) / cardsPerChunk;
+        ChunkSummary total = ChunkSummary.EMPTY;
+        if (firstChunk <= lastChunk) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                total = pool.invoke(new SettleChunks(window, firstChunk, lastChunk));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        try (CsvFile cards = new CsvFile(window.directory().resolve("cards.csv"));
+             CsvFile drift = new CsvFile(window.directory().resolve("reconciliation.csv"))) {
+            cards.line(CARDS_HEADER);
+            drift.line(DRIFT_HEADER);
+            for (long chunk = firstChunk; chunk <= lastChunk; chunk++) {
+                cards.append(cardsFile(window, chunk));
+                drift.append(driftFile(window, chunk));
+            }
+        }
+        SettledTotals settled = SettledTotals.ZERO;
+        try (CsvFile bins = new CsvFile(window.directory().resolve("bins.csv"))) {
+            bins.line(BINS_HEADER);
+            for (Map.Entry<String, SettledTotals> bin : new TreeMap<>(total.bins()).entrySet()) {
+                SettledTotals totals = bin.getValue();
+                bins.line(bin.getKey() + "," + totals.cards() + "," + totals.transactions() + "," + amount(totals.grossCents())
+                        + "," + amount(totals.refundedCents()) + "," + amount(totals.netCents()));
+                settled = settled.plus(totals);
+            }
+        }
+
+        SettlementReport report = SettlementReport.builder()
+                .from(window.from())
+                .to(window.to())
+                .directory(window.directory().toString())
+                .cards(total.cards())
+                .settledCards(settled.cards())
+                .transactions(settled.transactions())
+                .grossAmount(BalanceLedger.fromMinorUnits(settled.grossCents()))
+                .refundedAmount(BalanceLedger.fromMinorUnits(settled.refundedCents()))
+                .netAmount(BalanceLedger.fromMinorUnits(settled.netCents()))
+                .driftingCards(total.drifting())
+                .unreconciledCards(total.unreconciled())
+                .chunks(Math.max(0, lastChunk - firstChunk + 1))
+                .resumedChunks(window.resumed().sum())
+                .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .build();
+        writeAtomically(window.directory().resolve(REPORT_FILE), objectMapper.writeValueAsBytes(report));
+        deleteChunkFiles(window.directory());
+
+        if (report.getDriftingCards() > 0) {
+            log.warn("Settlement of {} to {}: {} cards drift from their transactions, see {}",
+                    window.from(), window.to(), report.getDriftingCards(), window.directory().resolve("reconciliation.csv"));
+        }
+        log.info("Settled {} transactions of {} cards from {} to {} in {} ms, net {}",
+                report.getTransactions(), report.getSettledCards(), window.from(), window.to(),
+                report.getElapsedMillis(), report.getNetAmount());
+        return report;
+    }
+
+    /**
+     * Writes pending balances to the database, so the stored balances include every committed
+     * payment. Payments still in flight while the run reads a card may show up as drift.
+     */
+    private void prepareBalances() {
+        balanceLedger.flush();
+        if (transactionJournal == null) {
+            return;
+        }
+        try {
+            if (!transactionJournal.awaitApplied(JOURNAL_APPLY_TIMEOUT)) {
+                log.warn("Journal was not applied within {}, recent payments may show up as drift", JOURNAL_APPLY_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the journal", e);
+        }
+    }
+
+    /**
+     * Settles and reconciles the cards with IDs in one range, or returns the checkpointed summary
+     * if an earlier run already did.
+     */
+    private ChunkSummary settleChunk(Window window, long chunk) throws IOException {
+        Path checkpoint = window.directory().resolve("chunk-" + chunk + ".json");
+        if (Files.exists(checkpoint)) {
+            window.resumed().increment();
+            return objectMapper.readValue(checkpoint.toFile(), ChunkSummary.class);
+        }
+        long fromId = chunk * cardsPerChunk;
+        long toId = fromId + cardsPerChunk - 1;
+        ChunkSummary summary = transactionTemplate.execute(status -> {
+            try (Stream<CardBalance> cards = cardRepository.streamBalances(fromId, toId);
+                 Stream<SettlementRow> rows = transactionRepository.streamForSettlement(fromId, toId, DEBITED);
+                 CsvFile cardsOut = new CsvFile(cardsFile(window, chunk));
+                 CsvFile driftOut = new CsvFile(driftFile(window, chunk))) {
+                return settle(window, cards.iterator(), rows.iterator(), cardsOut, driftOut);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writeAtomically(checkpoint, objectMapper.writeValueAsBytes(summary));
+        return summary;
+    }
+
+    /**
+     * Walks the cards and their transactions, both ordered by card ID, side by side.
+     */
+    private ChunkSummary settle(Window window, Iterator<CardBalance> cards, Iterator<SettlementRow> rows,
+                                CsvFile cardsOut, CsvFile driftOut) throws IOException {
+        Map<String, SettledTotals> bins = new HashMap<>();
+        long cardCount = 0;
+        long unreconciled = 0;
+        long drifting = 0;
+        SettlementRow row = rows.hasNext() ? rows.next() : null;
+        while (cards.hasNext()) {
+            CardBalance card = cards.next();
+            cardCount++;
+            long transactions = 0;
+            long grossCents = 0;
+            long refundedCents = 0;
+            long netDebitCents = 0;
+            while (row != null && row.getCardId() <= card.getId()) {
+                // Rows of a card that no longer exists are skipped
+                if (row.getCardId().equals(card.getId())) {
+                    long amountCents = BalanceLedger.toMinorUnits(row.getAmount());
+                    long rowRefundedCents = refundedCents(row.getStatus(), row.getAmount(), row.getRefundedAmount());
+                    netDebitCents += amountCents - rowRefundedCents;
+                    if (SETTLED.contains(row.getStatus()) && window.contains(row.getTimestamp())) {
+                        transactions++;
+                        grossCents += amountCents;
+                        refundedCents += rowRefundedCents;
+                    }
+                }
+                row = rows.hasNext() ? rows.next() : null;
+            }
+
+            String masked = AuditLog.mask(card.getCardNumber());
+            if (transactions > 0) {
+                String bin = card.getCardNumber().substring(0, Math.min(6, card.getCardNumber().length()));
+                cardsOut.line(card.getId() + "," + masked + "," + bin + "," + transactions + "," + amount(grossCents)
+                        + "," + amount(refundedCents) + "," + amount(grossCents - refundedCents));
+                bins.merge(bin, new SettledTotals(1, transactions, grossCents, refundedCents), SettledTotals::plus);
+            }
+
+            if (card.getOpeningBalance() == null) {
+                unreconciled++;
+                continue;
+            }
+            long expectedCents = BalanceLedger.toMinorUnits(card.getOpeningBalance()) - netDebitCents;
+            long balanceCents = BalanceLedger.toMinorUnits(card.getBalance());
+            if (balanceCents != expectedCents) {
+                drifting++;
+                driftOut.line(card.getId() + "," + masked + "," + amount(balanceCents) + "," + amount(expectedCents)
+                        + "," + amount(balanceCents - expectedCents));
+            }
+        }
+        return new ChunkSummary(cardCount, unreconciled, drifting, bins);
+    }
+
+    /**
+     * Returns how much of a transaction was refunded. Full refunds made before refunded amounts
+     * were tracked left it empty on {@code REFUNDED} transactions.
+     */
+    static long refundedCents(TransactionStatus status, BigDecimal amount, BigDecimal refundedAmount) {
+        if (refundedAmount != null) {
+            return BalanceLedger.toMinorUnits(refundedAmount);
+        }
+        return status == TransactionStatus.REFUNDED ? BalanceLedger.toMinorUnits(amount) : 0;
+    }
+
+    /**
+     * Returns how much a transaction took off its card for good, or {@code 0} if it never did.
+     */
+    public static long netDebitCents(TransactionStatus status, BigDecimal amount, BigDecimal refundedAmount) {
+        if (!DEBITED.contains(status)) {
+            return 0;
+        }
+        return BalanceLedger.toMinorUnits(amount) - refundedCents(status, amount, refundedAmount);
+    }
+
+    private static Path cardsFile(Window window, long chunk) {
+        return window.directory().resolve("cards-" + chunk + ".csv");
+    }
+
+    private static Path driftFile(Window window, long chunk) {
+        return window.directory().resolve("drift-" + chunk + ".csv");
+    }
+
+    private static String amount(long cents) {
+        return BalanceLedger.fromMinorUnits(cents).toPlainString();
+    }
+
+    private static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Channels.newOutputStream(channel).write(content);
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteChunkFiles(Path runDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(runDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("chunk-") || name.startsWith("cards-") || name.startsWith("drift-") || name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private record Window(LocalDateTime from, LocalDateTime to, Path directory, LongAdder resumed) {
+
+        Window(LocalDateTime from, LocalDateTime to, Path directory) {
+            this(from, to, directory, new LongAdder());
+        }
+
+        boolean contains(LocalDateTime timestamp) {
+            return !timestamp.isBefore(from) && timestamp.isBefore(to);
+        }
+    }
+
+    /**
+     * Splits a run of chunks in halves until single chunks remain, processing them in parallel and
+     * adding up their summaries.
+     */
+    private final class SettleChunks extends RecursiveTask<ChunkSummary> {
+
+        private final Window window;
+        private final long firstChunk;
+        private final long lastChunk;
+
+        SettleChunks(Window window, long firstChunk, long lastChunk) {
+            this.window = window;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+        }
+
+        @Override
+        protected ChunkSummary compute() {
+            if (firstChunk == lastChunk) {
+                try {
+                    return settleChunk(window, firstChunk);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            long middle = (firstChunk + lastChunk) >>> 1;
+            SettleChunks left = new SettleChunks(window, firstChunk, middle);
+            left.fork();
+            ChunkSummary right = new SettleChunks(window, middle + 1, lastChunk).compute();
+            return left.join().plus(right);
+        }
+    }
+
+    /**
+     * A text file written through a buffer and forced to disk when closed.
+     */
+    private static final class CsvFile implements Closeable {
+
+        private final FileChannel channel;
+        private final OutputStream out;
+        private final Writer writer;
+
+        CsvFile(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.out = Channels.newOutputStream(channel);
+            this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        void line(String line) throws IOException {
+            writer.write(line);
+            writer.write('\n');
+        }
+
+        /**
+         * Appends the contents of another file.
+         */
+        void append(Path path) throws IOException {
+            writer.flush();
+            Files.copy(path, out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writer.flush();
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.pay.cardpaysimulator.validation;
+
+/**
+ * Card networks accepted by the simulator, with their issuer prefixes and card number lengths.
+ */
+public enum CardNetwork {
+    VISA(13, 16),
+    MASTERCARD(16),
+    AMEX(15),
+    DISCOVER(16);
+
+    /** Accepted lengths as a bit set, bit {@code n} meaning length {@code n}. */
+    private final int lengths;
+
+    CardNetwork(int... lengths) {
+        int mask = 0;
+        for (int length : lengths) {
+            mask |= 1 << length;
+        }
+        this.lengths = mask;
+    }
+
+    public boolean acceptsLength(int length) {
+        return (lengths & (1 << length)) != 0;
+    }
+
+    /**
+     * Returns the network issuing numbers that start with the given four digits, or {@code null}.
+     */
+    static CardNetwork ofPrefix(int prefix) {
+        int twoDigits = prefix / 100;
+        if (prefix / 1000 == 4) {
+            return VISA;
+        }
+        if (twoDigits >= 51 && twoDigits <= 55) {
+            return MASTERCARD;
+        }
+        if (twoDigits == 34 || twoDigits == 37) {
+            return AMEX;
+        }
+        if (prefix == 6011 || twoDigits == 65) {
+            return DISCOVER;
+        }
+        return null;
+    }
+}
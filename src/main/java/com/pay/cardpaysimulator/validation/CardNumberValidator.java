@@ -0,0 +1,15 @@
+package com.pay.cardpaysimulator.validation;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+/**
+ * Validates {@link ValidCardNumber} with {@link CardNumbers#isValid}.
+ */
+public class CardNumberValidator implements ConstraintValidator<ValidCardNumber, CharSequence> {
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        return value == null || CardNumbers.isValid(value);
+    }
+}
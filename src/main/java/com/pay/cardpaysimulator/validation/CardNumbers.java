@@ -0,0 +1,112 @@
+package com.pay.cardpaysimulator.validation;
+
+/**
+ * Card number checks: Luhn (mod 10) check digits and network detection.
+ */
+public final class CardNumbers {
+
+    private static final int MIN_LENGTH = 13;
+    private static final int MAX_LENGTH = 19;
+    private static final int PREFIX_DIGITS = 4;
+
+    private CardNumbers() {
+    }
+
+    /**
+     * Returns the network of a valid card number, or {@code null} if the number is not one.
+     * <p>
+     * Digits, length, Luhn sum and issuer prefix are checked in a single pass over the characters
+     * without allocating, so it is much cheaper than matching the equivalent regular expressions.
+     */
+    public static CardNetwork network(CharSequence number) {
+        int length = number.length();
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return null;
+        }
+        int sum = 0;
+        int prefix = 0;
+        // Counting from the right, every second digit is doubled, so the first one is if the length is even
+        boolean doubled = (length & 1) == 0;
+        for (int i = 0; i < length; i++) {
+            int digit = number.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            if (i < PREFIX_DIGITS) {
+                prefix = prefix * 10 + digit;
+            }
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        if (sum % 10 != 0) {
+            return null;
+        }
+        CardNetwork network = CardNetwork.ofPrefix(prefix);
+        return network != null && network.acceptsLength(length) ? network : null;
+    }
+
+    /**
+     * Whether the number has a known network, a valid length for it and a valid check digit.
+     */
+    public static boolean isValid(CharSequence number) {
+        return network(number) != null;
+    }
+
+    /**
+     * Whether the value is a 3 or 4 digit card verification value.
+     */
+    public static boolean isValidCvv(CharSequence cvv) {
+        int length = cvv.length();
+        if (length < 3 || length > 4) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = cvv.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the check digit that makes the given digits, followed by it, pass the Luhn check.
+     */
+    public static int luhnCheckDigit(CharSequence payload) {
+        int sum = 0;
+        // Starting from the right, every other digit is doubled, beginning with the last payload digit
+        boolean doubled = true;
+        for (int i = payload.length() - 1; i >= 0; i--) {
+            int digit = payload.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    public static boolean isLuhnValid(CharSequence number) {
+        int length = number.length();
+        if (length < 2) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return luhnCheckDigit(number.subSequence(0, length - 1)) == number.charAt(length - 1) - '0';
+    }
+}
@@ -0,0 +1,15 @@
+package com.pay.cardpaysimulator.validation;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+/**
+ * Validates {@link ValidCvv} with {@link CardNumbers#isValidCvv}.
+ */
+public class CvvValidator implements ConstraintValidator<ValidCvv, CharSequence> {
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        return value == null || CardNumbers.isValidCvv(value);
+    }
+}
@@ -0,0 +1,27 @@
+package com.pay.cardpaysimulator.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotated string must be a 3 or 4 digit card verification value.
+ * {@code null} is valid; combine with {@code @NotBlank} to require a value.
+ */
+@Documented
+@Constraint(validatedBy = CvvValidator.class)
+@Target({ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER, ElementType.TYPE_USE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ValidCvv {
+
+    String message() default "CVV must be 3 or 4 digits";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
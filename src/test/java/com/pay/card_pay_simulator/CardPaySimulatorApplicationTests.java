@@ -1,9 +1,10 @@
 package com.pay.card_pay_simulator;
 
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(classes = CardPaySimulatorApplication.class)
 class CardPaySimulatorApplicationTests {
 
 	@Test
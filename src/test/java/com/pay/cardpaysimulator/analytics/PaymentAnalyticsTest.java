@@ -0,0 +1,38 @@
+package com.pay.cardpaysimulator.analytics;
+
+import com.pay.cardpaysimulator.dto.AnalyticsSnapshot;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentAnalyticsTest {
+
+    @Test
+    void onlyPaymentsOnResolvedCardsAreKeyedByCardAndBin() {
+        PaymentAnalytics analytics = new PaymentAnalytics(null, 60, false);
+        BigDecimal amount = new BigDecimal("10.00");
+
+        analytics.recordPayment("4111111111111111", amount, PaymentResponse.builder().status(TransactionStatus.APPROVED).build());
+        analytics.recordPayment("5500000000000004", amount, failed(ReasonCode.INSUFFICIENT_FUNDS, TransactionStatus.DECLINED));
+        analytics.recordPayment("4000000000000002", amount, failed(ReasonCode.CARD_NOT_FOUND, TransactionStatus.FAILED));
+        analytics.recordPayment("1234567890123", amount, failed(ReasonCode.INVALID_REQUEST, TransactionStatus.FAILED));
+        analytics.recordPayment("3400000000000009", amount, failed(ReasonCode.PROCESSING_ERROR, TransactionStatus.FAILED));
+
+        assertThat(analytics.card("4111111111111111")).isPresent();
+        assertThat(analytics.card("5500000000000004")).isPresent();
+        assertThat(analytics.card("4000000000000002")).isEmpty();
+        assertThat(analytics.card("1234567890123")).isEmpty();
+        assertThat(analytics.bin("123456")).isEmpty();
+        assertThat(analytics.card("3400000000000009")).isEmpty();
+        assertThat(analytics.global().getTotals().values().stream().mapToLong(AnalyticsSnapshot.StatusTotals::getCount).sum()).isEqualTo(5);
+    }
+
+    private static PaymentResponse failed(ReasonCode reasonCode, TransactionStatus status) {
+        return PaymentResponse.builder().status(status).reasonCode(reasonCode).build();
+    }
+}
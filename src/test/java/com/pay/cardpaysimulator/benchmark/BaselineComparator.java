@@ -0,0 +1,86 @@
+package com.pay.cardpaysimulator.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result file against a baseline result file and exits with a non-zero
+ * status when any benchmark regressed by more than the given percentage.
+ * <p>
+ * Usage: {@code BaselineComparator <result.json> <baseline.json> <thresholdPercent>}.
+ * Without a baseline file the regression check is skipped with a warning rather than passed, so
+ * the first run on a machine can produce one.
+ */
+public final class BaselineComparator {
+
+    private BaselineComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: BaselineComparator <result.json> <baseline.json> <thresholdPercent>");
+            System.exit(2);
+        }
+        Path result = Path.of(args[0]);
+        Path baseline = Path.of(args[1]);
+        double threshold = Double.parseDouble(args[2]);
+
+        if (!Files.exists(baseline)) {
+            System.err.printf("WARNING: no baseline at %s, regression check SKIPPED; copy %s there to start tracking regressions%n",
+                    baseline, result);
+            return;
+        }
+
+        Map<String, Score> current = read(result);
+        Map<String, Score> previous = read(baseline);
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = previous.get(entry.getKey());
+            Score now = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", now.value, "new");
+                continue;
+            }
+            // Positive change is always an improvement: more throughput or less time per operation
+            double change = now.higherIsBetter
+                    ? (now.value - before.value) / before.value * 100
+                    : (before.value - now.value) / before.value * 100;
+            boolean regressed = change < -threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n",
+                    entry.getKey(), before.value, now.value, change, regressed ? "  REGRESSION" : "");
+        }
+
+        if (regressions > 0) {
+            System.err.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(Path path) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(path.toFile())) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText())
+                    .append(" [").append(run.path("mode").asText()).append(", ")
+                    .append(run.path("threads").asInt()).append(" threads");
+            run.path("params").fields().forEachRemaining(param ->
+                    key.append(", ").append(param.getKey()).append('=').append(param.getValue().asText()));
+            key.append(']');
+            JsonNode metric = run.path("primaryMetric");
+            scores.put(key.toString(), new Score(metric.path("score").asDouble(), "thrpt".equals(run.path("mode").asText())));
+        }
+        return scores;
+    }
+
+    private record Score(double value, boolean higherIsBetter) {
+    }
+}
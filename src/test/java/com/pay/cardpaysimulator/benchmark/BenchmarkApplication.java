@@ -0,0 +1,44 @@
+package com.pay.cardpaysimulator.benchmark;
+
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Starts the application without a web server and with quiet logging for use in benchmarks.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(CardPaySimulatorApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.devtools.restart.enabled=false",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "logging.level.org.springframework=WARN",
+                        "logging.level.org.hibernate=WARN",
+                        "logging.level.com.pay=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    static Card createCard(ConfigurableApplicationContext context, String cardNumber, String cvv, BigDecimal balance) {
+        return context.getBean(CardRepository.class).save(Card.builder()
+                .cardNumber(cardNumber)
+                .cardholderName("Benchmark")
+                .expirationDate(LocalDate.now().plusYears(5))
+                .cvv(cvv)
+                .balance(balance)
+                .build());
+    }
+}
@@ -0,0 +1,87 @@
+package com.pay.cardpaysimulator.benchmark;
+
+import com.pay.cardpaysimulator.cluster.LocalCluster;
+import com.pay.cardpaysimulator.cluster.SlotTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures payment throughput of a local cluster of {@code nodes} nodes, each in its own JVM.
+ * <p>
+ * With {@code owner} routing the client sends every payment straight to the node owning the card,
+ * so adding nodes adds authorization capacity; with {@code any} routing payments are spread over
+ * all nodes regardless of the card, and most of them pay for an extra forwarding hop. All nodes
+ * write to one shared database served by node 0, so throughput stops scaling once it saturates,
+ * well before the nodes themselves do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class ClusterScalingBenchmark {
+
+    private static final int CARDS = 4096;
+
+    @Param({"1", "2", "4"})
+    private int nodes;
+
+    @Param({"owner", "any"})
+    private String routing;
+
+    private LocalCluster cluster;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private List<String> cardNumbers;
+    private HttpRequest[] requests;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        cluster = LocalCluster.start(nodes, "logging.level.com.pay=WARN");
+        cardNumbers = LocalCluster.cardNumbers(CARDS);
+        cluster.importCards(cardNumbers, "1000000000.00");
+
+        clientExecutor = Executors.newFixedThreadPool(16);
+        client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        requests = new HttpRequest[CARDS];
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = cardNumbers.get(i);
+            // Slots start out spread round-robin over the nodes
+            int node = "owner".equals(routing) ? SlotTable.slotOf(cardNumber, 1024) % nodes : i % nodes;
+            requests[i] = HttpRequest.newBuilder(URI.create(cluster.url(node) + "/api/payments/process"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"cardNumber\":\"" + cardNumber + "\",\"cvv\":\"123\",\"amount\":1.00}"))
+                    .build();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cluster.close();
+        clientExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int payment() throws IOException, InterruptedException {
+        HttpRequest request = requests[(int) (sequence.getAndIncrement() % CARDS)];
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
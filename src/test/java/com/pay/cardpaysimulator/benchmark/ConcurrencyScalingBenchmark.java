@@ -0,0 +1,111 @@
+package com.pay.cardpaysimulator.benchmark;
+
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a wave of {@code concurrency} simultaneous HTTP payments takes when the issuer
+ * scenario adds {@code latencyMs} to every authorization, with and without virtual threads.
+ * <p>
+ * With platform threads, waves larger than the Tomcat pool (200 threads) queue and take a multiple
+ * of the injected latency; with virtual threads a wave should take close to the latency itself.
+ * Whether the {@code virtual} profile takes effect depends on the JVM running the benchmark, not on
+ * the compile target: on a runtime older than Java 21 the {@code virtualThreads=true} cases fail
+ * their setup with a message saying they were skipped, and JMH moves on to the next case.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrencyScalingBenchmark {
+
+    private static final String CARD_NUMBER = "4242424242424242";
+
+    @Param({"50", "200", "800"})
+    private int concurrency;
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    @Param({"50"})
+    private long latencyMs;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private HttpRequest request;
+    private Path rulesFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Skipped: virtual threads need Java 21 or later, running on " + Runtime.version());
+        }
+        rulesFile = Files.createTempFile("scenarios", ".json");
+        Files.writeString(rulesFile, "{\"rules\":[{\"prefix\":\"4242\",\"latencyMs\":" + latencyMs + "}]}");
+
+        SpringApplicationBuilder application = new SpringApplicationBuilder(CardPaySimulatorApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=200",
+                        "spring.devtools.restart.enabled=false",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "logging.level.org.springframework=WARN",
+                        "logging.level.org.hibernate=WARN",
+                        "logging.level.com.pay=WARN",
+                        "simulator.scenarios.location=file:" + rulesFile.toAbsolutePath());
+        if (virtualThreads) {
+            application.profiles("virtual");
+        }
+        context = application.run();
+        BenchmarkApplication.createCard(context, CARD_NUMBER, "123", new BigDecimal("1000000000.00"));
+
+        int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        clientExecutor = Executors.newFixedThreadPool(16);
+        client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payments/process"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"cardNumber\":\"" + CARD_NUMBER + "\",\"cvv\":\"123\",\"amount\":1.00}"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        clientExecutor.shutdownNow();
+        Files.deleteIfExists(rulesFile);
+    }
+
+    @Benchmark
+    public int wave() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(responses).join();
+        return responses.length;
+    }
+}
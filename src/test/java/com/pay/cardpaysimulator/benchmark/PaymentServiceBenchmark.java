@@ -0,0 +1,81 @@
+package com.pay.cardpaysimulator.benchmark;
+
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.service.PaymentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the authorization and refund paths of {@link PaymentService} against the embedded database.
+ * The contended benchmarks hammer a single card from several threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private PaymentRequest payment;
+    private PaymentRequest declinedPayment;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // The declined payments would otherwise lock the card after a few CVV failures
+        context = BenchmarkApplication.start("simulator.velocity.max-cvv-failures=0");
+        paymentService = context.getBean(PaymentService.class);
+        BenchmarkApplication.createCard(context, "4242424242424242", "123", new BigDecimal("1000000000.00"));
+        payment = PaymentRequest.builder()
+                .cardNumber("4242424242424242")
+                .cvv("123")
+                .amount(new BigDecimal("1.00"))
+                .description("Benchmark payment")
+                .build();
+        declinedPayment = PaymentRequest.builder()
+                .cardNumber("4242424242424242")
+                .cvv("999")
+                .amount(new BigDecimal("1.00"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PaymentResponse authorize() {
+        return paymentService.processPayment(payment);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public PaymentResponse authorizeContended() {
+        return paymentService.processPayment(payment);
+    }
+
+    @Benchmark
+    public PaymentResponse decline() {
+        return paymentService.processPayment(declinedPayment);
+    }
+
+    @Benchmark
+    public PaymentResponse authorizeAndRefund() {
+        PaymentResponse response = paymentService.processPayment(payment);
+        return paymentService.processRefund(response.getTransactionId());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public PaymentResponse authorizeAndRefundContended() {
+        PaymentResponse response = paymentService.processPayment(payment);
+        return paymentService.processRefund(response.getTransactionId());
+    }
+}
@@ -0,0 +1,110 @@
+package com.pay.cardpaysimulator.benchmark;
+
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
+import com.pay.cardpaysimulator.reactive.ReactivePaymentServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the servlet and the reactive payment API under the same load: a wave of
+ * {@code concurrency} simultaneous HTTP payments, each with {@code latencyMs} of simulated issuer
+ * latency. Both stacks run in one application with the {@code reactive} profile, so they share
+ * the database, the ledger and the card, and only the request path differs.
+ * <p>
+ * The servlet stack holds a Tomcat thread per in-flight payment, so waves larger than its pool
+ * queue; the reactive stack waits for the latency on a timer and should keep wave time close to
+ * the latency itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReactiveStackBenchmark {
+
+    private static final String CARD_NUMBER = "4242424242424242";
+
+    @Param({"200", "800", "2000"})
+    private int concurrency;
+
+    @Param({"servlet", "reactive"})
+    private String stack;
+
+    @Param({"50"})
+    private long latencyMs;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private HttpRequest request;
+    private Path rulesFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        rulesFile = Files.createTempFile("scenarios", ".json");
+        Files.writeString(rulesFile, "{\"rules\":[{\"prefix\":\"4242\",\"latencyMs\":" + latencyMs + "}]}");
+
+        context = new SpringApplicationBuilder(CardPaySimulatorApplication.class)
+                .profiles("reactive")
+                .properties(
+                        "server.port=0",
+                        "simulator.reactive.port=0",
+                        "server.tomcat.threads.max=200",
+                        "spring.devtools.restart.enabled=false",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "logging.level.org.springframework=WARN",
+                        "logging.level.org.hibernate=WARN",
+                        "logging.level.com.pay=WARN",
+                        "simulator.scenarios.location=file:" + rulesFile.toAbsolutePath())
+                .run();
+        BenchmarkApplication.createCard(context, CARD_NUMBER, "123", new BigDecimal("1000000000.00"));
+
+        int port = "reactive".equals(stack)
+                ? context.getBean(ReactivePaymentServer.class).getPort()
+                : Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        clientExecutor = Executors.newFixedThreadPool(16);
+        client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payments/process"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"cardNumber\":\"" + CARD_NUMBER + "\",\"cvv\":\"123\",\"amount\":1.00}"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        clientExecutor.shutdownNow();
+        Files.deleteIfExists(rulesFile);
+    }
+
+    @Benchmark
+    public int wave() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(responses).join();
+        return responses.length;
+    }
+}
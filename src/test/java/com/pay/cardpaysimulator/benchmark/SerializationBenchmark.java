@@ -0,0 +1,93 @@
+package com.pay.cardpaysimulator.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.dto.TransactionPage;
+import com.pay.cardpaysimulator.dto.TransactionView;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JSON (de)serialization of the payment DTOs with an object mapper configured like Spring MVC's,
+ * including the Blackbird module registered by {@code JacksonConfig}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private byte[] requestJson;
+    private PaymentRequest request;
+    private PaymentResponse response;
+    private byte[] responseJson;
+    private TransactionPage page;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(new BlackbirdModule()).build();
+        request = PaymentRequest.builder()
+                .cardNumber("4242424242424242")
+                .cvv("123")
+                .amount(new BigDecimal("100.00"))
+                .description("Payment for services")
+                .build();
+        response = PaymentResponse.builder()
+                .status(TransactionStatus.APPROVED)
+                .message("Payment processed successfully")
+                .transactionId(42L)
+                .timestamp(LocalDateTime.now())
+                .build();
+        List<TransactionView> items = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            items.add(new TransactionView(id, 1L, "4242424242424242", "John Doe", new BigDecimal("100.00"), null,
+                    TransactionStatus.APPROVED, null, LocalDateTime.now(), "Payment for services", null));
+        }
+        page = TransactionPage.builder()
+                .items(items)
+                .hasMore(true)
+                .nextAfterTimestamp(items.get(items.size() - 1).timestamp())
+                .nextAfterId(100L)
+                .build();
+        requestJson = objectMapper.writeValueAsBytes(request);
+        responseJson = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public PaymentRequest readRequest() throws IOException {
+        return objectMapper.readValue(requestJson, PaymentRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeRequest() throws IOException {
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public PaymentResponse readResponse() throws IOException {
+        return objectMapper.readValue(responseJson, PaymentResponse.class);
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] writeTransactionPage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,145 @@
+package com.pay.cardpaysimulator.benchmark;
+
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.validation.CardNetwork;
+import com.pay.cardpaysimulator.validation.CardNumbers;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Jakarta bean validation of {@link PaymentRequest} and {@link Card} with the single-pass
+ * card number and CVV constraints, against the regex constraints they replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private PaymentRequest validRequest;
+    private PaymentRequest invalidRequest;
+    private Card card;
+    private RegexPaymentRequest regexRequest;
+    private RegexCard regexCard;
+    private java.util.regex.Pattern cardNumberPattern;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validRequest = PaymentRequest.builder()
+                .cardNumber("4242424242424242")
+                .cvv("123")
+                .amount(new BigDecimal("100.00"))
+                .build();
+        invalidRequest = PaymentRequest.builder()
+                .cardNumber("4242-4242-4242")
+                .cvv("12a")
+                .amount(new BigDecimal("100.00"))
+                .build();
+        card = Card.builder()
+                .cardNumber("378282246310005")
+                .cardholderName("Bob Johnson")
+                .expirationDate(LocalDate.now().plusYears(1))
+                .cvv("789")
+                .balance(new BigDecimal("2000.00"))
+                .build();
+        regexRequest = new RegexPaymentRequest("4242424242424242", "123");
+        regexCard = new RegexCard("378282246310005", "789");
+        cardNumberPattern = java.util.regex.Pattern.compile(RegexCard.CARD_NUMBER_REGEX);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PaymentRequest>> validRequest() {
+        return validator.validate(validRequest);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PaymentRequest>> invalidRequest() {
+        return validator.validate(invalidRequest);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Card>> card() {
+        return validator.validate(card);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<RegexPaymentRequest>> regexRequest() {
+        return validator.validate(regexRequest);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<RegexCard>> regexCard() {
+        return validator.validate(regexCard);
+    }
+
+    @Benchmark
+    public CardNetwork cardNumber() {
+        return CardNumbers.network(card.getCardNumber());
+    }
+
+    @Benchmark
+    public boolean regexCardNumber() {
+        return cardNumberPattern.matcher(card.getCardNumber()).matches();
+    }
+
+    /**
+     * Card number and CVV constraints of {@link PaymentRequest} before the single-pass validators.
+     */
+    public static class RegexPaymentRequest {
+        @NotBlank
+        @Pattern(regexp = "^[0-9]{16}$", message = "Card number must be 16 digits")
+        private final String cardNumber;
+
+        @NotBlank
+        @Pattern(regexp = "^[0-9]{3,4}$", message = "CVV must be 3 or 4 digits")
+        private final String cvv;
+
+        RegexPaymentRequest(String cardNumber, String cvv) {
+            this.cardNumber = cardNumber;
+            this.cvv = cvv;
+        }
+    }
+
+    /**
+     * Card number and CVV constraints of {@link Card} before the single-pass validators.
+     */
+    public static class RegexCard {
+        static final String CARD_NUMBER_REGEX =
+                "^(?:4[0-9]{12}(?:[0-9]{3})?|5[1-5][0-9]{14}|3[47][0-9]{13}|6(?:011|5[0-9]{2})[0-9]{12})$";
+
+        @NotBlank
+        @Pattern(regexp = CARD_NUMBER_REGEX, message = "Invalid card number format")
+        private final String cardNumber;
+
+        @NotBlank
+        @Pattern(regexp = "^[0-9]{3,4}$", message = "CVV must be 3 or 4 digits")
+        private final String cvv;
+
+        RegexCard(String cardNumber, String cvv) {
+            this.cardNumber = cardNumber;
+            this.cvv = cvv;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.pay.cardpaysimulator.benchmark;
+
+import com.pay.cardpaysimulator.fraud.VelocityTable;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the velocity checks made on every authorization, over a million tracked cards, from one
+ * thread and from eight threads on random cards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VelocityBenchmark {
+
+    private static final int CARDS = 1_000_000;
+
+    private VelocityTable table;
+
+    @Setup
+    public void setUp() {
+        table = new VelocityTable(new VelocityTable.Limits(
+                Integer.MAX_VALUE, 60_000, Long.MAX_VALUE / 2, 3_600_000, 3, 600_000, 1_800_000), 64);
+        long now = System.currentTimeMillis();
+        for (long cardId = 1; cardId <= CARDS; cardId++) {
+            table.tryRecord(cardId, 100, now);
+        }
+    }
+
+    @Benchmark
+    public ReasonCode tryRecord() {
+        return table.tryRecord(randomCard(), 100, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ReasonCode tryRecordContended() {
+        return table.tryRecord(randomCard(), 100, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public boolean isLocked() {
+        return table.isLocked(randomCard(), System.currentTimeMillis());
+    }
+
+    private static long randomCard() {
+        return ThreadLocalRandom.current().nextLong(1, CARDS + 1);
+    }
+}
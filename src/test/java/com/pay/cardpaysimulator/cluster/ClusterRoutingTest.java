@@ -0,0 +1,75 @@
+package com.pay.cardpaysimulator.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts two nodes, sends every payment to the node that owns half of the cards, then moves all
+ * slots to one node and checks that no balance change was lost in the handover.
+ */
+class ClusterRoutingTest {
+
+    private static final int CARDS = 32;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static LocalCluster cluster;
+
+    @BeforeAll
+    static void startCluster() throws Exception {
+        cluster = LocalCluster.start(2);
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    @Test
+    void paymentsAreRoutedToOwnersAndSurviveRebalance() throws Exception {
+        List<String> cardNumbers = LocalCluster.cardNumbers(CARDS);
+        cluster.importCards(cardNumbers, "100.00");
+
+        long refundedId = -1;
+        for (String cardNumber : cardNumbers) {
+            JsonNode response = pay(1, cardNumber, "10.00");
+            assertThat(response.get("status").asText()).isEqualTo("APPROVED");
+            if (refundedId < 0 && SlotTable.slotOf(cardNumber, 1024) % 2 == 0) {
+                refundedId = response.get("transactionId").asLong();
+            }
+        }
+        // Card owned by node 0, refunded through node 1
+        JsonNode refund = MAPPER.readTree(cluster.post(1, "/api/payments/refund/" + refundedId, "application/json", "").body());
+        assertThat(refund.get("status").asText()).isEqualTo("REFUNDED");
+
+        JsonNode state = MAPPER.readTree(cluster.post(1, "/api/cluster/rebalance", "application/json", "{\"activeNodes\":[0]}").body());
+        assertThat(state.get("epoch").asLong()).isEqualTo(1);
+        state.get("owners").forEach(owner -> assertThat(owner.asInt()).isZero());
+        assertThat(MAPPER.readTree(cluster.get(0, "/api/cluster").body()).get("epoch").asLong()).isEqualTo(1);
+
+        for (String cardNumber : cardNumbers) {
+            assertThat(pay(1, cardNumber, "5.00").get("status").asText()).isEqualTo("APPROVED");
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (String cardNumber : cardNumbers) {
+            total = total.add(MAPPER.readTree(cluster.get(0, "/api/cards/" + cardNumber).body()).get("balance").decimalValue());
+        }
+        // 100.00 - 10.00 - 5.00 per card, plus the refund
+        assertThat(total).isEqualByComparingTo(new BigDecimal(85 * CARDS + 10));
+    }
+
+    private static JsonNode pay(int node, String cardNumber, String amount) throws Exception {
+        String body = "{\"cardNumber\":\"" + cardNumber + "\",\"cvv\":\"123\",\"amount\":" + amount + "}";
+        return MAPPER.readTree(cluster.post(node, "/api/payments/process", "application/json", body).body());
+    }
+}
@@ -0,0 +1,184 @@
+package com.pay.cardpaysimulator.cluster;
+
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
+import com.pay.cardpaysimulator.validation.CardNumbers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a cluster of simulator nodes on localhost, each in its own JVM started from the current
+ * class path, sharing a file database in a temporary directory. Node logs are written next to the
+ * database, so they survive a failed test.
+ */
+public final class LocalCluster implements AutoCloseable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+
+    private final Path directory;
+    private final List<String> urls = new ArrayList<>();
+    private final List<Process> processes = new ArrayList<>();
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    private LocalCluster(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Starts the nodes one after another, node 0 first so it creates the schema, and returns once
+     * all of them serve requests.
+     */
+    public static LocalCluster start(int nodes, String... properties) throws IOException, InterruptedException {
+        LocalCluster cluster = new LocalCluster(Files.createTempDirectory("cluster"));
+        int[] ports = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            ports[i] = freePort();
+            cluster.urls.add("http://localhost:" + ports[i]);
+        }
+        try {
+            for (int i = 0; i < nodes; i++) {
+                cluster.launch(i, ports[i], properties);
+                cluster.awaitReady(i);
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            cluster.close();
+            throw e;
+        }
+        return cluster;
+    }
+
+    public String url(int node) {
+        return urls.get(node);
+    }
+
+    public int size() {
+        return urls.size();
+    }
+
+    /**
+     * Imports cards with the given numbers and balance through node 0 and reloads balances on all nodes.
+     */
+    public void importCards(List<String> cardNumbers, String balance) {
+        String csv = cardNumbers.stream()
+                .map(number -> number + ",Cluster Test,2099-12-31,123," + balance)
+                .collect(Collectors.joining("\n", "cardNumber,cardholderName,expirationDate,cvv,balance\n", "\n"));
+        post(0, "/api/cards/bulk/import", "text/csv", csv);
+        post(0, "/api/cluster/refresh", "application/json", "");
+    }
+
+    public HttpResponse<String> post(int node, String path, String contentType, String body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url(node) + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = send(request);
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("POST " + path + " on node " + node + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return response;
+    }
+
+    public HttpResponse<String> get(int node, String path) {
+        return send(HttpRequest.newBuilder(URI.create(url(node) + path)).timeout(Duration.ofSeconds(30)).GET().build());
+    }
+
+    /**
+     * Returns {@code count} valid Visa numbers that the scenario rules leave alone.
+     */
+    public static List<String> cardNumbers(int count) {
+        List<String> numbers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String payload = String.format("491600%09d", i);
+            numbers.add(payload + CardNumbers.luhnCheckDigit(payload));
+        }
+        return numbers;
+    }
+
+    @Override
+    public void close() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void launch(int node, int port, String... properties) throws IOException {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                CardPaySimulatorApplication.class.getName(),
+                "--spring.profiles.active=cluster",
+                "--server.port=" + port,
+                "--simulator.cluster.node-id=" + node,
+                "--simulator.cluster.nodes=" + String.join(",", urls),
+                "--spring.datasource.url=jdbc:h2:file:" + directory.resolve("clusterdb").toAbsolutePath() + ";AUTO_SERVER=TRUE",
+                "--spring.devtools.restart.enabled=false",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"));
+        for (String property : properties) {
+            command.add("--" + property);
+        }
+        Path log = directory.resolve("node-" + node + ".log");
+        processes.add(new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start());
+    }
+
+    private void awaitReady(int node) throws InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!processes.get(node).isAlive()) {
+                throw new IllegalStateException("Node " + node + " exited, see " + directory.resolve("node-" + node + ".log"));
+            }
+            try {
+                if (get(node, "/api/cluster").statusCode() == 200) {
+                    return;
+                }
+            } catch (UncheckedIOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Node " + node + " did not start within " + STARTUP_TIMEOUT);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.pay.cardpaysimulator.fraud;
+
+import com.pay.cardpaysimulator.model.ReasonCode;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VelocityTableTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Test
+    void paymentsBeyondTheLimitAreDeclinedUntilTheWindowSlidesPast() {
+        VelocityTable table = new VelocityTable(new VelocityTable.Limits(3, MINUTE, 0, HOUR, 0, MINUTE, 0), 4);
+        long start = 10 * MINUTE;
+        for (int i = 0; i < 3; i++) {
+            assertThat(table.tryRecord(1, 100, start)).isNull();
+        }
+
+        assertThat(table.tryRecord(1, 100, start + 1_000)).isEqualTo(ReasonCode.VELOCITY_LIMIT_EXCEEDED);
+        assertThat(table.tryRecord(2, 100, start + 1_000)).isNull();
+        // Halfway into the next window, half of the previous window's payments still count
+        long halfway = start + MINUTE + MINUTE / 2;
+        assertThat(table.tryRecord(1, 100, halfway)).isNull();
+        assertThat(table.tryRecord(1, 100, halfway)).isNull();
+        assertThat(table.tryRecord(1, 100, halfway)).isEqualTo(ReasonCode.VELOCITY_LIMIT_EXCEEDED);
+        assertThat(table.tryRecord(1, 100, start + 3 * MINUTE)).isNull();
+    }
+
+    @Test
+    void amountsAddUpOverTheWindow() {
+        VelocityTable table = new VelocityTable(new VelocityTable.Limits(0, MINUTE, 10_000, HOUR, 0, MINUTE, 0), 4);
+        long start = 5 * HOUR;
+
+        assertThat(table.tryRecord(7, 6_000, start)).isNull();
+        assertThat(table.tryRecord(7, 5_000, start + MINUTE)).isEqualTo(ReasonCode.AMOUNT_LIMIT_EXCEEDED);
+        assertThat(table.tryRecord(7, 4_000, start + MINUTE)).isNull();
+        assertThat(table.tryRecord(7, 1, start + 2 * MINUTE)).isEqualTo(ReasonCode.AMOUNT_LIMIT_EXCEEDED);
+    }
+
+    @Test
+    void repeatedCvvFailuresLockTheCard() {
+        VelocityTable table = new VelocityTable(new VelocityTable.Limits(0, MINUTE, 0, HOUR, 3, 10 * MINUTE, 30 * MINUTE), 4);
+        long start = HOUR;
+
+        assertThat(table.recordCvvFailure(3, start)).isFalse();
+        assertThat(table.recordCvvFailure(3, start + 1_000)).isFalse();
+        assertThat(table.recordCvvFailure(3, start + 2_000)).isTrue();
+
+        assertThat(table.isLocked(3, start + 29 * MINUTE)).isTrue();
+        assertThat(table.tryRecord(3, 100, start + 29 * MINUTE)).isEqualTo(ReasonCode.CARD_LOCKED);
+        assertThat(table.isLocked(3, start + 31 * MINUTE)).isFalse();
+        // Failures were cleared by the lock
+        assertThat(table.recordCvvFailure(3, start + 31 * MINUTE)).isFalse();
+    }
+
+    @Test
+    void unlockLiftsTheLock() {
+        VelocityTable table = new VelocityTable(new VelocityTable.Limits(0, MINUTE, 0, HOUR, 1, MINUTE, HOUR), 4);
+        table.recordCvvFailure(4, 0);
+
+        assertThat(table.unlock(4, 1_000)).isTrue();
+        assertThat(table.isLocked(4, 1_000)).isFalse();
+        assertThat(table.unlock(4, 1_000)).isFalse();
+    }
+
+    @Test
+    void idleCardsAreEvictedAndLockedCardsKept() {
+        VelocityTable table = new VelocityTable(new VelocityTable.Limits(10, MINUTE, 0, MINUTE, 1, MINUTE, 10 * HOUR), 2);
+        for (long cardId = 1; cardId <= 1_000; cardId++) {
+            table.tryRecord(cardId, 100, 0);
+        }
+        table.recordCvvFailure(1_001, 0);
+        assertThat(table.size()).isEqualTo(1_001);
+
+        assertThat(table.evict(MINUTE)).isZero();
+        assertThat(table.evict(3 * MINUTE)).isEqualTo(1_000);
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.isLocked(1_001, 3 * MINUTE)).isTrue();
+        assertThat(table.tryRecord(500, 100, 3 * MINUTE)).isNull();
+    }
+}
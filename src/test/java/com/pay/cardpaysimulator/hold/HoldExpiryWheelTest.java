@@ -0,0 +1,64 @@
+package com.pay.cardpaysimulator.hold;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HoldExpiryWheelTest {
+
+    private static final long TICK = 1000;
+
+    @Test
+    void holdsExpireOnceTheirTickHasEnded() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(TICK, 8, 0);
+        Hold soon = hold(1, 2_500);
+        Hold later = hold(2, 5_000);
+        wheel.schedule(soon);
+        wheel.schedule(later);
+
+        assertThat(wheel.advance(2_999)).isEmpty();
+        assertThat(wheel.advance(3_000)).containsExactly(soon);
+        assertThat(wheel.advance(5_999)).isEmpty();
+        assertThat(wheel.advance(6_000)).containsExactly(later);
+    }
+
+    @Test
+    void holdsInLaterRevolutionsStayInTheirBucket() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(TICK, 8, 0);
+        // Same bucket as tick 1, two revolutions later
+        Hold distant = hold(1, 17_000);
+        wheel.schedule(distant);
+
+        assertThat(wheel.advance(2_000)).isEmpty();
+        assertThat(wheel.advance(10_000)).isEmpty();
+        assertThat(wheel.advance(18_000)).containsExactly(distant);
+    }
+
+    @Test
+    void overdueHoldsExpireOnTheNextAdvance() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(TICK, 8, 0);
+        wheel.advance(10_000);
+        Hold overdue = hold(1, 4_000);
+        wheel.schedule(overdue);
+
+        List<Hold> expired = wheel.advance(10_001);
+        assertThat(expired).contains(overdue);
+    }
+
+    @Test
+    void aLongPauseVisitsEveryBucketOnce() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(TICK, 8, 0);
+        for (int i = 0; i < 8; i++) {
+            wheel.schedule(hold(i, i * TICK + 500));
+        }
+
+        assertThat(wheel.advance(100_000)).hasSize(8);
+        assertThat(wheel.advance(200_000)).isEmpty();
+    }
+
+    private static Hold hold(long transactionId, long expiresAtMillis) {
+        return new Hold(transactionId, 1, "4111111111111111", 100, expiresAtMillis);
+    }
+}
@@ -0,0 +1,136 @@
+package com.pay.cardpaysimulator.idempotency;
+
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.idempotency.IdempotencyException.Reason;
+import com.pay.cardpaysimulator.model.ReasonCode;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.repository.IdempotencyRecordRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(classes = CardPaySimulatorApplication.class)
+class IdempotencyStoreTest {
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void completedRequestsAreReplayed() {
+        IdempotencyStore store = store(Duration.ofHours(1), 1000);
+        AtomicInteger runs = new AtomicInteger();
+
+        IdempotencyStore.Result first = store.execute("replay-1", 42, () -> approved(runs, 7L));
+        IdempotencyStore.Result second = store.execute("replay-1", 42, () -> approved(runs, 8L));
+
+        assertThat(runs).hasValue(1);
+        assertThat(first.replayed()).isFalse();
+        assertThat(second.replayed()).isTrue();
+        assertThat(second.response().getStatus()).isEqualTo(TransactionStatus.APPROVED);
+        assertThat(second.response().getTransactionId()).isEqualTo(7L);
+        assertThat(second.response().getMessage()).isEqualTo("Payment approved");
+        assertThatThrownBy(() -> store.execute("replay-1", 43, () -> approved(runs, 9L)))
+                .isInstanceOfSatisfying(IdempotencyException.class, e -> assertThat(e.getReason()).isEqualTo(Reason.KEY_REUSED));
+    }
+
+    @Test
+    void failedRequestsLeaveTombstonesThatAreReused() {
+        IdempotencyStore store = store(Duration.ofHours(1), 100);
+        AtomicInteger runs = new AtomicInteger();
+
+        // Far more keys than the store may hold, so tombstones must be reused or dropped
+        for (int i = 0; i < 10_000; i++) {
+            store.execute("tombstone-" + i, i, () -> processingError(runs));
+        }
+        assertThatThrownBy(() -> store.execute("tombstone-0", 0, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("issuer down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(runs).hasValue(10_001);
+        assertThat(store.execute("tombstone-0", 0, () -> approved(runs, 1L)).replayed()).isFalse();
+        assertThat(store.execute("tombstone-0", 0, () -> approved(runs, 2L)).replayed()).isTrue();
+        store.purgeExpired();
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredKeysRunAgainAndArePurged() {
+        IdempotencyStore store = store(Duration.ZERO, 1000);
+        AtomicInteger runs = new AtomicInteger();
+
+        store.execute("expiry-1", 1, () -> approved(runs, 1L));
+        IdempotencyStore.Result again = store.execute("expiry-1", 1, () -> approved(runs, 2L));
+
+        assertThat(again.replayed()).isFalse();
+        assertThat(again.response().getTransactionId()).isEqualTo(2L);
+        assertThat(runs).hasValue(2);
+        store.purgeExpired();
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void tablesGrowUpToTheKeyLimit() {
+        IdempotencyStore store = store(Duration.ofHours(1), 200);
+        AtomicInteger runs = new AtomicInteger();
+        int stored = 0;
+        // Segments are kept at most half full, so the store holds at least max-keys but not without bound
+        while (stored < 2_000) {
+            long transactionId = stored + 1;
+            try {
+                store.execute("grow-" + stored, stored, () -> approved(runs, transactionId));
+            } catch (IdempotencyException e) {
+                assertThat(e.getReason()).isEqualTo(Reason.STORE_FULL);
+                break;
+            }
+            stored++;
+        }
+
+        assertThat(stored).isBetween(200, 1_999);
+        assertThat(store.size()).isEqualTo(stored);
+        // Every key survived the rehashes into larger tables
+        for (int i = 0; i < stored; i++) {
+            IdempotencyStore.Result result = store.execute("grow-" + i, i, () -> approved(runs, 0L));
+            assertThat(result.replayed()).isTrue();
+            assertThat(result.response().getTransactionId()).isEqualTo(i + 1L);
+        }
+        assertThat(runs).hasValue(stored);
+    }
+
+    private IdempotencyStore store(Duration window, int maxKeys) {
+        return new IdempotencyStore(recordRepository, entityManager, transactionManager, window, maxKeys, 1);
+    }
+
+    private static PaymentResponse approved(AtomicInteger runs, Long transactionId) {
+        runs.incrementAndGet();
+        return PaymentResponse.builder()
+                .status(TransactionStatus.APPROVED)
+                .message("Payment approved")
+                .transactionId(transactionId)
+                .build();
+    }
+
+    private static PaymentResponse processingError(AtomicInteger runs) {
+        runs.incrementAndGet();
+        return PaymentResponse.builder()
+                .status(TransactionStatus.FAILED)
+                .message("Payment processing failed")
+                .reasonCode(ReasonCode.PROCESSING_ERROR)
+                .build();
+    }
+}
@@ -0,0 +1,205 @@
+package com.pay.cardpaysimulator.journal;
+
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.model.JournalCheckpoint;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import com.pay.cardpaysimulator.validation.CardNumbers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Writes journal segments the way a crashed instance would have left them and checks what a new
+ * journal replays on startup.
+ */
+@SpringBootTest(classes = CardPaySimulatorApplication.class)
+class TransactionJournalRecoveryTest {
+
+    private static final long INITIAL_BALANCE_CENTS = 100_000;
+    // Far above the IDs handed out from transaction_seq in the same database
+    private static final AtomicLong RECORD_IDS = new AtomicLong(9_000_000_000L);
+    private static final AtomicLong CARD_NUMBERS = new AtomicLong(400_000_000);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @TempDir
+    Path directory;
+
+    private long cardId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from journal_checkpoint");
+        String payload = "4242" + String.format("%011d", CARD_NUMBERS.incrementAndGet());
+        cardId = cardRepository.save(Card.builder()
+                .cardNumber(payload + CardNumbers.luhnCheckDigit(payload))
+                .cardholderName("Journal Test")
+                .expirationDate(LocalDate.now().plusYears(2))
+                .cvv("123")
+                .balance(BalanceLedger.fromMinorUnits(INITIAL_BALANCE_CENTS))
+                .build()).getId();
+    }
+
+    @Test
+    void replayStartsAtAMidSegmentCheckpoint() throws Exception {
+        JournalRecord[] records = records(5, 100);
+        int[] ends = writeSegment(1, records);
+        checkpoint(1, ends[2]);
+
+        restart();
+
+        assertThat(appliedIds()).containsExactly(records[3].id(), records[4].id());
+        assertThat(balanceCents()).isEqualTo(INITIAL_BALANCE_CENTS - 200);
+        assertThat(segmentFiles()).doesNotContain(segmentName(1));
+    }
+
+    @Test
+    void replayStopsAtATornRecord() throws Exception {
+        JournalRecord[] records = records(4, 100);
+        int[] ends = writeSegment(1, records);
+        // Corrupt the amount of the third record, as if the crash hit while it was being written
+        Path segment = directory.resolve(segmentName(1));
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[ends[1] + Integer.BYTES + 2 * Long.BYTES] ^= 0x01;
+        Files.write(segment, bytes);
+
+        restart();
+
+        assertThat(appliedIds()).containsExactly(records[0].id(), records[1].id());
+        assertThat(balanceCents()).isEqualTo(INITIAL_BALANCE_CENTS - 200);
+    }
+
+    @Test
+    void replayContinuesIntoLaterSegments() throws Exception {
+        JournalRecord[] first = records(3, 100);
+        JournalRecord[] second = records(2, 50);
+        int[] ends = writeSegment(1, first);
+        writeSegment(2, second);
+        checkpoint(1, ends[0]);
+
+        restart();
+
+        assertThat(appliedIds()).containsExactly(first[1].id(), first[2].id(), second[0].id(), second[1].id());
+        assertThat(balanceCents()).isEqualTo(INITIAL_BALANCE_CENTS - 300);
+        assertThat(segmentFiles()).doesNotContain(segmentName(1), segmentName(2));
+    }
+
+    @Test
+    void appliedSegmentsAreNotReplayedAgain() throws Exception {
+        // Crashed after the last batch committed but before its segment was deleted
+        JournalRecord[] records = records(3, 100);
+        int[] ends = writeSegment(1, records);
+        checkpoint(1, ends[2]);
+
+        restart();
+        restart();
+
+        assertThat(appliedIds()).isEmpty();
+        assertThat(balanceCents()).isEqualTo(INITIAL_BALANCE_CENTS);
+    }
+
+    @Test
+    void appendsRollOverSegmentsAndApplyExactlyOnce() throws Exception {
+        // Room for two records per segment
+        TransactionJournal journal = journal(DataSize.ofBytes(120));
+        journal.start();
+        try {
+            for (int i = 0; i < 7; i++) {
+                journal.append(cardId, 10, LocalDateTime.now(), "payment " + i);
+            }
+            assertThat(segmentFiles()).hasSizeGreaterThan(3);
+        } finally {
+            journal.shutdown();
+        }
+
+        restart();
+
+        assertThat(appliedIds()).hasSize(7);
+        assertThat(balanceCents()).isEqualTo(INITIAL_BALANCE_CENTS - 70);
+        assertThat(segmentFiles()).hasSize(1);
+    }
+
+    private void restart() throws IOException, InterruptedException {
+        TransactionJournal journal = journal(DataSize.ofMegabytes(1));
+        journal.start();
+        journal.shutdown();
+    }
+
+    private TransactionJournal journal(DataSize segmentSize) {
+        return new TransactionJournal(jdbcTemplate, transactionManager, directory.toString(), segmentSize,
+                1000, Duration.ofNanos(100_000), Duration.ofSeconds(5));
+    }
+
+    private JournalRecord[] records(int count, long amountCents) {
+        JournalRecord[] records = new JournalRecord[count];
+        for (int i = 0; i < count; i++) {
+            records[i] = new JournalRecord(RECORD_IDS.incrementAndGet(), cardId, amountCents, LocalDateTime.now(), "replayed " + i);
+        }
+        return records;
+    }
+
+    /**
+     * @return the offset after each record
+     */
+    private int[] writeSegment(long index, JournalRecord... records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        int[] ends = new int[records.length];
+        for (int i = 0; i < records.length; i++) {
+            records[i].encode(buffer);
+            ends[i] = buffer.position();
+        }
+        Files.write(directory.resolve(segmentName(index)), buffer.array());
+        return ends;
+    }
+
+    private static String segmentName(long index) {
+        return String.format("segment-%016d.log", index);
+    }
+
+    private void checkpoint(long segmentIndex, int segmentOffset) {
+        jdbcTemplate.update("insert into journal_checkpoint (id, segment_index, segment_offset) values (?, ?, ?)",
+                JournalCheckpoint.ID, segmentIndex, segmentOffset);
+    }
+
+    private List<Long> appliedIds() {
+        return jdbcTemplate.queryForList("select id from transactions where card_id = ? order by id", Long.class, cardId);
+    }
+
+    private long balanceCents() {
+        return BalanceLedger.toMinorUnits(jdbcTemplate.queryForObject("select balance from cards where id = ?", BigDecimal.class, cardId));
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).toList();
+        }
+    }
+}
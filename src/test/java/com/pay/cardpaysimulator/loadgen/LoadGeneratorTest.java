@@ -0,0 +1,117 @@
+package com.pay.cardpaysimulator.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
+import com.pay.cardpaysimulator.dto.LoadProfile;
+import com.pay.cardpaysimulator.dto.LoadProfile.CardMix;
+import com.pay.cardpaysimulator.dto.LoadReport;
+import com.pay.cardpaysimulator.dto.ReplayRequest;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import com.pay.cardpaysimulator.service.BalanceLedger;
+import com.pay.cardpaysimulator.service.PaymentService;
+import com.pay.cardpaysimulator.validation.CardNumbers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(classes = CardPaySimulatorApplication.class)
+class LoadGeneratorTest {
+
+    private static final AtomicLong CARD_NUMBERS = new AtomicLong(700_000_000);
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private BalanceLedger balanceLedger;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordedTrafficReplaysFasterAndSlowerThanRecorded() throws Exception {
+        LoadGenerator generator = generator();
+        LoadReport recorded = generator.run(LoadProfile.builder()
+                .ratePerSecond(200)
+                .durationSeconds(1)
+                .seed(42L)
+                .cards(List.of(card()))
+                .recordFile("traffic.bin")
+                .build());
+        assertThat(recorded.getErrors()).isZero();
+
+        LoadReport faster = replay(generator, 10);
+        LoadReport slower = replay(generator, 0.5);
+
+        // Faster than recorded, latencies would come out negative and fail if measured from the recorded offsets
+        for (LoadReport report : List.of(faster, slower)) {
+            assertThat(report.getRequests()).isEqualTo(recorded.getRequests());
+            assertThat(report.getErrors()).isZero();
+            assertThat(report.getStatusCounts().values().stream().mapToLong(Long::longValue).sum())
+                    .isEqualTo(recorded.getRequests());
+        }
+        // Slower than recorded, they would include the hundreds of milliseconds between recorded and replayed start
+        assertThat(slower.getElapsedMillis()).isGreaterThan(1_500);
+        assertThat(slower.getP50Micros()).isLessThan(100_000);
+    }
+
+    @Test
+    void databaseCardsAreUsedWithoutACardMix() throws Exception {
+        card();
+
+        LoadReport report = generator().run(LoadProfile.builder().ratePerSecond(50).durationSeconds(1).build());
+
+        assertThat(report.getRequests()).isPositive();
+        assertThat(report.getErrors()).isZero();
+    }
+
+    @Test
+    void fractionalCentAmountsAreRejected() {
+        LoadGenerator generator = generator();
+
+        assertThatThrownBy(() -> generator.run(LoadProfile.builder()
+                .minAmount(new BigDecimal("1.005"))
+                .cards(List.of(card()))
+                .build()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private LoadGenerator generator() {
+        return new LoadGenerator(paymentService, cardRepository, objectMapper, directory.toString(),
+                "http://localhost:8080", 100_000, 1024, 10, 10_000);
+    }
+
+    private LoadReport replay(LoadGenerator generator, double speed) throws Exception {
+        return generator.replay(ReplayRequest.builder().file("traffic.bin").speed(speed).build());
+    }
+
+    private CardMix card() {
+        String payload = "4532" + String.format("%011d", CARD_NUMBERS.incrementAndGet());
+        Card card = cardRepository.save(Card.builder()
+                .cardNumber(payload + CardNumbers.luhnCheckDigit(payload))
+                .cardholderName("Load Test")
+                .expirationDate(LocalDate.now().plusYears(2))
+                .cvv("123")
+                .balance(BalanceLedger.fromMinorUnits(100_000_000))
+                .build());
+        balanceLedger.reload(card);
+        return CardMix.builder().cardNumber(card.getCardNumber()).cvv(card.getCvv()).build();
+    }
+}
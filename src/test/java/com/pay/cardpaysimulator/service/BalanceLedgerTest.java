@@ -0,0 +1,73 @@
+package com.pay.cardpaysimulator.service;
+
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import com.pay.cardpaysimulator.validation.CardNumbers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Only the test flushes, so nothing is written back between its steps
+@SpringBootTest(classes = CardPaySimulatorApplication.class, properties = "simulator.ledger.flush-interval-ms=3600000")
+class BalanceLedgerTest {
+
+    private static final AtomicLong CARD_NUMBERS = new AtomicLong(600_000_000);
+
+    @Autowired
+    private BalanceLedger balanceLedger;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Test
+    void replacedBalancesAreNotWrittenBack() {
+        Card card = card(10_000);
+        assertThat(balanceLedger.tryDebit(card, 2_500)).isTrue();
+
+        // Updated through the card API before the debit was written back
+        Card updated = cardRepository.findById(card.getId()).orElseThrow();
+        updated.setBalance(BalanceLedger.fromMinorUnits(50_000));
+        updated = cardRepository.save(updated);
+        balanceLedger.reload(updated);
+        balanceLedger.flush();
+
+        assertThat(storedCents(card)).isEqualTo(50_000);
+        assertThat(balanceLedger.getBalance(card.getCardNumber())).contains(BalanceLedger.fromMinorUnits(50_000));
+    }
+
+    @Test
+    void evictedBalancesAreWrittenBackBeforeTheyAreDropped() {
+        Card card = card(10_000);
+        assertThat(balanceLedger.tryDebit(card, 2_500)).isTrue();
+
+        assertThat(balanceLedger.evict(card.getCardNumber()::equals)).isEqualTo(1);
+
+        assertThat(storedCents(card)).isEqualTo(7_500);
+        assertThat(balanceLedger.getBalance(card.getCardNumber())).isEmpty();
+    }
+
+    private Card card(long balanceCents) {
+        String payload = "4916" + String.format("%011d", CARD_NUMBERS.incrementAndGet());
+        Card card = cardRepository.save(Card.builder()
+                .cardNumber(payload + CardNumbers.luhnCheckDigit(payload))
+                .cardholderName("Ledger Test")
+                .expirationDate(LocalDate.now().plusYears(2))
+                .cvv("123")
+                .balance(BalanceLedger.fromMinorUnits(balanceCents))
+                .build());
+        balanceLedger.reload(card);
+        return card;
+    }
+
+    private long storedCents(Card card) {
+        BigDecimal balance = cardRepository.findById(card.getId()).orElseThrow().getBalance();
+        return BalanceLedger.toMinorUnits(balance);
+    }
+}
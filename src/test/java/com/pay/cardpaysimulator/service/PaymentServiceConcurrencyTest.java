@@ -0,0 +1,142 @@
+package com.pay.cardpaysimulator.service;
+
+import com.pay.cardpaysimulator.CardPaySimulatorApplication;
+import com.pay.cardpaysimulator.dto.PaymentRequest;
+import com.pay.cardpaysimulator.dto.PaymentResponse;
+import com.pay.cardpaysimulator.model.Card;
+import com.pay.cardpaysimulator.model.TransactionStatus;
+import com.pay.cardpaysimulator.repository.CardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hammers a few cards with concurrent payments and duplicate concurrent refunds and checks that
+ * every balance reconciles with the transactions that were approved and not refunded.
+ */
+@SpringBootTest(classes = CardPaySimulatorApplication.class)
+class PaymentServiceConcurrencyTest {
+
+    private static final int CARDS = 8;
+    private static final int THREADS = 32;
+    private static final int OPERATIONS_PER_THREAD = 200;
+    private static final long INITIAL_BALANCE_CENTS = 50_000;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private BalanceLedger balanceLedger;
+
+    @Test
+    void concurrentPaymentsAndRefundsReconcile() throws Exception {
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = cardRepository.save(Card.builder()
+                    .cardNumber(cardNumber(i))
+                    .cardholderName("Stress Test " + i)
+                    .expirationDate(LocalDate.now().plusYears(2))
+                    .cvv("123")
+                    .balance(BalanceLedger.fromMinorUnits(INITIAL_BALANCE_CENTS))
+                    .build());
+            balanceLedger.reload(card);
+            cards.add(card);
+        }
+
+        Map<Long, Long> approvedCents = new ConcurrentHashMap<>();
+        Map<Long, String> approvedCards = new ConcurrentHashMap<>();
+        Map<Long, AtomicInteger> refunds = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                startSignal.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    Long[] approvedIds = approvedCents.keySet().toArray(new Long[0]);
+                    if (approvedIds.length > 0 && random.nextInt(3) == 0) {
+                        Long transactionId = approvedIds[random.nextInt(approvedIds.length)];
+                        if (paymentService.processRefund(transactionId).getStatus() == TransactionStatus.REFUNDED) {
+                            refunds.computeIfAbsent(transactionId, id -> new AtomicInteger()).incrementAndGet();
+                        }
+                        continue;
+                    }
+                    Card card = cards.get(random.nextInt(CARDS));
+                    long cents = random.nextLong(100, 5_000);
+                    PaymentResponse response = paymentService.processPayment(PaymentRequest.builder()
+                            .cardNumber(card.getCardNumber())
+                            .cvv("123")
+                            .amount(BalanceLedger.fromMinorUnits(cents))
+                            .build());
+                    if (response.getStatus() == TransactionStatus.APPROVED) {
+                        approvedCards.put(response.getTransactionId(), card.getCardNumber());
+                        approvedCents.put(response.getTransactionId(), cents);
+                    } else {
+                        assertThat(response.getStatus()).isEqualTo(TransactionStatus.DECLINED);
+                    }
+                }
+                return null;
+            }));
+        }
+        startSignal.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(refunds.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(1));
+
+        balanceLedger.flush();
+        for (Card card : cards) {
+            long spent = approvedCents.entrySet().stream()
+                    .filter(entry -> card.getCardNumber().equals(approvedCards.get(entry.getKey())))
+                    .filter(entry -> !refunds.containsKey(entry.getKey()))
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+            BigDecimal expected = BalanceLedger.fromMinorUnits(INITIAL_BALANCE_CENTS - spent);
+            assertThat(balanceLedger.getBalance(card.getCardNumber())).hasValueSatisfying(
+                    balance -> assertThat(balance).isEqualByComparingTo(expected));
+            assertThat(cardRepository.findById(card.getId())).hasValueSatisfying(
+                    stored -> assertThat(stored.getBalance()).isEqualByComparingTo(expected));
+        }
+    }
+
+    /**
+     * Builds a Luhn-valid Visa number that does not match any configured test scenario.
+     */
+    private static String cardNumber(int index) {
+        StringBuilder number = new StringBuilder(String.format("471717%09d", 900_000_000 + index));
+        int sum = 0;
+        for (int i = number.length() - 1, position = 0; i >= 0; i--, position++) {
+            int digit = number.charAt(i) - '0';
+            if (position % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return number.append((10 - sum % 10) % 10).toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.pay.cardpaysimulator.validation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardNumbersTest {
+
+    @Test
+    void acceptedNetworksAreDetected() {
+        assertThat(CardNumbers.network("4111111111111111")).isEqualTo(CardNetwork.VISA);
+        assertThat(CardNumbers.network("4222222222222")).isEqualTo(CardNetwork.VISA);
+        assertThat(CardNumbers.network("5555555555554444")).isEqualTo(CardNetwork.MASTERCARD);
+        assertThat(CardNumbers.network("378282246310005")).isEqualTo(CardNetwork.AMEX);
+        assertThat(CardNumbers.network("6011111111111117")).isEqualTo(CardNetwork.DISCOVER);
+    }
+
+    @Test
+    void wrongCheckDigitIsRejected() {
+        assertThat(CardNumbers.isLuhnValid("4111111111111112")).isFalse();
+        assertThat(CardNumbers.network("4111111111111112")).isNull();
+        assertThat(CardNumbers.luhnCheckDigit("411111111111111")).isEqualTo(1);
+    }
+
+    @Test
+    void amexNeedsFifteenDigits() {
+        // Luhn-valid, but 16 digits long
+        String sixteen = "378282246310000" + CardNumbers.luhnCheckDigit("378282246310000");
+        assertThat(CardNumbers.isLuhnValid(sixteen)).isTrue();
+        assertThat(CardNumbers.network(sixteen)).isNull();
+        assertThat(CardNumbers.isValid("378282246310005")).isTrue();
+    }
+
+    @Test
+    void unknownPrefixesAndNonDigitsAreRejected() {
+        String unknown = "123456789012345" + CardNumbers.luhnCheckDigit("123456789012345");
+        assertThat(CardNumbers.isLuhnValid(unknown)).isTrue();
+        assertThat(CardNumbers.network(unknown)).isNull();
+        assertThat(CardNumbers.isValid("4111-1111-1111-1111")).isFalse();
+        assertThat(CardNumbers.isValid("411111111111")).isFalse();
+    }
+
+    @Test
+    void cvvsHaveThreeOrFourDigits() {
+        assertThat(CardNumbers.isValidCvv("123")).isTrue();
+        assertThat(CardNumbers.isValidCvv("1234")).isTrue();
+        assertThat(CardNumbers.isValidCvv("12")).isFalse();
+        assertThat(CardNumbers.isValidCvv("12a")).isFalse();
+    }
+}